@@ -0,0 +1,130 @@
+package com.roc.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BenchmarkMetrics
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/15
+ * @description 基准测试指标: minicluster 与测试进程同一jvm, 数据源与数据汇直接写静态计数器
+ */
+public final class BenchmarkMetrics {
+    private static final LongAdder SOURCE_EVENTS = new LongAdder();
+    private static final LongAdder SINK_EVENTS = new LongAdder();
+    private static final List<LatencyReservoir> RESERVOIRS = new CopyOnWriteArrayList<>();
+
+    private BenchmarkMetrics() {
+    }
+
+    public static void sourceEmitted() {
+        SOURCE_EVENTS.increment();
+    }
+
+    public static void sinkReceived() {
+        SINK_EVENTS.increment();
+    }
+
+    public static long sourceEvents() {
+        return SOURCE_EVENTS.sum();
+    }
+
+    public static long sinkEvents() {
+        return SINK_EVENTS.sum();
+    }
+
+    public static LatencyReservoir newReservoir() {
+        final LatencyReservoir reservoir = new LatencyReservoir(1 << 16);
+        RESERVOIRS.add(reservoir);
+        return reservoir;
+    }
+
+    /**
+     * 清空计数与延迟采样, 场景之间以及预热结束时调用
+     */
+    public static void reset() {
+        SOURCE_EVENTS.reset();
+        SINK_EVENTS.reset();
+        RESERVOIRS.forEach(LatencyReservoir::clear);
+    }
+
+    public static void clear() {
+        reset();
+        RESERVOIRS.clear();
+    }
+
+    /**
+     * 延迟分位数(微秒), 无采样返回-1
+     *
+     * @param quantile
+     * @return
+     */
+    public static double latencyMicros(double quantile) {
+        long[] samples = new long[0];
+        for (LatencyReservoir reservoir : RESERVOIRS) {
+            final long[] snapshot = reservoir.snapshot();
+            final int offset = samples.length;
+            samples = Arrays.copyOf(samples, offset + snapshot.length);
+            System.arraycopy(snapshot, 0, samples, offset, snapshot.length);
+        }
+        if (samples.length == 0) {
+            return -1;
+        }
+        Arrays.sort(samples);
+        return samples[(int) Math.min(samples.length - 1, Math.floor(quantile * samples.length))] / 1000D;
+    }
+
+    /**
+     * 所有存活线程累计分配的字节数
+     *
+     * @return
+     */
+    public static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (long allocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                bytes += allocated;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 单个数据汇子任务的延迟蓄水池采样
+     */
+    public static final class LatencyReservoir {
+        private final long[] samples;
+        private long count;
+
+        LatencyReservoir(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        public synchronized void record(long latencyNanos) {
+            if (count < samples.length) {
+                samples[(int) count] = latencyNanos;
+            } else {
+                final long index = ThreadLocalRandom.current().nextLong(count + 1);
+                if (index < samples.length) {
+                    samples[(int) index] = latencyNanos;
+                }
+            }
+            count++;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+
+        synchronized void clear() {
+            count = 0;
+        }
+    }
+}
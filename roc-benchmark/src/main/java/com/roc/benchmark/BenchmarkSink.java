@@ -0,0 +1,38 @@
+package com.roc.benchmark;
+
+import com.roc.entity.JobDetail;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+
+import java.util.Map;
+
+/**
+ * BenchmarkSink
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/15
+ * @description 丢弃数据的数据汇, 仅统计条数与 emitNanos 端到端延迟
+ */
+public class BenchmarkSink extends RichSinkFunction<Map<String, Object>> {
+    private static final long serialVersionUID = 1L;
+
+    private transient BenchmarkMetrics.LatencyReservoir reservoir;
+
+    public BenchmarkSink(JobDetail.SinkDetail sinkDetail) {
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        reservoir = BenchmarkMetrics.newReservoir();
+    }
+
+    @Override
+    public void invoke(Map<String, Object> value, Context context) {
+        final Object emitNanos = value.get(BenchmarkSource.EMIT_NANOS);
+        if (emitNanos instanceof Number) {
+            reservoir.record(System.nanoTime() - ((Number) emitNanos).longValue());
+        }
+        BenchmarkMetrics.sinkReceived();
+    }
+}
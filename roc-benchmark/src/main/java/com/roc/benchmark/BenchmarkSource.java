@@ -0,0 +1,90 @@
+package com.roc.benchmark;
+
+import com.roc.entity.JobDetail;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+import org.apache.flink.types.Row;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * BenchmarkSource
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/15
+ * @description 合成数据源, 不限速按字段定义生成行; emitNanos 字段写入发送时刻用于端到端延迟
+ */
+public class BenchmarkSource extends RichParallelSourceFunction<Row> implements ResultTypeQueryable<Row> {
+    private static final long serialVersionUID = 1L;
+    public static final String EMIT_NANOS = "emitNanos";
+
+    private static final String[] NAMES = {"siddhi@roc.com", "flink@roc.com", "失败", "成功", "aviator@roc.cn", "stellar"};
+
+    private final RowSchema schema;
+    private final int keys;
+
+    private volatile boolean running = true;
+
+    public BenchmarkSource(JobDetail.SourceDetail sourceDetail, RowSchema schema) {
+        this.schema = schema;
+        this.keys = 10000;
+    }
+
+    @Override
+    public void run(SourceContext<Row> ctx) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String[] fieldNames = schema.getFieldNames();
+        final Class<?>[] fieldClasses = schema.getFieldClasses();
+        while (running) {
+            final Row row = new Row(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                row.setField(i, value(fieldNames[i], fieldClasses[i], random));
+            }
+            synchronized (ctx.getCheckpointLock()) {
+                ctx.collect(row);
+            }
+            BenchmarkMetrics.sourceEmitted();
+        }
+    }
+
+    private Object value(String fieldName, Class<?> fieldClass, ThreadLocalRandom random) {
+        if (EMIT_NANOS.equals(fieldName)) {
+            return System.nanoTime();
+        }
+        if ("timestamp".equals(fieldName)) {
+            return System.currentTimeMillis();
+        }
+        if (fieldClass == String.class) {
+            return "id".equals(fieldName) ? "key_" + random.nextInt(keys) : NAMES[random.nextInt(NAMES.length)];
+        }
+        if (fieldClass == Long.class) {
+            return random.nextLong(keys);
+        }
+        if (fieldClass == Integer.class) {
+            return random.nextInt(keys);
+        }
+        if (fieldClass == Double.class) {
+            return random.nextDouble(0, 2000);
+        }
+        if (fieldClass == Float.class) {
+            return (float) random.nextDouble(0, 2000);
+        }
+        if (fieldClass == Boolean.class) {
+            return random.nextBoolean();
+        }
+        return null;
+    }
+
+    @Override
+    public void cancel() {
+        running = false;
+    }
+
+    @Override
+    public TypeInformation<Row> getProducedType() {
+        return schema.getRowTypeInfo();
+    }
+}
@@ -0,0 +1,103 @@
+package com.roc.benchmark;
+
+import com.roc.RocAppServer;
+import com.roc.entity.JobDetail;
+import org.apache.commons.cli.*;
+import org.apache.commons.io.IOUtils;
+import org.apache.flink.core.execution.JobClient;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RocBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/15
+ * @description 端到端基准测试: 本地minicluster运行任务定义(合成数据源 -> 引擎 -> 丢弃数据汇), 输出吞吐 / 延迟 / 单条分配字节
+ * 场景见 resources/scenarios, 数据源与数据汇 type 为 {@link BenchmarkSource} / {@link BenchmarkSink} 类名
+ */
+public class RocBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(RocBenchmark.class);
+    private static final String JOB_NAME = "roc-benchmark";
+    private static final String[] SCENARIOS = {"siddhi-select", "siddhi-aviator", "stellar-wordcount", "groovy-cep", "groovy-cep-static"};
+
+    public static void main(String[] args) throws Exception {
+        final Options options = new Options();
+        options.addOption("s", "scenario", true, "Scenario names (scenarios/*.json) or json files, comma separated, default all");
+        options.addOption("w", "warmup", true, "Warmup seconds, default 10");
+        options.addOption("d", "duration", true, "Measurement seconds, default 30");
+        options.addOption("p", "parallelism", true, "Job parallelism, default 1");
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            new HelpFormatter().printHelp(" ", options);
+            return;
+        }
+        final String[] scenarios = commandLine.hasOption("s") ? commandLine.getOptionValue("s").split(",") : SCENARIOS;
+        final int warmup = Integer.parseInt(commandLine.getOptionValue("w", "10"));
+        final int duration = Integer.parseInt(commandLine.getOptionValue("d", "30"));
+        final int parallelism = Integer.parseInt(commandLine.getOptionValue("p", "1"));
+
+        final StringBuilder report = new StringBuilder(String.format("%n%-24s %14s %14s %12s %12s %14s%n",
+                "scenario", "source(ev/s)", "sink(ev/s)", "p50(us)", "p99(us)", "alloc(B/ev)"));
+        for (String scenario : scenarios) {
+            report.append(run(scenario.trim(), warmup, duration, parallelism)).append(System.lineSeparator());
+        }
+        LOG.info(report.toString());
+    }
+
+    /**
+     * 运行单个场景, 预热后清空计数再开始统计
+     */
+    private static String run(String scenario, int warmup, int duration, int parallelism) throws Exception {
+        final JobDetail jobDetail = RocAppServer.parseJobDetail(load(scenario));
+        final RocAppServer server = new RocAppServer();
+        server.getEnv().setParallelism(parallelism);
+        final StreamExecutionEnvironment env = server.build(jobDetail);
+
+        BenchmarkMetrics.clear();
+        final JobClient jobClient = env.executeAsync(JOB_NAME + "-" + scenario);
+        try {
+            TimeUnit.SECONDS.sleep(warmup);
+            BenchmarkMetrics.reset();
+            final long allocatedBytes = BenchmarkMetrics.allocatedBytes();
+            final long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(duration);
+
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            final long sourceEvents = BenchmarkMetrics.sourceEvents();
+            final long sinkEvents = BenchmarkMetrics.sinkEvents();
+            final long allocated = BenchmarkMetrics.allocatedBytes() - allocatedBytes;
+            return String.format("%-24s %14.0f %14.0f %12.1f %12.1f %14.0f", scenario,
+                    sourceEvents / seconds, sinkEvents / seconds,
+                    BenchmarkMetrics.latencyMicros(0.5), BenchmarkMetrics.latencyMicros(0.99),
+                    sourceEvents == 0 ? 0D : (double) allocated / sourceEvents);
+        } finally {
+            jobClient.cancel().get();
+        }
+    }
+
+    /**
+     * 场景名从 classpath scenarios/ 下加载, 否则按文件路径加载
+     */
+    private static String load(String scenario) throws IOException {
+        final File file = new File(scenario);
+        try (InputStream in = file.isFile() ? new FileInputStream(file)
+                : RocBenchmark.class.getClassLoader().getResourceAsStream("scenarios/" + scenario + ".json")) {
+            if (null == in) {
+                throw new IllegalArgumentException("scenario not found: " + scenario);
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.roc.benchmark.jmh;
+
+import com.roc.functions.AviatorRegexFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AviatorRegexBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description siddhi aviator() 函数: 正则提取与表达式计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AviatorRegexBenchmark {
+    private final Function function = new Function();
+    private final Object[] regexArgs = {"siddhi33@roc.com", "([\\w0-8]+)@\\w+[\\.\\w+]+"};
+
+    @Benchmark
+    public Object regexExtract() {
+        return function.extract(regexArgs);
+    }
+
+    @Benchmark
+    public Object expression() {
+        return function.evaluate("1823.0+1823.0");
+    }
+
+    /**
+     * execute 为 protected, 子类暴露调用入口
+     */
+    private static final class Function extends AviatorRegexFunction {
+        Object extract(Object[] args) {
+            return execute(args, null);
+        }
+
+        Object evaluate(Object arg) {
+            return execute(arg, null);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.roc.benchmark.jmh;
+
+import com.roc.util.GroovyEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * GroovyEngineBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description groovy类执行: 每次调用按源码md5查缓存后动态分派; 条件类动态编译与静态编译(@CompileStatic)的单次判断耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroovyEngineBenchmark {
+    private static final String CLAZZ = "package com.roc.benchmark.groovy\n" +
+            "\n" +
+            "class Rule {\n" +
+            "    def filter(Map dataMap) {\n" +
+            "        return dataMap.get(\"name\").toString().contains(\"失败\")\n" +
+            "    }\n" +
+            "}\n";
+
+    // 静态编译时 Object.toString() 会转为 DefaultGroovyMethods.toString(较慢), 条件中使用强转
+    private static final String CONDITION = "package com.roc.benchmark.groovy\n" +
+            "\n" +
+            "class Condition implements java.util.function.Predicate<Map<String, Object>> {\n" +
+            "    @Override\n" +
+            "    boolean test(Map<String, Object> dataMap) {\n" +
+            "        return ((String) dataMap.get(\"name\")).contains(\"失败\")\n" +
+            "    }\n" +
+            "}\n";
+
+    private final java.util.Map<String, Object> record = new java.util.HashMap<>();
+    private Predicate<Map<String, Object>> dynamicCondition;
+    private Predicate<Map<String, Object>> staticCondition;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        record.put("name", "登录失败");
+        dynamicCondition = load(GroovyEngine.INSTANCE.compile(CONDITION, GroovyEngine.CompileMode.DYNAMIC));
+        staticCondition = load(GroovyEngine.INSTANCE.compile(CONDITION, GroovyEngine.CompileMode.STATIC));
+    }
+
+    @Benchmark
+    public Object runClass() throws ExecutionException {
+        return GroovyEngine.INSTANCE.runClass(CLAZZ, "filter", record);
+    }
+
+    @Benchmark
+    public boolean dynamicCondition() {
+        return dynamicCondition.test(record);
+    }
+
+    @Benchmark
+    public boolean staticCondition() {
+        return staticCondition.test(record);
+    }
+
+    private static Predicate<Map<String, Object>> load(Map<String, byte[]> classes) throws ReflectiveOperationException {
+        final ClassLoader classLoader = new ClassLoader(GroovyEngineBenchmark.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                final byte[] bytes = classes.get(name);
+                if (null == bytes) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        return (Predicate<Map<String, Object>>) classLoader.loadClass(classes.keySet().iterator().next()).newInstance();
+    }
+}
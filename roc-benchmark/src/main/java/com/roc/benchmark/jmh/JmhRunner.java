@@ -0,0 +1,33 @@
+package com.roc.benchmark.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JmhRunner
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description 微基准测试入口, 结果以json输出便于不同提交间对比
+ * 参数: [结果文件, 默认 target/jmh-result.json] [基准测试类正则...]
+ */
+public class JmhRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : "target/jmh-result.json");
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                builder.include(args[i]);
+            }
+        } else {
+            builder.include("com\\.roc\\..*Benchmark");
+        }
+        new Runner(builder.build()).run();
+    }
+}
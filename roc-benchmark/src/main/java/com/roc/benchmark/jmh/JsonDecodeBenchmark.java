@@ -0,0 +1,72 @@
+package com.roc.benchmark.jmh;
+
+import com.alibaba.fastjson.JSON;
+import com.roc.util.schema.JsonRowDeserializationSchema;
+import com.roc.util.schema.JsonRowParseFunction;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.SimpleMapSchema;
+import org.apache.flink.types.Row;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonDecodeBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description 数据源解码: kafka字节直接解码为行 / 字符串数据源fastjson解析为行 / SimpleMapSchema 序列化
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodeBenchmark {
+    private static final String MESSAGE = "{\"id\":\"flink_test01\",\"name\":\"siddhi33@roc.com\",\"price\":1823.0,\"timestamp\":1611387930000,\"remark\":\"未引用字段\"}";
+
+    private final byte[] bytes = MESSAGE.getBytes(StandardCharsets.UTF_8);
+    private final RowSchema schema = RowSchema.compile("id String,name String,price Double,timestamp Long");
+    private final JsonRowDeserializationSchema deserializationSchema = new JsonRowDeserializationSchema(schema, false);
+    private final JsonRowDeserializationSchema reuseDeserializationSchema = new JsonRowDeserializationSchema(schema, true);
+    private final JsonRowParseFunction parseFunction = new JsonRowParseFunction(schema, false);
+    private final JsonRowParseFunction reuseParseFunction = new JsonRowParseFunction(schema, true);
+    private final SimpleMapSchema simpleMapSchema = new SimpleMapSchema();
+    private final Map<String, Object> record = new LinkedHashMap<>();
+
+    @Setup
+    public void setup() {
+        record.putAll(JSON.parseObject(MESSAGE));
+    }
+
+    @Benchmark
+    public Row decodeBytes() throws IOException {
+        return deserializationSchema.deserialize(bytes);
+    }
+
+    @Benchmark
+    public Row decodeBytesReuse() throws IOException {
+        return reuseDeserializationSchema.deserialize(bytes);
+    }
+
+    @Benchmark
+    public Row parseString() {
+        return parseFunction.parse(MESSAGE);
+    }
+
+    @Benchmark
+    public Row parseStringReuse() {
+        return reuseParseFunction.parse(MESSAGE);
+    }
+
+    @Benchmark
+    public byte[] simpleMapSchemaSerialize() {
+        return simpleMapSchema.serialize(record);
+    }
+}
@@ -0,0 +1,86 @@
+package com.roc.benchmark.jmh;
+
+import com.roc.common.collection.type.primitive.IntObjectHashMap;
+import com.roc.common.collection.type.primitive.LongObjectHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrimitiveMapBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description 原始类型键map put / get / remove, 以HashMap为基线
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimitiveMapBenchmark {
+    private static final int MASK = (1 << 16) - 1;
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private final Object value = new Object();
+    private IntObjectHashMap<Object> intMap;
+    private LongObjectHashMap<Object> longMap;
+    private HashMap<Long, Object> hashMap;
+    private int[] keys;
+    private int index;
+
+    @Setup
+    public void setup() {
+        intMap = new IntObjectHashMap<>();
+        longMap = new LongObjectHashMap<>();
+        hashMap = new HashMap<>();
+        keys = new int[MASK + 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ThreadLocalRandom.current().nextInt(size);
+        }
+        for (int i = 0; i < size; i++) {
+            intMap.put(i, value);
+            longMap.put(i, value);
+            hashMap.put((long) i, value);
+        }
+    }
+
+    private int nextKey() {
+        return keys[index++ & MASK];
+    }
+
+    @Benchmark
+    public Object intGet() {
+        return intMap.get(nextKey());
+    }
+
+    @Benchmark
+    public Object intPutRemove() {
+        final int key = nextKey();
+        intMap.remove(key);
+        return intMap.put(key, value);
+    }
+
+    @Benchmark
+    public Object longGet() {
+        return longMap.get((long) nextKey());
+    }
+
+    @Benchmark
+    public Object longPutRemove() {
+        final long key = nextKey();
+        longMap.remove(key);
+        return longMap.put(key, value);
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get((long) nextKey());
+    }
+}
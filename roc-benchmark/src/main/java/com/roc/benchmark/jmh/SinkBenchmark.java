@@ -0,0 +1,57 @@
+package com.roc.benchmark.jmh;
+
+import com.roc.sink.FlinkSimpleHbaseSink;
+import com.roc.sink.MysqlSqlBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SinkBenchmark
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description 数据汇单条记录开销: mysql sql拼接 / hbase Put 构建
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SinkBenchmark {
+    private final MysqlSqlBuilder sqlBuilder = new MysqlSqlBuilder("flink");
+    private final Map<String, Object> record = new LinkedHashMap<>();
+
+    @Setup
+    public void setup() {
+        record.put("id", "flink_test01");
+        record.put("name", "siddhi33");
+        record.put("price", 1823.0D);
+        record.put("timestamp", 1611387930000L);
+    }
+
+    @Benchmark
+    public String mysqlSelectSql() {
+        return sqlBuilder.select(record);
+    }
+
+    @Benchmark
+    public String mysqlInsertSql() {
+        return sqlBuilder.insert(record);
+    }
+
+    @Benchmark
+    public String mysqlUpdateSql() {
+        return sqlBuilder.update(record);
+    }
+
+    @Benchmark
+    public Put hbasePut() {
+        return FlinkSimpleHbaseSink.toPut(record);
+    }
+}
@@ -0,0 +1,191 @@
+package com.roc.common.cql;
+
+import io.siddhi.query.api.SiddhiApp;
+import io.siddhi.query.api.annotation.Element;
+import io.siddhi.query.api.execution.ExecutionElement;
+import io.siddhi.query.api.execution.partition.Partition;
+import io.siddhi.query.api.execution.query.Query;
+import io.siddhi.query.api.execution.query.input.handler.StreamHandler;
+import io.siddhi.query.api.execution.query.input.handler.Window;
+import io.siddhi.query.api.execution.query.input.stream.InputStream;
+import io.siddhi.query.api.execution.query.input.stream.JoinInputStream;
+import io.siddhi.query.api.execution.query.input.stream.SingleInputStream;
+import io.siddhi.query.api.execution.query.input.stream.StateInputStream;
+import io.siddhi.query.api.util.AnnotationHelper;
+import io.siddhi.query.compiler.SiddhiCompiler;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * siddhi查询(cql)的静态检查, 只做语法解析不创建运行时, 作业提交与控制台共用.
+ *
+ * 语法错误抛出IllegalArgumentException; 可能导致状态无界增长的写法以警告返回:
+ * 未按长度/时间限定的窗口, 无窗口的分组聚合, 缺少within的模式/序列, 未分区的模式/序列.
+ */
+public final class CqlLint {
+	// 窗口大小由长度或时间限定
+	private static final Set<String> BOUNDED_WINDOWS = new HashSet<>(Arrays.asList("length", "lengthBatch", "time",
+			"timeBatch", "timeLength", "externalTime", "externalTimeBatch", "cron", "session", "sort", "frequent",
+			"lossyFrequent", "delay", "batch"));
+
+	// 分区策略 keyBy:field
+	private static final String KEY_BY = "keyBy";
+	private static final String KEY_SEPARATOR = ":";
+
+	private CqlLint() {
+	}
+
+	/**
+	 * 数据源 keyBy 分区字段, 引擎与控制台按同一规则判断数据源是否已按key分区
+	 *
+	 * @param partition 分区策略: forward / rescale / rebalance / keyBy:field
+	 * @return 非keyBy分区返回null
+	 */
+	public static String keyField(String partition) {
+		if (StringUtils.isBlank(partition)
+				|| !KEY_BY.equalsIgnoreCase(StringUtils.substringBefore(partition, KEY_SEPARATOR).trim())) {
+			return null;
+		}
+		final String field = StringUtils.substringAfter(partition, KEY_SEPARATOR).trim();
+		if (field.isEmpty()) {
+			throw new IllegalArgumentException("the partition strategy [" + partition + "] requires a key field");
+		}
+		return field;
+	}
+
+	/**
+	 * 按数据源字段定义生成siddhi输入流定义
+	 *
+	 * @param streamId
+	 * @param fields 格式: id String,name String,price Double
+	 */
+	public static String streamDefinition(String streamId, String fields) {
+		if (StringUtils.isBlank(fields)) {
+			throw new IllegalArgumentException("the fields of stream [" + streamId + "] is required");
+		}
+		final StringBuilder definition = new StringBuilder("define stream ").append(streamId).append(" (");
+		final String[] splitFields = fields.trim().split("\\s*,\\s*");
+		for (int i = 0; i < splitFields.length; i++) {
+			final String[] ft = splitFields[i].trim().split("\\s+");
+			if (ft.length != 2) {
+				throw new IllegalArgumentException("the field definition [" + splitFields[i] + "] is not supported");
+			}
+			if (i > 0) {
+				definition.append(", ");
+			}
+			definition.append(ft[0]).append(' ').append(siddhiType(ft[1]));
+		}
+		return definition.append(");\n").toString();
+	}
+
+	/**
+	 * 解析siddhi app
+	 *
+	 * @param siddhiApp 输入流定义 + cql
+	 */
+	public static SiddhiApp parse(String siddhiApp) {
+		try {
+			return SiddhiCompiler.parse(siddhiApp);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("cql syntax error: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 检查siddhi app
+	 *
+	 * @param siddhiApp 输入流定义 + cql
+	 * @param keyed 数据源是否已按key分区(引擎按key group运行siddhi)
+	 * @return 警告, 无警告时为空
+	 */
+	public static List<String> lint(String siddhiApp, boolean keyed) {
+		final List<String> warnings = new ArrayList<>();
+		int index = 0;
+		for (ExecutionElement element : parse(siddhiApp).getExecutionElementList()) {
+			if (element instanceof Query) {
+				lintQuery((Query) element, ++index, false, keyed, warnings);
+			} else if (element instanceof Partition) {
+				for (Query query : ((Partition) element).getQueryList()) {
+					lintQuery(query, ++index, true, keyed, warnings);
+				}
+			}
+		}
+		return warnings;
+	}
+
+	private static void lintQuery(Query query, int index, boolean partitioned, boolean keyed, List<String> warnings) {
+		final String name = queryName(query, index);
+		final InputStream input = query.getInputStream();
+		if (input instanceof SingleInputStream) {
+			final boolean windowed = lintWindows((SingleInputStream) input, name, warnings);
+			if (!windowed && !query.getSelector().getGroupByList().isEmpty()) {
+				warnings.add(name + ": group by without a window keeps an aggregate for every key forever");
+			}
+		} else if (input instanceof JoinInputStream) {
+			lintWindows(((JoinInputStream) input).getLeftInputStream(), name, warnings);
+			lintWindows(((JoinInputStream) input).getRightInputStream(), name, warnings);
+		} else if (input instanceof StateInputStream) {
+			if (null == ((StateInputStream) input).getWithinTime()) {
+				warnings.add(name + ": pattern / sequence without within keeps partial matches forever");
+			}
+			if (!partitioned && !keyed) {
+				warnings.add(name + ": pattern / sequence is not partitioned, events of all keys are matched together,"
+						+ " use partition with (...) or keyBy the sources");
+			}
+		}
+	}
+
+	/**
+	 * @return 是否带窗口
+	 */
+	private static boolean lintWindows(InputStream input, String name, List<String> warnings) {
+		if (!(input instanceof SingleInputStream)) {
+			return false;
+		}
+		boolean windowed = false;
+		for (StreamHandler handler : ((SingleInputStream) input).getStreamHandlers()) {
+			if (handler instanceof Window) {
+				windowed = true;
+				final Window window = (Window) handler;
+				if (StringUtils.isNotEmpty(window.getNamespace()) || !BOUNDED_WINDOWS.contains(window.getName())) {
+					final String windowName = StringUtils.isEmpty(window.getNamespace()) ? window.getName()
+							: window.getNamespace() + ":" + window.getName();
+					warnings.add(name + ": window [" + windowName + "] is not bounded by length or time");
+				}
+			}
+		}
+		return windowed;
+	}
+
+	// @info(name = 'xxx') 或查询序号
+	private static String queryName(Query query, int index) {
+		final Element element = AnnotationHelper.getAnnotationElement("info", "name", query.getAnnotations());
+		return null == element ? "query #" + index : "query [" + element.getValue() + "]";
+	}
+
+	private static String siddhiType(String fieldType) {
+		switch (fieldType.toLowerCase()) {
+		case "string":
+			return "string";
+		case "int":
+		case "integer":
+			return "int";
+		case "long":
+			return "long";
+		case "double":
+			return "double";
+		case "float":
+			return "float";
+		case "bool":
+		case "boolean":
+			return "bool";
+		default:
+			return "object";
+		}
+	}
+}
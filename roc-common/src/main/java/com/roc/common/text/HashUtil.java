@@ -237,4 +237,11 @@ public class HashUtil {
 	public static long murmur128AsLong(@NotNull String input) {
 		return Hashing.murmur3_128(MURMUR_SEED).hashString(input, Charsets.UTF_8).asLong();
 	}
+
+	/**
+	 * 对输入字符串进行murmur128散列, 返回32位16进制字符串(完整128位, 可作为内容摘要)
+	 */
+	public static String murmur128AsHex(@NotNull String input) {
+		return Hashing.murmur3_128(MURMUR_SEED).hashString(input, Charsets.UTF_8).toString();
+	}
 }
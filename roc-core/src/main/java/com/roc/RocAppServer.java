@@ -3,18 +3,28 @@ package com.roc;
 import com.alibaba.fastjson.JSON;
 import com.roc.common.base.ObjectUtil;
 import com.roc.entity.JobDetail;
+import com.roc.metrics.IngestLatencyFunction;
+import com.roc.metrics.LatencyTracking;
+import com.roc.sink.SinkFanOutFunction;
+import com.roc.stream.PartitionStrategy;
+import com.roc.stream.StreamFactory;
+import com.roc.stream.cep.CqlValidator;
 import com.roc.util.AbstractStreamEnv;
 import com.roc.util.SourceSinkConstructor;
+import com.roc.util.StreamOperatorUtils;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.util.OutputTag;
 import org.joor.Reflect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * CepMain
@@ -27,6 +37,8 @@ public class RocAppServer extends AbstractStreamEnv {
     private final static String JOB_NAME = RocAppServer.class.getSimpleName();
     private final static Logger LOG = LoggerFactory.getLogger(RocAppServer.class.getName());
     private final static String separator = "#=>";
+    // 可选参数, 不做空值校验
+    private final static String[] OPTIONAL_FIELDS = {"timeType", "streamEngine", "parallelism", "maxParallelism", "slotSharingGroup", "config", "objectReuse", "latencySamplePercent", "compileMode", "control", "expType"};
 
     {
         init();
@@ -36,8 +48,34 @@ public class RocAppServer extends AbstractStreamEnv {
         JobDetail jobDetail = fromArgs(args);
 
         final RocAppServer nm = new RocAppServer();
+        // 构建任务
+        StreamExecutionEnvironment env = nm.build(jobDetail);
+
+        // 执行任务
+        try {
+            env.execute(JOB_NAME);
+        } catch (Exception ex) {
+            LOG.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 按任务定义构建执行图(数据源 -> 引擎 -> 数据汇), 不提交执行
+     *
+     * @param jobDetail 已校验的任务定义
+     * @return
+     */
+    public StreamExecutionEnvironment build(JobDetail jobDetail) {
         // 获取执行环境
-        StreamExecutionEnvironment env = nm.getEnv();
+        StreamExecutionEnvironment env = getEnv();
+        // 任务级快照与状态后端参数
+        configure(jobDetail.getConfig());
+        // 对象复用
+        if (Boolean.TRUE.equals(jobDetail.getObjectReuse())) {
+            env.getConfig().enableObjectReuse();
+        }
+        // 端到端延迟采样
+        LatencyTracking.enable(env.getConfig(), jobDetail.getLatencySamplePercent());
         // 设置数据自定义时间
         switch (jobDetail.getTimeType()) {
             case "event":
@@ -51,16 +89,94 @@ public class RocAppServer extends AbstractStreamEnv {
                 break;
         }
 
-        DataStream<Map<String, Object>> output = Reflect.onClass(jobDetail.getStreamEngine()).create().call("convert", jobDetail, env).get();
+        final Map<String, DataStream<Map<String, Object>>> outputs = Reflect.onClass(jobDetail.getStreamEngine()).create().call("convertAll", jobDetail, env).get();
+        final boolean trackLatency = null != LatencyTracking.samplePercent(env.getConfig());
 
-        jobDetail.getSinks().forEach((sink) -> output.rebalance().addSink(SourceSinkConstructor.newSinkFunction(sink)));
+        // 数据汇按引擎输出流分组
+        final Map<String, List<JobDetail.SinkDetail>> streamSinks = jobDetail.getSinks().stream().collect(Collectors.groupingBy(
+                sink -> StringUtils.defaultIfBlank(sink.getStream(), StreamFactory.DEFAULT_OUTPUT_STREAM), LinkedHashMap::new, Collectors.toList()));
+        streamSinks.forEach((stream, sinks) -> {
+            DataStream<Map<String, Object>> output = outputs.get(stream);
+            if (null == output) {
+                throw new IllegalArgumentException("the sink stream [" + stream + "] is not an output of the engine " + outputs.keySet());
+            }
+            if (trackLatency) {
+                output = trackIngestLatency(output);
+            }
+            addSinks(output, sinks);
+        });
+        return env;
+    }
 
-        // 执行任务
-        try {
-            env.execute(JOB_NAME);
-        } catch (Exception ex) {
-            LOG.error(ex.getMessage(), ex);
+    /**
+     * 解析并校验任务定义
+     *
+     * @param json
+     * @return
+     * @throws IllegalArgumentException 校验失败
+     */
+    public static JobDetail parseJobDetail(String json) {
+        JobDetail jobDetail = JSON.parseObject(json, JobDetail.class);
+        if (!jobParamsVerify(jobDetail)) {
+            throw new IllegalArgumentException("Parameter verification abnormal");
         }
+        return jobDetail;
+    }
+
+    /**
+     * 引擎输出处统计接入延迟, 与引擎算子并行度一致, 保证链化
+     *
+     * @param output
+     * @return
+     */
+    private static DataStream<Map<String, Object>> trackIngestLatency(DataStream<Map<String, Object>> output) {
+        final SingleOutputStreamOperator<Map<String, Object>> tracked = output.map(new IngestLatencyFunction<>())
+                .returns(output.getType())
+                .name("ingest-latency")
+                .setParallelism(output.getParallelism());
+        if (output.getTransformation().getMaxParallelism() > 0) {
+            tracked.setMaxParallelism(output.getTransformation().getMaxParallelism());
+        }
+        return tracked;
+    }
+
+    /**
+     * 引擎输出 -> 数据汇
+     * 分区策略与算子资源相同的数据汇共用一次shuffle, 由分发算子按过滤条件写入各数据汇
+     *
+     * @param output
+     * @param sinks
+     */
+    private static void addSinks(DataStream<Map<String, Object>> output, List<JobDetail.SinkDetail> sinks) {
+        final Map<List<Object>, List<JobDetail.SinkDetail>> edges = sinks.stream().collect(Collectors.groupingBy(
+                sink -> Arrays.asList(StringUtils.defaultString(sink.getPartition()), sink.getParallelism(), sink.getMaxParallelism(), sink.getSlotSharingGroup()),
+                LinkedHashMap::new, Collectors.toList()));
+
+        edges.values().forEach(edgeSinks -> {
+            final JobDetail.SinkDetail edge = edgeSinks.get(0);
+            DataStream<Map<String, Object>> partitioned = PartitionStrategy.partitionMaps(output, edge.getPartition());
+            // 单个无过滤条件的数据汇直接输出
+            if (edgeSinks.size() == 1 && StringUtils.isBlank(edge.getFilter())) {
+                StreamOperatorUtils.configure(partitioned.addSink(SourceSinkConstructor.newSinkFunction(edge)),
+                        edge.getParallelism(), edge.getMaxParallelism(), edge.getSlotSharingGroup());
+                return;
+            }
+            final List<OutputTag<Map<String, Object>>> outputTags = new ArrayList<>(edgeSinks.size());
+            final List<String> filters = new ArrayList<>(edgeSinks.size());
+            for (int i = 0; i < edgeSinks.size(); i++) {
+                outputTags.add(new OutputTag<>("sink-" + i + "-" + edgeSinks.get(i).getId(), output.getType()));
+                filters.add(edgeSinks.get(i).getFilter());
+            }
+            // 分发算子与数据汇资源一致, 保证链化
+            SingleOutputStreamOperator<Map<String, Object>> fanOut = partitioned
+                    .process(new SinkFanOutFunction<>(outputTags, filters), output.getType())
+                    .name("sink-fan-out");
+            StreamOperatorUtils.configure(fanOut, edge.getParallelism(), edge.getMaxParallelism(), edge.getSlotSharingGroup());
+            for (int i = 0; i < edgeSinks.size(); i++) {
+                StreamOperatorUtils.configure(fanOut.getSideOutput(outputTags.get(i)).addSink(SourceSinkConstructor.newSinkFunction(edgeSinks.get(i))),
+                        edge.getParallelism(), edge.getMaxParallelism(), edge.getSlotSharingGroup());
+            }
+        });
     }
 
     @Override
@@ -83,20 +199,16 @@ public class RocAppServer extends AbstractStreamEnv {
         try {
             CommandLine commandLine = parser.parse(options, args);
             if (commandLine.hasOption("jd")) {
-                jobDetail = JSON.parseObject(commandLine.getOptionValue("jd"), JobDetail.class);
+                // job构建参数校验
+                jobDetail = parseJobDetail(commandLine.getOptionValue("jd"));
             } else {
                 new HelpFormatter().printHelp(" ", options);
                 exit("Parameter types not supported by the command line");
             }
-        } catch (ParseException e) {
+        } catch (ParseException | IllegalArgumentException e) {
             exit(e.getMessage());
         }
 
-        // job构建参数校验
-        if (!jobParamsVerify(jobDetail)) {
-            exit("Parameter verification abnormal");
-        }
-
         return jobDetail;
     }
 
@@ -109,7 +221,7 @@ public class RocAppServer extends AbstractStreamEnv {
     private static boolean jobParamsVerify(JobDetail jobDetail) {
         try {
             // 1.空值校验
-            if (ObjectUtil.hasNullValue(jobDetail, "timeType", "streamEngine")) {
+            if (ObjectUtil.hasNullValue(jobDetail, OPTIONAL_FIELDS)) {
                 LOG.error("IllegalArgumentException: parameter is not assigned");
                 return false;
             }
@@ -122,11 +234,12 @@ public class RocAppServer extends AbstractStreamEnv {
             }
             String[] expContentArray = exp.split(separator);
             ExpType expType = ExpType.get(expContentArray[0]);
-            if (!expType.verify(expContentArray[1])) {
+            if (!expType.verify(expContentArray[1], jobDetail)) {
                 LOG.error("IllegalArgumentException: exp`s grammar error [" + ExpType.get(expContentArray[0]) + "]");
                 return false;
             } else {
                 jobDetail.setExp(expContentArray[1]);
+                jobDetail.setExpType(expType.name);
                 if (StringUtils.isBlank(jobDetail.getStreamEngine())) {
                     jobDetail.setStreamEngine(expType.engine);
                 }
@@ -147,32 +260,38 @@ public class RocAppServer extends AbstractStreamEnv {
     private enum ExpType {
         NONE("none", null) {
             @Override
-            public boolean verify(String content) {
+            public boolean verify(String content, JobDetail jobDetail) {
                 // @NOTHING TODO
                 return false;
             }
         }, CQL("cql", "com.roc.stream.cep.SiddhiStreamConverter") {
-            // siddhi sql 语法校验
+            // siddhi sql 按数据源字段编译校验, 静态检查结果只告警
             @Override
-            public boolean verify(String content) {
-                return true;
+            public boolean verify(String content, JobDetail jobDetail) {
+                try {
+                    CqlValidator.validate(content, jobDetail).forEach(warning -> LOG.warn("cql lint: " + warning));
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    LOG.error(e.getMessage(), e);
+                    return false;
+                }
             }
         }, SCRIPT("script", "com.roc.stream.cep.GroovyStreamConverter") {
             // groovy script 语法校验
             @Override
-            public boolean verify(String content) {
+            public boolean verify(String content, JobDetail jobDetail) {
                 return true;
             }
         }, STELLAR("stellar", "com.roc.stream.stellar.StellarStreamConverter") {
             // stellar 语法校验
             @Override
-            public boolean verify(String content) {
+            public boolean verify(String content, JobDetail jobDetail) {
                 return true;
             }
         }, FILE("file", "com.roc.stream.cep.GroovyStreamConverter") {
             // 文件类型校验
             @Override
-            public boolean verify(String content) {
+            public boolean verify(String content, JobDetail jobDetail) {
                 if (content.endsWith("java") || content.endsWith("groovy"))
                     return true;
                 else return false;
@@ -195,6 +314,6 @@ public class RocAppServer extends AbstractStreamEnv {
             }
         }
 
-        public abstract boolean verify(String content);
+        public abstract boolean verify(String content, JobDetail jobDetail);
     }
 }
@@ -3,6 +3,7 @@ package com.roc.entity;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author jelly
@@ -12,6 +13,13 @@ import java.util.List;
  *   "id": "test_1",
  *   "timeType": "processing",
  *   "streamEngine": "SiddhiStreamConverter",
+ *   "parallelism": 4,
+ *   "latencySamplePercent": 1,
+ *   "config": {
+ *     "execution.checkpointing.interval": "30s",
+ *     "state.backend": "rocksdb",
+ *     "state.backend.incremental": "true"
+ *   },
  *   "exp": "from ${0} select timestamp, id, aviator(name,'([\\w0-8]+)@\\w+[\\.\\w+]+') as name, aviator(price+price) as price insert into  outputStream",
  *   "sources": [
  *     {
@@ -20,16 +28,29 @@ import java.util.List;
  *       "type": "kafka",
  *       "host": "172.16.58.181:9092,172.16.58.182:9092,172.16.58.183:9092",
  *       "auth": "",
- *       "storage": "siddhi02"
+ *       "storage": "siddhi02",
+ *       "parallelism": 32,
+ *       "timestampField": "timestamp",
+ *       "maxOutOfOrderness": 5000,
+ *       "idleTimeout": 60000
  *     }
  *   ],
+ *   "control": {
+ *     "id": "ruleStream",
+ *     "type": "kafka",
+ *     "host": "172.16.58.181:9092,172.16.58.182:9092,172.16.58.183:9092",
+ *     "storage": "siddhi-rules"
+ *   },
  *   "sinks": [
  *     {
  *       "id": "1",
  *       "type": "hbase",
  *       "host": "172.16.58.181:2181,172.16.58.182:2181,172.16.58.183:2181",
  *       "auth": "",
- *       "storage": "flink"
+ *       "storage": "flink",
+ *       "partition": "keyBy:id",
+ *       "filter": "price > 100",
+ *       "stream": "outputStream"
  *     }
  *   ]
  * }
@@ -41,6 +62,22 @@ public final class JobDetail {
     private String timeType;
     private String streamEngine;
     private String exp;
+    // exp 类型(cql / script / stellar / file), 提交时由 exp 前缀解析, exp 只保留内容
+    private String expType;
+    // 引擎算子资源, 未配置时继承执行环境默认值
+    private Integer parallelism;
+    private Integer maxParallelism;
+    private String slotSharingGroup;
+    // flink参数(execution.checkpointing.* / state.* / pipeline.*), 覆盖config.properties
+    private Map<String, String> config;
+    // 对象复用: 链化算子间直接传递记录实例, 内置算子不修改输入记录
+    private Boolean objectReuse;
+    // 端到端延迟采样百分比(0-100), 未配置时不跟踪
+    private Double latencySamplePercent;
+    // groovy规则编译模式: dynamic(默认) / type_checked / static
+    private String compileMode;
+    // 规则控制流(siddhi): 消息字段 action(add / replace / remove), id, cql, 运行中更新规则
+    private SourceDetail control;
     private List<SourceDetail> sources;
     private List<SinkDetail> sinks;
 
@@ -52,13 +89,31 @@ public final class JobDetail {
         private String auth;
         private String storage;
         private String fields;
+        // 与下游(数据源)或上游(数据汇)算子之间的分区策略: forward / rescale / rebalance / keyBy:field, 默认不显式分区
+        private String partition;
+        // 算子资源, 未配置时继承执行环境默认值
+        private Integer parallelism;
+        private Integer maxParallelism;
+        private String slotSharingGroup;
+        // 类型相关的扩展参数, 如 datagen 的 rows-per-second / fields.id.kind
+        private Map<String, String> options;
     }
 
     @Data
     public static class SourceDetail extends AbstractDetail {
+        // 事件时间字段(毫秒), 为空时不生成水位线
+        private String timestampField;
+        // 最大乱序时间(毫秒)
+        private Long maxOutOfOrderness;
+        // 空闲超时(毫秒), 超时未收到数据的分区不再阻塞水位线
+        private Long idleTimeout;
     }
 
     @Data
     public static class SinkDetail extends AbstractDetail {
+        // 过滤条件(aviator表达式), 为空时输出全部数据
+        private String filter;
+        // 引擎输出流(cql 中 insert into 的流), 为空时使用 outputStream
+        private String stream;
     }
 }
\ No newline at end of file
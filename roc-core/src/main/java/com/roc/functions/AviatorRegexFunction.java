@@ -1,7 +1,9 @@
 package com.roc.functions;
 
 import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.Expression;
 import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
 import io.siddhi.core.executor.ExpressionExecutor;
 import io.siddhi.core.executor.function.FunctionExecutor;
 import io.siddhi.core.util.config.ConfigReader;
@@ -10,16 +12,38 @@ import io.siddhi.core.util.snapshot.state.StateFactory;
 import io.siddhi.query.api.definition.Attribute;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author jelly
  * <p>
  * 根据正则提取字段内容
+ * <p>
+ * 表达式编译后缓存(按表达式文本, 每个函数实例有界LRU), 正则 / 表达式为常量时在init中预编译; 计算环境map复用
+ * siddhi查询运行时单线程调用函数实例, 实例内状态不做同步
  */
 public class AviatorRegexFunction extends FunctionExecutor {
+    private static final String REG = "REG";
+    private static final int CACHE_SIZE = 256;
+
+    // 常量正则 / 常量表达式预编译结果
+    private Expression constantExpression;
+    private final Map<String, Expression> expressionCache = new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Map<String, Object> env = new HashMap<>(4);
 
     @Override
     protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        if (expressionExecutors.length == 2 && expressionExecutors[1] instanceof ConstantExpressionExecutor) {
+            constantExpression = compile(regexExpression(((ConstantExpressionExecutor) expressionExecutors[1]).getValue()));
+        } else if (expressionExecutors.length == 1 && expressionExecutors[0] instanceof ConstantExpressionExecutor) {
+            constantExpression = compile(String.valueOf(((ConstantExpressionExecutor) expressionExecutors[0]).getValue()));
+        }
         return null;
     }
 
@@ -29,20 +53,40 @@ public class AviatorRegexFunction extends FunctionExecutor {
     @Override
     protected Object execute(Object[] objects, State state) {
         if (null != objects && objects.length == 2) {
-            return AviatorEvaluator.execute("REG=~/" + objects[1] + "/ ? $1 : '' ", new HashMap<String, Object>() {{
-                put("REG", objects[0]);
-            }});
+            final Expression expression = null == constantExpression ? cached(regexExpression(objects[1])) : constantExpression;
+            // 清除上次匹配的分组变量($0, $1...)
+            env.clear();
+            env.put(REG, objects[0]);
+            return expression.execute(env);
         }
         return null;
     }
 
     @Override
     protected Object execute(Object o, State state) {
-        return AviatorEvaluator.execute(o.toString());
+        return (null == constantExpression ? cached(o.toString()) : constantExpression).execute();
     }
 
     @Override
     public Attribute.Type getReturnType() {
         return Attribute.Type.OBJECT;
     }
-}
\ No newline at end of file
+
+    private static String regexExpression(Object regex) {
+        return "REG=~/" + regex + "/ ? $1 : '' ";
+    }
+
+    private Expression cached(String text) {
+        Expression expression = expressionCache.get(text);
+        if (null == expression) {
+            expression = compile(text);
+            expressionCache.put(text, expression);
+        }
+        return expression;
+    }
+
+    // 不使用aviator全局缓存, 避免动态表达式无界增长
+    private static Expression compile(String text) {
+        return AviatorEvaluator.compile(text);
+    }
+}
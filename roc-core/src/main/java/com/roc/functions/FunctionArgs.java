@@ -0,0 +1,107 @@
+package com.roc.functions;
+
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * FunctionArgs
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description siddhi函数参数: 参数个数与类型校验, 常量参数识别, 编译结果有界缓存
+ */
+final class FunctionArgs {
+    private static final int CACHE_SIZE = 256;
+
+    private FunctionArgs() {
+    }
+
+    /**
+     * 参数个数校验
+     *
+     * @param name
+     * @param executors
+     * @param min
+     * @param max
+     */
+    static void checkArity(String name, ExpressionExecutor[] executors, int min, int max) {
+        if (executors.length < min || executors.length > max) {
+            throw new SiddhiAppValidationException(name + "() requires " + (min == max ? String.valueOf(min) : min + " to " + max)
+                    + " arguments, but found " + executors.length);
+        }
+    }
+
+    /**
+     * 参数类型校验
+     *
+     * @param name
+     * @param executors
+     * @param i
+     * @param types 允许的类型
+     */
+    static void checkType(String name, ExpressionExecutor[] executors, int i, Attribute.Type... types) {
+        final Attribute.Type type = executors[i].getReturnType();
+        for (Attribute.Type t : types) {
+            if (t == type || Attribute.Type.OBJECT == type) {
+                return;
+            }
+        }
+        throw new SiddhiAppValidationException(name + "() argument " + (i + 1) + " should be of type " + Arrays.toString(types) + ", but found " + type);
+    }
+
+    /**
+     * @param executors
+     * @param i
+     * @return 非常量参数返回null
+     */
+    static Object constant(ExpressionExecutor[] executors, int i) {
+        return i < executors.length && executors[i] instanceof ConstantExpressionExecutor ? ((ConstantExpressionExecutor) executors[i]).getValue() : null;
+    }
+
+    /**
+     * 正则编译
+     *
+     * @param name
+     * @param regex
+     * @return
+     */
+    static Pattern compile(String name, Object regex) {
+        try {
+            return Pattern.compile(String.valueOf(regex));
+        } catch (RuntimeException e) {
+            throw new SiddhiAppValidationException(name + "() invalid regex [" + regex + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 非常量参数的编译结果缓存, 单线程使用
+     *
+     * @param compiler
+     * @return
+     */
+    static <V> Function<String, V> cache(Function<String, V> compiler) {
+        final Map<String, V> cache = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        return key -> {
+            V value = cache.get(key);
+            if (null == value) {
+                value = compiler.apply(key);
+                cache.put(key, value);
+            }
+            return value;
+        };
+    }
+}
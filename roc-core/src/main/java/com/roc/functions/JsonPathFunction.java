@@ -0,0 +1,80 @@
+package com.roc.functions;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONPath;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.function.Function;
+
+/**
+ * JsonPathFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description jsonPath(json, path): 按路径($.a.b[0])提取json字段, 字符串原样返回, 对象与数组返回json文本; 路径不存在或json非法时返回null
+ * 路径为常量时在init中编译
+ */
+public class JsonPathFunction extends FunctionExecutor {
+    private static final String NAME = "jsonPath";
+
+    private JSONPath constantPath;
+    private Function<String, JSONPath> paths;
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        FunctionArgs.checkArity(NAME, expressionExecutors, 2, 2);
+        FunctionArgs.checkType(NAME, expressionExecutors, 0, Attribute.Type.STRING);
+        FunctionArgs.checkType(NAME, expressionExecutors, 1, Attribute.Type.STRING);
+        final Object path = FunctionArgs.constant(expressionExecutors, 1);
+        if (null != path) {
+            constantPath = compile(path.toString());
+        } else {
+            paths = FunctionArgs.cache(JsonPathFunction::compile);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (null == data[0] || null == constantPath && null == data[1]) {
+            return null;
+        }
+        final Object value;
+        try {
+            final JSONPath path = null == constantPath ? paths.apply(data[1].toString()) : constantPath;
+            value = path.eval(JSON.parse(data[0].toString()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (null == value || value instanceof String) {
+            return value;
+        }
+        return value instanceof Number || value instanceof Boolean ? value.toString() : JSON.toJSONString(value);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    private static JSONPath compile(String path) {
+        try {
+            return JSONPath.compile(path);
+        } catch (RuntimeException e) {
+            throw new SiddhiAppValidationException(NAME + "() invalid json path [" + path + "]: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.roc.functions;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * RegexExtractFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description regexExtract(text, regex[, group]): 返回首个匹配的分组内容(默认第1组), 不匹配时返回空串, 同 aviator(text, regex)
+ * 正则为常量时在init中编译并复用matcher
+ */
+public class RegexExtractFunction extends FunctionExecutor {
+    private static final String NAME = "regexExtract";
+
+    private Matcher constantMatcher;
+    private int constantGroup = -1;
+    private Function<String, Pattern> patterns;
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        FunctionArgs.checkArity(NAME, expressionExecutors, 2, 3);
+        FunctionArgs.checkType(NAME, expressionExecutors, 0, Attribute.Type.STRING);
+        FunctionArgs.checkType(NAME, expressionExecutors, 1, Attribute.Type.STRING);
+        if (expressionExecutors.length == 3) {
+            FunctionArgs.checkType(NAME, expressionExecutors, 2, Attribute.Type.INT, Attribute.Type.LONG);
+            final Object group = FunctionArgs.constant(expressionExecutors, 2);
+            if (null != group) {
+                constantGroup = ((Number) group).intValue();
+            }
+        }
+        final Object regex = FunctionArgs.constant(expressionExecutors, 1);
+        if (null != regex) {
+            constantMatcher = FunctionArgs.compile(NAME, regex).matcher("");
+            if (constantGroup > constantMatcher.groupCount()) {
+                throw new SiddhiAppValidationException(NAME + "() group " + constantGroup + " exceeds the group count of [" + regex + "]");
+            }
+        } else {
+            patterns = FunctionArgs.cache(r -> FunctionArgs.compile(NAME, r));
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (null == data[0] || null == constantMatcher && null == data[1]) {
+            return null;
+        }
+        final Matcher matcher = matcher(data[0].toString(), data[1]);
+        final int group = constantGroup >= 0 ? constantGroup : data.length == 3 && null != data[2] ? ((Number) data[2]).intValue() : 1;
+        if (null == matcher || group < 0 || !matcher.find() || group > matcher.groupCount()) {
+            return "";
+        }
+        final String value = matcher.group(group);
+        return null == value ? "" : value;
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    // 非常量正则非法时视为不匹配
+    private Matcher matcher(String text, Object regex) {
+        if (null != constantMatcher) {
+            return constantMatcher.reset(text);
+        }
+        try {
+            return patterns.apply(regex.toString()).matcher(text);
+        } catch (SiddhiAppValidationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.roc.functions;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * RegexMatchFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description regexMatch(text, regex): 文本中存在匹配时返回true(find语义, 全匹配需使用 ^...$)
+ * 正则为常量时在init中编译并复用matcher
+ */
+public class RegexMatchFunction extends FunctionExecutor {
+    private static final String NAME = "regexMatch";
+
+    private Matcher constantMatcher;
+    private Function<String, Pattern> patterns;
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        FunctionArgs.checkArity(NAME, expressionExecutors, 2, 2);
+        FunctionArgs.checkType(NAME, expressionExecutors, 0, Attribute.Type.STRING);
+        FunctionArgs.checkType(NAME, expressionExecutors, 1, Attribute.Type.STRING);
+        final Object regex = FunctionArgs.constant(expressionExecutors, 1);
+        if (null != regex) {
+            constantMatcher = FunctionArgs.compile(NAME, regex).matcher("");
+        } else {
+            patterns = FunctionArgs.cache(r -> FunctionArgs.compile(NAME, r));
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (null == data[0] || null == constantMatcher && null == data[1]) {
+            return false;
+        }
+        if (null != constantMatcher) {
+            return constantMatcher.reset(data[0].toString()).find();
+        }
+        try {
+            return patterns.apply(data[1].toString()).matcher(data[0].toString()).find();
+        } catch (SiddhiAppValidationException e) {
+            // 非常量正则非法时视为不匹配
+            return false;
+        }
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return false;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.BOOL;
+    }
+}
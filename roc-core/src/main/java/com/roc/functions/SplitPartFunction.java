@@ -0,0 +1,74 @@
+package com.roc.functions;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+/**
+ * SplitPartFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description splitPart(text, delimiter, index): 按分隔符(普通字符串, 非正则)切分后的第index段(从1开始), 越界时返回空串
+ * 只扫描到目标段, 不生成数组
+ */
+public class SplitPartFunction extends FunctionExecutor {
+    private static final String NAME = "splitPart";
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        FunctionArgs.checkArity(NAME, expressionExecutors, 3, 3);
+        FunctionArgs.checkType(NAME, expressionExecutors, 0, Attribute.Type.STRING);
+        FunctionArgs.checkType(NAME, expressionExecutors, 1, Attribute.Type.STRING);
+        FunctionArgs.checkType(NAME, expressionExecutors, 2, Attribute.Type.INT, Attribute.Type.LONG);
+        final Object delimiter = FunctionArgs.constant(expressionExecutors, 1);
+        if (null != delimiter && delimiter.toString().isEmpty()) {
+            throw new SiddhiAppValidationException(NAME + "() delimiter must not be empty");
+        }
+        final Object index = FunctionArgs.constant(expressionExecutors, 2);
+        if (null != index && ((Number) index).intValue() < 1) {
+            throw new SiddhiAppValidationException(NAME + "() index starts from 1, but found " + index);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (null == data[0] || null == data[1] || null == data[2]) {
+            return null;
+        }
+        return splitPart(data[0].toString(), data[1].toString(), ((Number) data[2]).intValue());
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+
+    static String splitPart(String text, String delimiter, int index) {
+        if (delimiter.isEmpty() || index < 1) {
+            return "";
+        }
+        int start = 0;
+        for (int i = 1; i < index; i++) {
+            final int next = text.indexOf(delimiter, start);
+            if (next < 0) {
+                return "";
+            }
+            start = next + delimiter.length();
+        }
+        final int end = text.indexOf(delimiter, start);
+        return end < 0 ? text.substring(start) : text.substring(start, end);
+    }
+}
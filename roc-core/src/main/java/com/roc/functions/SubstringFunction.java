@@ -0,0 +1,55 @@
+package com.roc.functions;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * SubstringFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/20
+ * @description substring(text, begin[, length]): 从begin(从0开始)截取length个字符, 未指定length时截取到末尾; 越界部分忽略
+ */
+public class SubstringFunction extends FunctionExecutor {
+    private static final String NAME = "substring";
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] expressionExecutors, ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+        FunctionArgs.checkArity(NAME, expressionExecutors, 2, 3);
+        FunctionArgs.checkType(NAME, expressionExecutors, 0, Attribute.Type.STRING);
+        for (int i = 1; i < expressionExecutors.length; i++) {
+            FunctionArgs.checkType(NAME, expressionExecutors, i, Attribute.Type.INT, Attribute.Type.LONG);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (null == data[0] || null == data[1]) {
+            return null;
+        }
+        final String text = data[0].toString();
+        final int begin = Math.min(Math.max(((Number) data[1]).intValue(), 0), text.length());
+        if (data.length < 3 || null == data[2]) {
+            return text.substring(begin);
+        }
+        final int length = Math.max(((Number) data[2]).intValue(), 0);
+        return text.substring(begin, (int) Math.min((long) begin + length, text.length()));
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+}
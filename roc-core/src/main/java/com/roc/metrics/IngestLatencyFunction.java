@@ -0,0 +1,34 @@
+package com.roc.metrics;
+
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+
+import java.util.Map;
+
+/**
+ * IngestLatencyFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/19
+ * @description 与引擎算子链化, 统计采样记录 接入->引擎输出 的延迟(毫秒), 记录原样输出
+ */
+public class IngestLatencyFunction<T extends Map<String, Object>> extends RichMapFunction<T, T> {
+    private static final long serialVersionUID = 1L;
+
+    private transient LatencyHistogram ingestToEmit;
+
+    @Override
+    public void open(Configuration parameters) {
+        ingestToEmit = RocMetrics.histogram(RocMetrics.group(getRuntimeContext().getMetricGroup()), LatencyTracking.INGEST_TO_EMIT);
+    }
+
+    @Override
+    public T map(T value) {
+        final Long ingestTime = LatencyTracking.ingestTime(value);
+        if (null != ingestTime) {
+            ingestToEmit.update(LatencyTracking.since(ingestTime));
+        }
+        return value;
+    }
+}
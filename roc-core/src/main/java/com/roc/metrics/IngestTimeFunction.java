@@ -0,0 +1,43 @@
+package com.roc.metrics;
+
+import com.roc.common.concurrent.limiter.Sampler;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.types.Row;
+
+/**
+ * IngestTimeFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/19
+ * @description 与数据源解码链化, 按采样率写入接入时间, 未采样的记录置空(数据源可能复用行实例)
+ */
+public class IngestTimeFunction extends RichMapFunction<Row, Row> {
+    private static final long serialVersionUID = 1L;
+
+    private final int pos;
+    private final double samplePercent;
+
+    private transient Sampler sampler;
+
+    /**
+     * @param pos           接入时间字段下标
+     * @param samplePercent 采样百分比(0-100)
+     */
+    public IngestTimeFunction(int pos, double samplePercent) {
+        this.pos = pos;
+        this.samplePercent = samplePercent;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        sampler = Sampler.create(samplePercent);
+    }
+
+    @Override
+    public Row map(Row row) {
+        row.setField(pos, sampler.select() ? System.currentTimeMillis() : null);
+        return row;
+    }
+}
@@ -0,0 +1,246 @@
+package com.roc.metrics;
+
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.HistogramStatistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/18
+ * @description 低开销直方图: 对数线性分桶(每个2的幂分16个子桶, 相对误差约6%), 记录只做一次数组写入, 不保存样本
+ * 统计为最近一到两个时间窗口的数据, 窗口由写线程轮换; 单写线程(算子任务线程), 上报线程只读
+ * 上报时按窗口起始时间过滤过期窗口并请求写线程轮换, 写入稀疏或停止时不会一直上报旧数据
+ */
+public class LatencyHistogram implements Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 47;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    // 每记录多少条检查一次窗口轮换
+    private static final int ROTATE_CHECK_MASK = 255;
+
+    private final long windowMillis;
+    private final AtomicLong count = new AtomicLong();
+    private volatile Window current;
+    private volatile Window previous;
+    // 上报线程发现窗口过期时置位, 写线程下次记录前轮换
+    private volatile boolean rotateRequested;
+    private long nextRotation;
+
+    public LatencyHistogram() {
+        this(60_000L);
+    }
+
+    /**
+     * @param windowMillis 统计窗口(毫秒)
+     */
+    public LatencyHistogram(long windowMillis) {
+        this.windowMillis = windowMillis;
+        final long now = System.currentTimeMillis();
+        this.current = new Window(now);
+        this.previous = new Window(now - windowMillis);
+        this.nextRotation = now + windowMillis;
+    }
+
+    @Override
+    public void update(long value) {
+        final long total = count.get() + 1;
+        count.lazySet(total);
+        if (rotateRequested || (total & ROTATE_CHECK_MASK) == 0) {
+            rotateIfNecessary();
+        }
+        current.record(value);
+    }
+
+    private void rotateIfNecessary() {
+        final long now = System.currentTimeMillis();
+        rotateRequested = false;
+        if (now < nextRotation) {
+            return;
+        }
+        final Window expired = previous;
+        expired.clear(now);
+        // 超过两个窗口未轮换时当前窗口同样过期
+        if (now >= nextRotation + windowMillis) {
+            current.clear(now - windowMillis);
+        }
+        previous = current;
+        current = expired;
+        nextRotation = now + windowMillis;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public HistogramStatistics getStatistics() {
+        final long[] counts = new long[BUCKETS];
+        long size = 0;
+        final Window latest = current;
+        final long age = System.currentTimeMillis() - latest.start;
+        if (age >= windowMillis) {
+            rotateRequested = true;
+        }
+        // 当前窗口超过一个窗口时长后上一窗口过期, 超过两个窗口时长后两者都过期
+        final Window[] windows = age >= 2 * windowMillis ? new Window[0]
+                : age >= windowMillis ? new Window[]{latest} : new Window[]{previous, latest};
+        for (Window window : windows) {
+            for (int i = 0; i < BUCKETS; i++) {
+                final long c = window.counts.get(i);
+                counts[i] += c;
+                size += c;
+            }
+        }
+        return new Statistics(counts, size);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        final long v = Math.min(value, MAX_VALUE);
+        final int exponent = 63 - Long.numberOfLeadingZeros(v);
+        final int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    static long width(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+    }
+
+    /**
+     * 单个时间窗口的桶计数
+     */
+    private static final class Window {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        // 窗口起始时间(毫秒)
+        private volatile long start;
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        void record(long value) {
+            final int index = bucketIndex(value);
+            // 单写线程, 无需CAS
+            counts.lazySet(index, counts.get(index) + 1);
+        }
+
+        void clear(long start) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.lazySet(i, 0);
+            }
+            this.start = start;
+        }
+    }
+
+    /**
+     * 桶计数快照, 取值以桶中点近似
+     */
+    private static final class Statistics extends HistogramStatistics {
+        private final long[] counts;
+        private final long size;
+
+        Statistics(long[] counts, long size) {
+            this.counts = counts;
+            this.size = size;
+        }
+
+        private static double midpoint(int index) {
+            return lowerBound(index) + (width(index) - 1) / 2D;
+        }
+
+        @Override
+        public double getQuantile(double quantile) {
+            if (size == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * size));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return midpoint(i);
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public long[] getValues() {
+            // 不保存样本
+            return new long[0];
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, size);
+        }
+
+        @Override
+        public double getMean() {
+            if (size == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    sum += counts[i] * midpoint(i);
+                }
+            }
+            return sum / size;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (size < 2) {
+                return 0;
+            }
+            final double mean = getMean();
+            double squares = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    final double delta = midpoint(i) - mean;
+                    squares += counts[i] * delta * delta;
+                }
+            }
+            return Math.sqrt(squares / (size - 1));
+        }
+
+        @Override
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return lowerBound(i) + width(i) - 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
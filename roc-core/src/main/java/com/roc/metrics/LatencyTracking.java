@@ -0,0 +1,95 @@
+package com.roc.metrics;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.configuration.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LatencyTracking
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/19
+ * @description 端到端延迟跟踪: 数据源解码后按采样率给记录打上接入时间(毫秒, 保留字段 _ingestTime), 随记录经过引擎到达数据汇
+ * 引擎输出处统计 接入->输出 延迟, 数据汇写入成功后统计 接入->提交 延迟; 未采样的记录不带该字段, 写出外部存储前去除该字段
+ * 接入->提交 延迟只在同步写入的数据汇(mysql / hbase / redis)中统计, kafka / elasticsearch 异步批量提交, 无逐条确认回调, 不统计
+ * siddhi 引擎的输出带触发该输出的输入记录的接入时间, siddhi调度线程(时间窗口到期)产生的输出不带
+ * 采样率通过全局作业参数下发, 未配置时不增加任何算子
+ */
+public final class LatencyTracking {
+    // 保留字段名
+    public static final String FIELD = "_ingestTime";
+    public static final String FIELD_TYPE = "Long";
+    // 全局作业参数: 采样百分比(0-100)
+    public static final String SAMPLE_PERCENT = "roc.latency.sample-percent";
+
+    public static final String INGEST_TO_EMIT = "ingestToEmitLatencyMillis";
+    public static final String INGEST_TO_COMMIT = "ingestToCommitLatencyMillis";
+
+    private LatencyTracking() {
+    }
+
+    /**
+     * 开启延迟跟踪, 采样率写入全局作业参数
+     *
+     * @param config
+     * @param samplePercent 采样百分比, 为空或不大于0时不开启
+     */
+    public static void enable(ExecutionConfig config, Double samplePercent) {
+        if (null == samplePercent || samplePercent <= 0) {
+            return;
+        }
+        if (samplePercent > 100) {
+            throw new IllegalArgumentException("latencySamplePercent must be between 0 and 100: " + samplePercent);
+        }
+        final Configuration parameters = new Configuration();
+        config.getGlobalJobParameters().toMap().forEach(parameters::setString);
+        parameters.setString(SAMPLE_PERCENT, String.valueOf(samplePercent));
+        config.setGlobalJobParameters(parameters);
+    }
+
+    /**
+     * @param config
+     * @return 未开启时返回null
+     */
+    public static Double samplePercent(ExecutionConfig config) {
+        final String samplePercent = config.getGlobalJobParameters().toMap().get(SAMPLE_PERCENT);
+        return null == samplePercent ? null : Double.valueOf(samplePercent);
+    }
+
+    /**
+     * @param record
+     * @return 未采样的记录返回null
+     */
+    public static Long ingestTime(Map<?, ?> record) {
+        final Object value = record.get(FIELD);
+        return value instanceof Long ? (Long) value : null;
+    }
+
+    /**
+     * 接入到现在的毫秒数, 跨节点时钟偏差导致的负值记为0
+     *
+     * @param ingestTime
+     * @return
+     */
+    public static long since(long ingestTime) {
+        return Math.max(0L, System.currentTimeMillis() - ingestTime);
+    }
+
+    /**
+     * 去除保留字段, 不修改输入记录(可能被多个数据汇共享), 不含该字段时返回原记录
+     *
+     * @param record
+     * @return
+     */
+    public static <K, V> Map<K, V> strip(Map<K, V> record) {
+        if (null == record || !record.containsKey(FIELD)) {
+            return record;
+        }
+        final Map<K, V> stripped = new LinkedHashMap<>(record);
+        stripped.remove(FIELD);
+        return stripped;
+    }
+}
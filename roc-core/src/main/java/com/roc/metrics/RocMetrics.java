@@ -0,0 +1,63 @@
+package com.roc.metrics;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+
+/**
+ * RocMetrics
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/18
+ * @description 数据源 / 引擎 / 数据汇 指标, 注册在算子指标组的 roc 子组下
+ * 计数器同时注册每秒速率(xxxPerSecond), 延迟单位为微秒
+ */
+public final class RocMetrics {
+    public static final String GROUP = "roc";
+
+    public static final String RECORDS_IN = "recordsIn";
+    public static final String RECORDS_OUT = "recordsOut";
+    public static final String BYTES_IN = "bytesIn";
+    public static final String DECODE_ERRORS = "decodeErrors";
+    public static final String DROPPED = "recordsDropped";
+    public static final String WRITE_ERRORS = "writeErrors";
+    public static final String WRITE_LATENCY = "writeLatencyMicros";
+    public static final String READ_LATENCY = "readLatencyMicros";
+
+    private static final int METER_SPAN_SECONDS = 60;
+
+    private RocMetrics() {
+    }
+
+    public static MetricGroup group(MetricGroup operatorGroup) {
+        return operatorGroup.addGroup(GROUP);
+    }
+
+    /**
+     * 计数器及其每秒速率
+     *
+     * @param group
+     * @param name
+     * @return
+     */
+    public static Counter counter(MetricGroup group, String name) {
+        final Counter counter = group.counter(name);
+        group.meter(name + "PerSecond", new MeterView(counter, METER_SPAN_SECONDS));
+        return counter;
+    }
+
+    public static LatencyHistogram histogram(MetricGroup group, String name) {
+        return group.histogram(name, new LatencyHistogram());
+    }
+
+    /**
+     * 起始纳秒到现在的微秒数
+     *
+     * @param startNanos
+     * @return
+     */
+    public static long micros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+}
@@ -1,6 +1,7 @@
 package com.roc.sink;
 
 import com.roc.common.FlinkRealtimeConstants;
+import com.roc.metrics.LatencyTracking;
 import org.apache.commons.lang.StringUtils;
 import org.apache.flink.streaming.connectors.elasticsearch.ElasticsearchSinkFunction;
 import org.apache.flink.streaming.connectors.elasticsearch5.ElasticsearchSink;
@@ -58,7 +59,7 @@ public class FlinkSimpleElasticsearchSink implements Serializable {
             }
         }}, (ElasticsearchSinkFunction<Map<String, Object>>) (data, runtimeContext, requestIndexer) -> {
             final IndexRequest flinkIndexRequest = new IndexRequest(indexName, indexName);
-            flinkIndexRequest.source(data);
+            flinkIndexRequest.source(LatencyTracking.strip(data));
             requestIndexer.add(flinkIndexRequest);
         });
     }
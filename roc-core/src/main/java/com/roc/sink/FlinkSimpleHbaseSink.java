@@ -1,6 +1,7 @@
 package com.roc.sink;
 
 import com.roc.common.FlinkRealtimeConstants;
+import com.roc.metrics.LatencyTracking;
 import com.roc.sink.hbase.HbaseConnectorDescription;
 import com.roc.sink.hbase.HbaseMapper;
 import com.roc.sink.hbase.HbaseSink;
@@ -41,11 +42,26 @@ public class FlinkSimpleHbaseSink implements Serializable {
 
             @Override
             public Put getValue(Map dataMap) {
-                final Put put = new Put(Bytes.toBytes(dataMap.remove("id").toString()));
-                put.setDurability(Durability.ASYNC_WAL);
-                dataMap.forEach((k, v) -> put.addColumn(Bytes.toBytes(FlinkRealtimeConstants.HBASE_COMMON_CF), Bytes.toBytes(String.valueOf(k)), Bytes.toBytes(String.valueOf(v))));
-                return put;
+                return toPut(dataMap);
             }
         });
     }
+
+    /**
+     * 记录转换为Put, id为rowkey, 其余字段写入公共列族
+     *
+     * @param dataMap
+     * @return
+     */
+    public static Put toPut(Map<?, ?> dataMap) {
+        // 不修改输入记录, 对象复用模式下记录可能被多个数据汇共享
+        final Put put = new Put(Bytes.toBytes(dataMap.get("id").toString()));
+        put.setDurability(Durability.ASYNC_WAL);
+        dataMap.forEach((k, v) -> {
+            if (!"id".equals(k) && !LatencyTracking.FIELD.equals(k)) {
+                put.addColumn(Bytes.toBytes(FlinkRealtimeConstants.HBASE_COMMON_CF), Bytes.toBytes(String.valueOf(k)), Bytes.toBytes(String.valueOf(v)));
+            }
+        });
+        return put;
+    }
 }
@@ -1,8 +1,12 @@
 package com.roc.sink;
 
-import com.roc.common.base.ObjectUtil;
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.LatencyTracking;
+import com.roc.metrics.RocMetrics;
 import com.roc.util.MysqlUtils;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,32 +29,39 @@ public class FlinkSimpleMysqlSink extends RichSinkFunction<Map<String, Object>>
     private String jdbcPassword;
     private String tableName;
 
-    private String selectSqlStr;
-    private String insertSqlStr;
-    private String updateSqlStr;
+    private MysqlSqlBuilder sqlBuilder;
+
+    private transient Counter records;
+    private transient Counter writeErrors;
+    private transient LatencyHistogram writeLatency;
+    private transient LatencyHistogram commitLatency;
 
     public FlinkSimpleMysqlSink(String jdbcUrl, String jdbcUserName, String jdbcPassword, String tableName) {
         this.jdbcUrl = jdbcUrl;
         this.jdbcUserName = jdbcUserName;
         this.jdbcPassword = jdbcPassword;
         this.tableName = tableName;
-        //初始化 sqlString
-        selectSqlStr = "select id from " + this.tableName + " where id=%s;";
-        insertSqlStr = "insert into " + this.tableName + " (%s) VALUES (%s);";
-        updateSqlStr = "update " + this.tableName + "%s where id=%s;";
+        this.sqlBuilder = new MysqlSqlBuilder(this.tableName);
     }
 
     @Override
     public void open(Configuration parameters) {
         mysqlUtils = new MysqlUtils(this.jdbcUrl, this.jdbcUserName, this.jdbcPassword);
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_OUT);
+        writeErrors = RocMetrics.counter(group, RocMetrics.WRITE_ERRORS);
+        writeLatency = RocMetrics.histogram(group, RocMetrics.WRITE_LATENCY);
+        commitLatency = RocMetrics.histogram(group, LatencyTracking.INGEST_TO_COMMIT);
     }
 
     @Override
     public void invoke(Map<String, Object> value, Context context) {
-        String selectSql = formatSelectSql(value);
-        String insertSql = formatInsertSql(value);
-        String updateSql = formatUpdateSql(value);
+        String selectSql = sqlBuilder.select(value);
+        String insertSql = sqlBuilder.insert(value);
+        String updateSql = sqlBuilder.update(value);
 
+        records.inc();
+        final long start = System.nanoTime();
         try {
             final List<Map<String, Object>> queryRes = mysqlUtils.query(selectSql);
             // 有就更新
@@ -60,59 +71,15 @@ public class FlinkSimpleMysqlSink extends RichSinkFunction<Map<String, Object>>
             } else {
                 mysqlUtils.insert(insertSql);
             }
+            final Long ingestTime = LatencyTracking.ingestTime(value);
+            if (null != ingestTime) {
+                commitLatency.update(LatencyTracking.since(ingestTime));
+            }
         } catch (Exception e) {
+            writeErrors.inc();
             LOG.error(e.getMessage(), e);
         }
-    }
-
-    private String formatSelectSql(Map<String, Object> value) {
-        checkId(value);
-        Object id = value.get("id");
-        return String.format(selectSqlStr, id instanceof String ? "'" + id + "'" : id);
-    }
-
-    private String formatInsertSql(Map<String, Object> value) {
-        checkId(value);
-        StringBuffer fields = new StringBuffer();
-        StringBuffer values = new StringBuffer();
-        value.forEach((k, v) -> {
-            fields.append(k);
-            fields.append(",");
-            if (v instanceof String) {
-                values.append("'");
-                values.append(v);
-                values.append("'");
-            } else {
-                values.append(v);
-            }
-            values.append(",");
-        });
-        return String.format(insertSqlStr, fields.substring(0, fields.length() - 1), values.substring(0, values.length() - 1));
-    }
-
-    private String formatUpdateSql(Map<String, Object> value) {
-        checkId(value);
-        Object id = value.remove("id");
-        StringBuffer values = new StringBuffer(" set ");
-        value.forEach((k, v) -> {
-            values.append(k);
-            values.append("=");
-            if (v instanceof String) {
-                values.append("'");
-                values.append(v);
-                values.append("'");
-            } else {
-                values.append(v);
-            }
-            values.append(",");
-        });
-        return String.format(updateSqlStr, values.substring(0, values.length() - 1), id instanceof String ? "'" + id + "'" : id);
-    }
-
-    private void checkId(Map<String, Object> value) {
-        if (null == value || value.size() == 0 || !value.containsKey("id") || ObjectUtil.isNull(value)) {
-            throw new IllegalArgumentException("'id' field is required and is not null");
-        }
+        writeLatency.update(RocMetrics.micros(start));
     }
 
     @Override
@@ -2,7 +2,12 @@ package com.roc.sink;
 
 import com.alibaba.fastjson.JSON;
 import com.roc.common.base.ObjectUtil;
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.LatencyTracking;
+import com.roc.metrics.RocMetrics;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.streaming.connectors.redis.RedisSink;
+import org.apache.flink.streaming.connectors.redis.common.config.FlinkJedisConfigBase;
 import org.apache.flink.streaming.connectors.redis.common.config.FlinkJedisPoolConfig;
 import org.apache.flink.streaming.connectors.redis.common.mapper.RedisCommand;
 import org.apache.flink.streaming.connectors.redis.common.mapper.RedisCommandDescription;
@@ -26,7 +31,7 @@ public class FlinkSimpleRedisSink implements Serializable {
     }
 
     public RedisSink build() {
-        return new RedisSink(new FlinkJedisPoolConfig.Builder().setHost(this.host).build(), new RedisMapper<Map<String, Object>>() {
+        return new CommitTrackingRedisSink(new FlinkJedisPoolConfig.Builder().setHost(this.host).build(), new RedisMapper<Map<String, Object>>() {
             @Override
             public RedisCommandDescription getCommandDescription() {
                 return new RedisCommandDescription(RedisCommand.SET, null);
@@ -43,8 +48,36 @@ public class FlinkSimpleRedisSink implements Serializable {
 
             @Override
             public String getValueFromData(Map<String, Object> data) {
-                return JSON.toJSONString(data);
+                return JSON.toJSONString(LatencyTracking.strip(data));
             }
         });
     }
+
+    /**
+     * 写入成功后统计采样记录 接入->提交 延迟
+     */
+    private static final class CommitTrackingRedisSink extends RedisSink<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private transient LatencyHistogram commitLatency;
+
+        CommitTrackingRedisSink(FlinkJedisConfigBase config, RedisMapper<Map<String, Object>> mapper) {
+            super(config, mapper);
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            commitLatency = RocMetrics.histogram(RocMetrics.group(getRuntimeContext().getMetricGroup()), LatencyTracking.INGEST_TO_COMMIT);
+        }
+
+        @Override
+        public void invoke(Map<String, Object> input) throws Exception {
+            super.invoke(input);
+            final Long ingestTime = LatencyTracking.ingestTime(input);
+            if (null != ingestTime) {
+                commitLatency.update(LatencyTracking.since(ingestTime));
+            }
+        }
+    }
 }
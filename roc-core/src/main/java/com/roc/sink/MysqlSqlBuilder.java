@@ -0,0 +1,86 @@
+package com.roc.sink;
+
+import com.roc.common.base.ObjectUtil;
+import com.roc.metrics.LatencyTracking;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * MysqlSqlBuilder
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/16
+ * @description mysql 数据汇按记录拼接 select / insert / update 语句, id 为主键
+ * 不修改输入记录, 对象复用模式下记录可能被多个数据汇共享
+ */
+public final class MysqlSqlBuilder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String selectSqlStr;
+    private final String insertSqlStr;
+    private final String updateSqlStr;
+
+    public MysqlSqlBuilder(String tableName) {
+        selectSqlStr = "select id from " + tableName + " where id=%s;";
+        insertSqlStr = "insert into " + tableName + " (%s) VALUES (%s);";
+        updateSqlStr = "update " + tableName + "%s where id=%s;";
+    }
+
+    public String select(Map<String, Object> value) {
+        checkId(value);
+        Object id = value.get("id");
+        return String.format(selectSqlStr, id instanceof String ? "'" + id + "'" : id);
+    }
+
+    public String insert(Map<String, Object> value) {
+        checkId(value);
+        StringBuffer fields = new StringBuffer();
+        StringBuffer values = new StringBuffer();
+        value.forEach((k, v) -> {
+            if (LatencyTracking.FIELD.equals(k)) {
+                return;
+            }
+            fields.append(k);
+            fields.append(",");
+            if (v instanceof String) {
+                values.append("'");
+                values.append(v);
+                values.append("'");
+            } else {
+                values.append(v);
+            }
+            values.append(",");
+        });
+        return String.format(insertSqlStr, fields.substring(0, fields.length() - 1), values.substring(0, values.length() - 1));
+    }
+
+    public String update(Map<String, Object> value) {
+        checkId(value);
+        Object id = value.get("id");
+        StringBuffer values = new StringBuffer(" set ");
+        value.forEach((k, v) -> {
+            if ("id".equals(k) || LatencyTracking.FIELD.equals(k)) {
+                return;
+            }
+            values.append(k);
+            values.append("=");
+            if (v instanceof String) {
+                values.append("'");
+                values.append(v);
+                values.append("'");
+            } else {
+                values.append(v);
+            }
+            values.append(",");
+        });
+        return String.format(updateSqlStr, values.substring(0, values.length() - 1), id instanceof String ? "'" + id + "'" : id);
+    }
+
+    private void checkId(Map<String, Object> value) {
+        if (null == value || value.size() == 0 || !value.containsKey("id") || ObjectUtil.isNull(value)) {
+            throw new IllegalArgumentException("'id' field is required and is not null");
+        }
+    }
+}
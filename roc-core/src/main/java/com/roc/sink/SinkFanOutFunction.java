@@ -0,0 +1,99 @@
+package com.roc.sink;
+
+import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.Expression;
+import com.roc.metrics.RocMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.functions.ProcessFunction;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SinkFanOutFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/10
+ * @description 多数据汇分发: 引擎输出只shuffle一次, 按数据汇过滤条件(aviator表达式)写入各自的侧输出, 数据汇与本算子链化
+ * 过滤条件执行异常视为不匹配; 不匹配任何数据汇的记录计为丢弃
+ */
+public class SinkFanOutFunction<T extends Map<String, Object>> extends ProcessFunction<T, T> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(SinkFanOutFunction.class);
+
+    private final List<OutputTag<T>> outputTags;
+    private final List<String> filters;
+
+    private transient Expression[] expressions;
+    private transient Counter records;
+    private transient Counter dropped;
+    private transient Counter filterErrors;
+    private transient Counter[] outputs;
+
+    /**
+     * @param outputTags 数据汇侧输出
+     * @param filters    与侧输出一一对应的过滤条件, 为空时全部输出
+     */
+    public SinkFanOutFunction(List<OutputTag<T>> outputTags, List<String> filters) {
+        if (outputTags.size() != filters.size()) {
+            throw new IllegalArgumentException("the number of output tags and filters must be equal");
+        }
+        this.outputTags = outputTags;
+        this.filters = filters;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        expressions = new Expression[filters.size()];
+        for (int i = 0; i < filters.size(); i++) {
+            if (StringUtils.isNotBlank(filters.get(i))) {
+                expressions[i] = AviatorEvaluator.compile(filters.get(i), true);
+            }
+        }
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_IN);
+        dropped = RocMetrics.counter(group, RocMetrics.DROPPED);
+        filterErrors = group.counter("filterErrors");
+        outputs = new Counter[outputTags.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = group.addGroup("sink", outputTags.get(i).getId()).counter(RocMetrics.RECORDS_OUT);
+        }
+    }
+
+    @Override
+    public void processElement(T value, Context ctx, Collector<T> out) {
+        records.inc();
+        boolean matched = false;
+        for (int i = 0; i < expressions.length; i++) {
+            if (matches(i, value)) {
+                ctx.output(outputTags.get(i), value);
+                outputs[i].inc();
+                matched = true;
+            }
+        }
+        if (!matched) {
+            dropped.inc();
+        }
+    }
+
+    private boolean matches(int i, T value) {
+        if (null == expressions[i]) {
+            return true;
+        }
+        try {
+            return Boolean.TRUE.equals(expressions[i].execute((Map) value));
+        } catch (RuntimeException e) {
+            filterErrors.inc();
+            LOG.debug("sink filter [{}] failed: {}", filters.get(i), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.roc.sink.hbase;
 
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.LatencyTracking;
+import com.roc.metrics.RocMetrics;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -13,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -32,6 +38,11 @@ public class HbaseSink<IN> extends RichSinkFunction<IN> {
     private HbaseMapper<IN> hbaseSinkMapper;
     private HbaseConnectorDescription hbaseConnectorDescription;
 
+    private transient Counter records;
+    private transient Counter writeErrors;
+    private transient LatencyHistogram writeLatency;
+    private transient LatencyHistogram commitLatency;
+
     public HbaseSink(HbaseMapper<IN> hbaseSinkMapper) {
         this.hbaseSinkMapper = hbaseSinkMapper;
     }
@@ -39,6 +50,11 @@ public class HbaseSink<IN> extends RichSinkFunction<IN> {
     @Override
     public void open(org.apache.flink.configuration.Configuration parameters) {
         hbaseConnectorDescription = hbaseSinkMapper.getConnectorDescription();
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_OUT);
+        writeErrors = RocMetrics.counter(group, RocMetrics.WRITE_ERRORS);
+        writeLatency = RocMetrics.histogram(group, RocMetrics.WRITE_LATENCY);
+        commitLatency = RocMetrics.histogram(group, LatencyTracking.INGEST_TO_COMMIT);
 
         Configuration conf = HBaseConfiguration.create();
         String host = StringUtils.EMPTY, port = StringUtils.EMPTY;
@@ -73,11 +89,19 @@ public class HbaseSink<IN> extends RichSinkFunction<IN> {
 
     @Override
     public void invoke(IN input, Context context) {
+        records.inc();
+        final long start = System.nanoTime();
         try (Table table = connection.getTable(TableName.valueOf(hbaseConnectorDescription.getTableName()))) {
             table.put(hbaseSinkMapper.getValue(input));
+            final Long ingestTime = input instanceof Map ? LatencyTracking.ingestTime((Map<?, ?>) input) : null;
+            if (null != ingestTime) {
+                commitLatency.update(LatencyTracking.since(ingestTime));
+            }
         } catch (Exception e) {
+            writeErrors.inc();
             LOG.error(e.getMessage(), e);
         }
+        writeLatency.update(RocMetrics.micros(start));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,341 @@
+package com.roc.source;
+
+import com.roc.entity.JobDetail;
+import com.roc.metrics.RocMetrics;
+import com.roc.util.ZipfSampler;
+import com.roc.util.schema.RowSchema;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.tuple.Tuple5;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+import org.apache.flink.types.Row;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FlinkSimpleDatagenSource
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/17
+ * @description 按字段定义生成数据的限速数据源, 用于规则上线前的容量评估, 参数见 SourceDetail.options:
+ * rows-per-second: 全部子任务合计速率, 默认1000, 小于等于0不限速
+ * number-of-rows: 全部子任务合计条数, 默认不限, 扩缩容恢复后按剩余条数重新均分
+ * keys: 字符串字段默认基数, 默认1000
+ * burst.rows-per-second / burst.interval / burst.duration: 每 interval 毫秒中前 duration 毫秒按突发速率生成
+ * seed: 随机种子
+ * fields.[字段].kind: random(默认) / sequence(全局不重复, 扩缩容恢复后从已用最大值之后继续, 可能跳号)
+ * fields.[字段].distribution: uniform(默认) / zipf / gaussian
+ * fields.[字段].min / max: 数值范围, 默认 [0, keys)
+ * fields.[字段].cardinality: 字符串取值基数(值为 字段名_序号)
+ * fields.[字段].values: 候选值(逗号分隔), 按分布选取
+ * fields.[字段].exponent: zipf指数, 默认1.0
+ * fields.[字段].max-delay: 时间字段最大延迟(毫秒), 用于模拟乱序
+ * 时间字段(timestampField 或 Long/Date类型且名为timestamp)取当前时间
+ */
+public class FlinkSimpleDatagenSource extends RichParallelSourceFunction<Row> implements CheckpointedFunction, ResultTypeQueryable<Row> {
+    private static final long serialVersionUID = 1L;
+
+    public static final String ROWS_PER_SECOND = "rows-per-second";
+    public static final String NUMBER_OF_ROWS = "number-of-rows";
+    public static final String KEYS = "keys";
+    public static final String BURST_ROWS_PER_SECOND = "burst.rows-per-second";
+    public static final String BURST_INTERVAL = "burst.interval";
+    public static final String BURST_DURATION = "burst.duration";
+    public static final String SEED = "seed";
+    private static final String FIELDS_PREFIX = "fields.";
+
+    // 速率控制粒度: 10ms
+    private static final long TICKS_PER_SECOND = 100;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+    // 不限速时每批条数
+    private static final int UNLIMITED_BATCH = 1024;
+
+    private final RowSchema schema;
+    private final boolean reuseRow;
+    private final long rowsPerSecond;
+    private final long numberOfRows;
+    private final long burstRowsPerSecond;
+    private final long burstInterval;
+    private final long burstDuration;
+    private final long seed;
+    private final FieldGenerator[] generators;
+
+    // 每个子任务的 (序号, 并行度, 序列起点, 本布局已生成条数, 之前布局合计条数), union 状态恢复时全部可见
+    private transient ListState<Tuple5<Integer, Integer, Long, Long, Long>> subtaskState;
+    // 本布局(并行度不变期间)已生成条数
+    private transient long emitted;
+    // sequence 起点, 扩缩容后跳过之前已用的值
+    private transient long offset;
+    // 之前布局合计已生成条数
+    private transient long restored;
+    private transient int subtaskIndex;
+    private transient int parallelism;
+    private transient Random random;
+    private transient Row row;
+    private transient Counter records;
+    private volatile boolean running = true;
+
+    public FlinkSimpleDatagenSource(JobDetail.SourceDetail sourceDetail, RowSchema schema) {
+        this(sourceDetail, schema, false);
+    }
+
+    /**
+     * @param sourceDetail
+     * @param schema       生成的字段
+     * @param reuseRow     对象复用: 每条记录写入同一行实例
+     */
+    public FlinkSimpleDatagenSource(JobDetail.SourceDetail sourceDetail, RowSchema schema, boolean reuseRow) {
+        final Map<String, String> options = null == sourceDetail.getOptions() ? Collections.emptyMap() : new HashMap<>(sourceDetail.getOptions());
+        this.schema = schema;
+        this.reuseRow = reuseRow;
+        this.rowsPerSecond = NumberUtils.toLong(options.get(ROWS_PER_SECOND), 1000L);
+        this.numberOfRows = NumberUtils.toLong(options.get(NUMBER_OF_ROWS), -1L);
+        this.burstRowsPerSecond = NumberUtils.toLong(options.get(BURST_ROWS_PER_SECOND), rowsPerSecond);
+        this.burstInterval = NumberUtils.toLong(options.get(BURST_INTERVAL), 0L);
+        this.burstDuration = NumberUtils.toLong(options.get(BURST_DURATION), 0L);
+        this.seed = NumberUtils.toLong(options.get(SEED), System.nanoTime());
+        final long keys = NumberUtils.toLong(options.get(KEYS), 1000L);
+        final String[] fieldNames = schema.getFieldNames();
+        this.generators = new FieldGenerator[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            final boolean timestamp = fieldNames[i].equals(sourceDetail.getTimestampField())
+                    || schema.getFieldClasses()[i] == Date.class || schema.getFieldClasses()[i] == java.sql.Timestamp.class
+                    || (StringUtils.isBlank(sourceDetail.getTimestampField()) && "timestamp".equals(fieldNames[i]));
+            generators[i] = new FieldGenerator(fieldNames[i], schema.getFieldClasses()[i], timestamp, keys, options);
+        }
+    }
+
+    @Override
+    public void initializeState(FunctionInitializationContext context) throws Exception {
+        subtaskIndex = getRuntimeContext().getIndexOfThisSubtask();
+        parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+        subtaskState = context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>("datagen-subtasks",
+                Types.TUPLE(Types.INT, Types.INT, Types.LONG, Types.LONG, Types.LONG)));
+        emitted = 0;
+        offset = 0;
+        restored = 0;
+        final List<Tuple5<Integer, Integer, Long, Long, Long>> subtasks = new ArrayList<>();
+        subtaskState.get().forEach(subtasks::add);
+        if (subtasks.isEmpty()) {
+            return;
+        }
+        if (subtasks.stream().allMatch(s -> s.f1 == parallelism)) {
+            // 并行度不变: 继续自己的序列
+            for (Tuple5<Integer, Integer, Long, Long, Long> subtask : subtasks) {
+                if (subtask.f0 == subtaskIndex) {
+                    offset = subtask.f2;
+                    emitted = subtask.f3;
+                    restored = subtask.f4;
+                }
+            }
+            return;
+        }
+        // 扩缩容: 合计已生成条数, 新序列从之前所有子任务的下一个值中的最大值开始
+        for (Tuple5<Integer, Integer, Long, Long, Long> subtask : subtasks) {
+            offset = Math.max(offset, subtask.f2 + subtask.f0 + subtask.f3 * subtask.f1);
+            restored = subtask.f4;
+        }
+        for (Tuple5<Integer, Integer, Long, Long, Long> subtask : subtasks) {
+            restored += subtask.f3;
+        }
+    }
+
+    @Override
+    public void snapshotState(FunctionSnapshotContext context) throws Exception {
+        subtaskState.clear();
+        subtaskState.add(Tuple5.of(subtaskIndex, parallelism, offset, emitted, restored));
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        random = new Random(seed + subtaskIndex);
+        records = RocMetrics.counter(RocMetrics.group(getRuntimeContext().getMetricGroup()), RocMetrics.RECORDS_OUT);
+    }
+
+    @Override
+    public void run(SourceContext<Row> ctx) throws Exception {
+        final long bound = numberOfRows < 0 ? -1 : share(Math.max(0, numberOfRows - restored));
+        final long start = System.currentTimeMillis();
+        long nextTick = System.nanoTime();
+        double budget = 0;
+        while (running && (bound < 0 || emitted < bound)) {
+            final long rate = share(burst(System.currentTimeMillis() - start) ? burstRowsPerSecond : rowsPerSecond);
+            if (rate <= 0) {
+                emit(ctx, UNLIMITED_BATCH, bound);
+                continue;
+            }
+            budget += (double) rate / TICKS_PER_SECOND;
+            final int batch = (int) budget;
+            budget -= batch;
+            emit(ctx, batch, bound);
+
+            nextTick += TICK_NANOS;
+            final long sleep = nextTick - System.nanoTime();
+            if (sleep > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            } else if (sleep < -TimeUnit.SECONDS.toNanos(1)) {
+                // 下游反压落后超过1秒时不再追赶
+                nextTick = System.nanoTime();
+            }
+        }
+    }
+
+    private void emit(SourceContext<Row> ctx, int batch, long bound) {
+        for (int n = 0; n < batch && running && (bound < 0 || emitted < bound); n++) {
+            final Row next = nextRow();
+            synchronized (ctx.getCheckpointLock()) {
+                ctx.collect(next);
+                emitted++;
+            }
+            records.inc();
+        }
+    }
+
+    private Row nextRow() {
+        final Row next;
+        if (reuseRow) {
+            if (null == row) {
+                row = new Row(generators.length);
+            }
+            next = row;
+        } else {
+            next = new Row(generators.length);
+        }
+        // sequence 字段按子任务交错, 全局不重复
+        final long sequence = offset + subtaskIndex + emitted * parallelism;
+        for (int i = 0; i < generators.length; i++) {
+            next.setField(i, schema.convert(i, generators[i].next(random, sequence)));
+        }
+        return next;
+    }
+
+    private boolean burst(long elapsed) {
+        return burstInterval > 0 && burstDuration > 0 && elapsed % burstInterval < burstDuration;
+    }
+
+    /**
+     * 合计值按子任务均分, 余数分给前几个子任务
+     */
+    private long share(long total) {
+        if (total <= 0) {
+            return total;
+        }
+        return total / parallelism + (subtaskIndex < total % parallelism ? 1 : 0);
+    }
+
+    @Override
+    public void cancel() {
+        running = false;
+    }
+
+    @Override
+    public TypeInformation<Row> getProducedType() {
+        return schema.getRowTypeInfo();
+    }
+
+    /**
+     * 单个字段的取值生成
+     */
+    static final class FieldGenerator implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final Class<?> type;
+        private final boolean timestamp;
+        private final String kind;
+        private final String distribution;
+        private final double min;
+        private final double max;
+        private final long cardinality;
+        private final String[] values;
+        private final double exponent;
+        private final long maxDelay;
+
+        private transient ZipfSampler zipfSampler;
+
+        FieldGenerator(String name, Class<?> type, boolean timestamp, long keys, Map<String, String> options) {
+            final String prefix = FIELDS_PREFIX + name + ".";
+            this.name = name;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.kind = options.getOrDefault(prefix + "kind", "random");
+            this.distribution = options.getOrDefault(prefix + "distribution", "uniform");
+            this.values = StringUtils.isBlank(options.get(prefix + "values")) ? null : options.get(prefix + "values").split("\\s*,\\s*");
+            this.cardinality = null != values ? values.length : NumberUtils.toLong(options.get(prefix + "cardinality"), keys);
+            this.min = NumberUtils.toDouble(options.get(prefix + "min"), 0D);
+            this.max = NumberUtils.toDouble(options.get(prefix + "max"), min + cardinality);
+            this.exponent = NumberUtils.toDouble(options.get(prefix + "exponent"), 1D);
+            this.maxDelay = NumberUtils.toLong(options.get(prefix + "max-delay"), 0L);
+            if (cardinality <= 0 || max < min) {
+                throw new IllegalArgumentException("invalid datagen options for field [" + name + "]");
+            }
+        }
+
+        Object next(Random random, long sequence) {
+            if (timestamp) {
+                final long now = System.currentTimeMillis();
+                return maxDelay > 0 ? now - (long) (random.nextDouble() * maxDelay) : now;
+            }
+            if ("sequence".equals(kind)) {
+                return type == String.class ? name + "_" + sequence : (long) min + sequence;
+            }
+            if (type == Boolean.class) {
+                return random.nextBoolean();
+            }
+            if (null != values) {
+                return values[(int) index(random)];
+            }
+            if (type == String.class) {
+                return name + "_" + index(random);
+            }
+            final double value = min + unit(random) * (max - min);
+            return type == Double.class || type == Float.class || type == java.math.BigDecimal.class ? value : (Object) (long) value;
+        }
+
+        /**
+         * [0, cardinality) 的序号
+         */
+        private long index(Random random) {
+            return Math.min(cardinality - 1, (long) (unit(random) * cardinality));
+        }
+
+        /**
+         * [0, 1) 的采样值
+         */
+        private double unit(Random random) {
+            switch (distribution) {
+                case "zipf":
+                    if (null == zipfSampler) {
+                        zipfSampler = new ZipfSampler((int) Math.min(Integer.MAX_VALUE, cardinality), exponent);
+                    }
+                    // 排名1(最热)对应最小值
+                    return (zipfSampler.sample(random) - 1D) / cardinality;
+                case "gaussian":
+                    // 均值居中, 3σ覆盖取值范围
+                    final double gaussian = 0.5 + random.nextGaussian() / 6D;
+                    return Math.max(0D, Math.min(Math.nextDown(1D), gaussian));
+                default:
+                    return random.nextDouble();
+            }
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.roc.source;
 
 import com.alibaba.fastjson.JSON;
 import com.roc.common.FlinkRealtimeConstants;
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.RocMetrics;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.transport.TransportClient;
@@ -39,6 +43,9 @@ public class FlinkSimpleElasticsearchSource extends RichSourceFunction<String> {
 
     private TransportClient transportClient;
 
+    private transient Counter records;
+    private transient LatencyHistogram readLatency;
+
     public FlinkSimpleElasticsearchSource(String clusterName, String xpackAuth, String esServers, String indexName) {
         this.clusterName = clusterName;
         this.xpackAuth = xpackAuth;
@@ -48,6 +55,9 @@ public class FlinkSimpleElasticsearchSource extends RichSourceFunction<String> {
 
     @Override
     public void open(Configuration parameters) throws Exception {
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_OUT);
+        readLatency = RocMetrics.histogram(group, RocMetrics.READ_LATENCY);
         final Settings.Builder builder = Settings.builder()
                 .put(ES_CLUSTER_NAME_KEY, clusterName)
                 .put(ES_SNIFF_KEY, true);
@@ -71,6 +81,7 @@ public class FlinkSimpleElasticsearchSource extends RichSourceFunction<String> {
         String scrollId = StringUtils.EMPTY;
         for (; ; ) {
             SearchResponse searchResponse;
+            final long start = System.nanoTime();
             if (StringUtils.isNotEmpty(scrollId)) {
                 searchResponse = transportClient.prepareSearchScroll(scrollId)
                         .setScroll(TimeValue.timeValueMinutes(30)).execute().actionGet();
@@ -84,6 +95,7 @@ public class FlinkSimpleElasticsearchSource extends RichSourceFunction<String> {
                         .execute()
                         .actionGet();
             }
+            readLatency.update(RocMetrics.micros(start));
             // 设置游标
             scrollId = searchResponse.getScrollId();
 
@@ -91,6 +103,7 @@ public class FlinkSimpleElasticsearchSource extends RichSourceFunction<String> {
             if (ArrayUtils.isNotEmpty(searchHits)) {
                 for (SearchHit hit : searchHits) {
                     ctx.collect(JSON.toJSONString(hit.getSource()));
+                    records.inc();
                 }
             }
         }
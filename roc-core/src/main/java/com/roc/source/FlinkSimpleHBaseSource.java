@@ -3,8 +3,12 @@ package com.roc.source;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.roc.common.FlinkRealtimeConstants;
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.RocMetrics;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
@@ -38,6 +42,10 @@ public class FlinkSimpleHBaseSource extends RichSourceFunction<String> {
 
     private String timeRange;
 
+    private transient Counter records;
+    private transient Counter bytes;
+    private transient LatencyHistogram readLatency;
+
     public FlinkSimpleHBaseSource(String zkServers, String tableName) {
         this(zkServers, tableName, null);
     }
@@ -50,6 +58,10 @@ public class FlinkSimpleHBaseSource extends RichSourceFunction<String> {
 
     @Override
     public void open(Configuration parameters) throws Exception {
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_OUT);
+        bytes = RocMetrics.counter(group, RocMetrics.BYTES_IN);
+        readLatency = RocMetrics.histogram(group, RocMetrics.READ_LATENCY);
         org.apache.hadoop.conf.Configuration conf = HBaseConfiguration.create();
         String[] sps = zkServers.split(",");
         String host = StringUtils.EMPTY, port = StringUtils.EMPTY;
@@ -79,15 +91,21 @@ public class FlinkSimpleHBaseSource extends RichSourceFunction<String> {
 
         ResultScanner rs = table.getScanner(scan);
         Iterator<Result> iterator = rs.iterator();
+        long start = System.nanoTime();
         while (iterator.hasNext()) {
             Map<String, String> resMap = new HashMap<>();
             Result result = iterator.next();
+            // 含扫描器按 caching 批量拉取的耗时
+            readLatency.update(RocMetrics.micros(start));
             for (Cell cell : result.listCells()) {
+                bytes.inc(cell.getValueLength());
                 String cellName = new String(CellUtil.cloneQualifier(cell));
                 String cellValue = new String(CellUtil.cloneValue(cell), "UTF-8").trim();
                 resMap.put(cellName, cellValue);
             }
             ctx.collect(JSON.toJSONString(resMap, SerializerFeature.WriteNullStringAsEmpty));
+            records.inc();
+            start = System.nanoTime();
         }
     }
 
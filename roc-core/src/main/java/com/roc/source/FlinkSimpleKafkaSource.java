@@ -1,5 +1,6 @@
 package com.roc.source;
 
+import org.apache.flink.api.common.serialization.DeserializationSchema;
 import org.apache.flink.api.common.serialization.SimpleStringSchema;
 import org.apache.flink.streaming.connectors.kafka.FlinkKafkaConsumer;
 
@@ -16,11 +17,17 @@ public class FlinkSimpleKafkaSource implements Serializable {
     private String bootstrapServers;
     private String groupId;
     private String topic;
+    private DeserializationSchema deserializationSchema;
 
     public FlinkSimpleKafkaSource(String bootstrapServers, String groupId, String topic) {
+        this(bootstrapServers, groupId, topic, new SimpleStringSchema());
+    }
+
+    public FlinkSimpleKafkaSource(String bootstrapServers, String groupId, String topic, DeserializationSchema deserializationSchema) {
         this.bootstrapServers = bootstrapServers;
         this.groupId = groupId;
         this.topic = topic;
+        this.deserializationSchema = deserializationSchema;
     }
 
     public FlinkKafkaConsumer build() {
@@ -33,7 +40,7 @@ public class FlinkSimpleKafkaSource implements Serializable {
             setProperty("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
             setProperty("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
         }};
-        return new FlinkKafkaConsumer<>(topic, new SimpleStringSchema(), properties);
+        return new FlinkKafkaConsumer<>(topic, deserializationSchema, properties);
     }
 
 }
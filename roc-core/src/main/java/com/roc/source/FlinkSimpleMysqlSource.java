@@ -1,8 +1,12 @@
 package com.roc.source;
 
 import com.alibaba.fastjson.JSON;
+import com.roc.metrics.LatencyHistogram;
+import com.roc.metrics.RocMetrics;
 import com.roc.util.MysqlUtils;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
 
 import java.util.List;
@@ -27,6 +31,9 @@ public class FlinkSimpleMysqlSource extends RichSourceFunction<String> {
     private Integer size = 1000;
     private Long offset = 0L;
 
+    private transient Counter records;
+    private transient LatencyHistogram readLatency;
+
 
     public FlinkSimpleMysqlSource(String jdbcUrl, String jdbcUserName, String jdbcPassword, String tableName) {
         this.jdbcUrl = jdbcUrl;
@@ -40,24 +47,31 @@ public class FlinkSimpleMysqlSource extends RichSourceFunction<String> {
     @Override
     public void open(Configuration parameters) throws Exception {
         mysqlUtils = new MysqlUtils(this.jdbcUrl, this.jdbcUserName, this.jdbcPassword);
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_OUT);
+        readLatency = RocMetrics.histogram(group, RocMetrics.READ_LATENCY);
     }
 
     @Override
     public void run(SourceContext<String> ctx) throws Exception {
         for (; ; ) {
             selectSqlStr += " limit " + offset + "," + size;
+            final long start = System.nanoTime();
             final List<Map<String, Object>> queryList = mysqlUtils.query(selectSqlStr);
+            readLatency.update(RocMetrics.micros(start));
             if (null != queryList) {
                 int resSize = queryList.size();
                 if (resSize >= size) {
                     offset += size;
                     queryList.forEach((m) -> {
                         ctx.collect(JSON.toJSONString(m));
+                        records.inc();
                     });
                     continue;
                 } else if (resSize > 0) {
                     queryList.forEach((m) -> {
                         ctx.collect(JSON.toJSONString(m));
+                        records.inc();
                     });
                 }
             }
@@ -0,0 +1,184 @@
+package com.roc.stream;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.roc.common.cql.CqlLint;
+import com.roc.util.schema.MapRecordTypeInfo;
+import com.roc.util.schema.RowSchema;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.types.Row;
+
+import java.util.Map;
+
+/**
+ * PartitionStrategy
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/09
+ * @description 上下游算子之间的分区策略, 格式: forward / rescale / rebalance / keyBy:field
+ * 未配置时不显式分区, 并行度一致时flink默认forward并链化算子, 不一致时默认rebalance
+ * keyBy 的key使用字段声明类型, 空值替换为该类型的固定key(见 {@link #nullKey(Class)}), 只用于数据分发, 下游不按该key保存状态
+ * siddhi分区模式按key保存状态, 不使用此处的keyBy, 分区字段为空的记录丢弃
+ */
+public enum PartitionStrategy {
+    NONE("none") {
+        @Override
+        <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType) {
+            return dataStream;
+        }
+    }, FORWARD("forward") {
+        // 上下游并行度必须一致
+        @Override
+        <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType) {
+            return dataStream.forward();
+        }
+    }, RESCALE("rescale") {
+        // 仅在本地上下游子任务间轮询, 不跨taskmanager全量shuffle
+        @Override
+        <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType) {
+            return dataStream.rescale();
+        }
+    }, REBALANCE("rebalance") {
+        @Override
+        <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType) {
+            return dataStream.rebalance();
+        }
+    }, KEY_BY("keyBy") {
+        @Override
+        <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType) {
+            return dataStream.keyBy(keySelector, keyType);
+        }
+    };
+
+    private static final String KEY_SEPARATOR = ":";
+
+    private final String name;
+
+    PartitionStrategy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 解析分区策略
+     *
+     * @param partition forward / rescale / rebalance / keyBy:field
+     * @return
+     */
+    public static PartitionStrategy get(String partition) {
+        if (StringUtils.isBlank(partition)) {
+            return NONE;
+        }
+        final String name = StringUtils.substringBefore(partition, KEY_SEPARATOR).trim();
+        for (PartitionStrategy strategy : values()) {
+            if (strategy.name.equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("the partition strategy [" + partition + "] is not supported");
+    }
+
+    /**
+     * keyBy 分区字段
+     *
+     * @param partition
+     * @return 非keyBy分区返回null
+     */
+    public static String keyField(String partition) {
+        // 校验分区策略, 字段解析与控制台共用
+        get(partition);
+        return CqlLint.keyField(partition);
+    }
+
+    /**
+     * 行流分区
+     *
+     * @param dataStream
+     * @param partition
+     * @param schema
+     * @return
+     */
+    public static DataStream<Row> partitionRows(DataStream<Row> dataStream, String partition, RowSchema schema) {
+        final PartitionStrategy strategy = get(partition);
+        if (strategy != KEY_BY) {
+            return strategy.partition(dataStream, null, null);
+        }
+        final String field = keyField(partition);
+        final int pos = schema.indexOf(field);
+        if (pos < 0) {
+            throw new IllegalArgumentException("the partition key [" + field + "] is not declared in " + schema);
+        }
+        final Object nullKey = nullKey(schema.getFieldClasses()[pos]);
+        return strategy.partition(dataStream, row -> {
+            final Object key = row.getField(pos);
+            return null == key ? nullKey : key;
+        }, (TypeInformation<Object>) schema.getTypeInformations()[pos]);
+    }
+
+    /**
+     * map流分区, key类型取 {@link MapRecordTypeInfo} 中字段的声明类型, 类型未知时按字符串分区
+     * 值与声明类型不一致时(如规则更新后输出类型变化)转换为声明类型
+     *
+     * @param dataStream
+     * @param partition
+     * @return
+     */
+    public static <M extends Map<String, Object>> DataStream<M> partitionMaps(DataStream<M> dataStream, String partition) {
+        final PartitionStrategy strategy = get(partition);
+        if (strategy != KEY_BY) {
+            return strategy.partition(dataStream, null, null);
+        }
+        final String field = keyField(partition);
+        final Class<?> declared = dataStream.getType() instanceof MapRecordTypeInfo ? ((MapRecordTypeInfo) dataStream.getType()).getFieldClass(field) : null;
+        final TypeInformation<Object> keyType = (TypeInformation<Object>) (null == declared ? null : BasicTypeInfo.getInfoFor(declared));
+        final Class<?> keyClass = null == keyType ? String.class : declared;
+        final Object nullKey = nullKey(keyClass);
+        return strategy.partition(dataStream, map -> {
+            final Object key = map.get(field);
+            if (null == key) {
+                return nullKey;
+            }
+            if (keyClass.isInstance(key)) {
+                return key;
+            }
+            return keyClass == String.class ? String.valueOf(key) : TypeUtils.cast(key, keyClass, ParserConfig.getGlobalInstance());
+        }, null == keyType ? (TypeInformation<Object>) (TypeInformation<?>) Types.STRING : keyType);
+    }
+
+    /**
+     * 空key替换后的固定key, 空key的记录与该值进入同一分区, 避免key selector空指针使作业失败
+     * 与该值的真实记录无法区分, 只适用于不按key保存状态的分发
+     *
+     * @param keyClass
+     * @return 字符串为空串, 数值为0, 布尔为false
+     */
+    public static Object nullKey(Class<?> keyClass) {
+        if (String.class == keyClass) {
+            return "";
+        } else if (Long.class == keyClass) {
+            return 0L;
+        } else if (Integer.class == keyClass) {
+            return 0;
+        } else if (Double.class == keyClass) {
+            return 0D;
+        } else if (Float.class == keyClass) {
+            return 0F;
+        } else if (Boolean.class == keyClass) {
+            return false;
+        } else if (Character.class == keyClass) {
+            return Character.MIN_VALUE;
+        }
+        throw new IllegalArgumentException("the key type [" + keyClass.getName() + "] is not supported");
+    }
+
+    abstract <T> DataStream<T> partition(DataStream<T> dataStream, KeySelector<T, Object> keySelector, TypeInformation<Object> keyType);
+}
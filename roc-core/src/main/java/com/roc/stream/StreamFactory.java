@@ -1,17 +1,33 @@
 package com.roc.stream;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.parser.Feature;
 import com.roc.entity.JobDetail;
+import com.roc.metrics.IngestTimeFunction;
+import com.roc.metrics.LatencyTracking;
 import com.roc.util.SourceSinkConstructor;
+import com.roc.util.StreamOperatorUtils;
+import com.roc.util.schema.JsonRowParseFunction;
+import com.roc.util.schema.MapRecordTypeInfo;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.RowTimestampAssigner;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
 import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
 import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.connectors.kafka.FlinkKafkaConsumerBase;
+import org.apache.flink.types.Row;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -23,9 +39,22 @@ import java.util.stream.Collectors;
  * @description
  */
 public interface StreamFactory {
+    // 默认输出流, 数据汇未指定 stream 时使用
+    String DEFAULT_OUTPUT_STREAM = "outputStream";
 
     <T> DataStream<T> convert(JobDetail jobDetail, StreamExecutionEnvironment env);
 
+    /**
+     * 引擎的所有输出流, 默认只有一个输出流
+     *
+     * @param jobDetail
+     * @param env
+     * @return 输出流名称 -> 输出流
+     */
+    default <T> Map<String, DataStream<T>> convertAll(JobDetail jobDetail, StreamExecutionEnvironment env) {
+        return Collections.singletonMap(DEFAULT_OUTPUT_STREAM, convert(jobDetail, env));
+    }
+
     /**
      * 构建原始数据源流
      *
@@ -34,28 +63,81 @@ public interface StreamFactory {
      * @return
      */
     default TransformStream buildSourceStream(JobDetail.SourceDetail sourceDetail, StreamExecutionEnvironment env) {
-        DataStream<String> sourcedDataStream = env.addSource(SourceSinkConstructor.newSourceFunction(sourceDetail));
-        // 获取数据源中字段名和类型
-        final String inputFields = sourceDetail.getFields();
-        String[] fieldList = null, typeList = null;
-        if (StringUtils.isNoneBlank(inputFields)) {
-            final String[] splitFields = inputFields.split(",");
-            int len = splitFields.length;
-            fieldList = new String[len];
-            typeList = new String[len];
-            for (int i = 0; i < len; i++) {
-                final String[] ft = splitFields[i].split(" ");
-                fieldList[i] = ft[0];
-                typeList[i] = ft[1];
+        return buildSourceStream(sourceDetail, null, env);
+    }
+
+    /**
+     * 构建原始数据源流, 仅解码被引用的字段
+     *
+     * @param sourceDetail
+     * @param referencedFields 为空时解码全部字段
+     * @param env
+     * @return
+     */
+    default TransformStream buildSourceStream(JobDetail.SourceDetail sourceDetail, Set<String> referencedFields, StreamExecutionEnvironment env) {
+        return buildSourceStream(sourceDetail, referencedFields, true, env);
+    }
+
+    /**
+     * 构建原始数据源流, 仅解码被引用的字段
+     *
+     * @param sourceDetail
+     * @param referencedFields 为空时解码全部字段
+     * @param partition        是否按数据源声明的策略分区, 引擎在自身输入上分区时为false(避免两次shuffle)
+     * @param env
+     * @return
+     */
+    default TransformStream buildSourceStream(JobDetail.SourceDetail sourceDetail, Set<String> referencedFields, boolean partition, StreamExecutionEnvironment env) {
+        // 编译数据源字段定义, 分区字段与时间字段需保留
+        if (null != referencedFields) {
+            referencedFields = new HashSet<>(referencedFields);
+            final String keyField = PartitionStrategy.keyField(sourceDetail.getPartition());
+            if (null != keyField) {
+                referencedFields.add(keyField);
+            }
+            if (StringUtils.isNotBlank(sourceDetail.getTimestampField())) {
+                referencedFields.add(sourceDetail.getTimestampField());
             }
         }
+        RowSchema schema = RowSchema.compile(sourceDetail.getFields()).project(referencedFields);
+        // 延迟跟踪: 追加接入时间字段, 字段裁剪时同样保留
+        final Double samplePercent = LatencyTracking.samplePercent(env.getConfig());
+        final boolean trackLatency = null != samplePercent;
+        if (trackLatency) {
+            schema = schema.append(LatencyTracking.FIELD, LatencyTracking.FIELD_TYPE);
+        }
+        final boolean reuse = reuseRecords(env);
+        final SourceFunction<?> sourceFunction = SourceSinkConstructor.newSourceFunction(sourceDetail, schema, reuse);
+        DataStream<?> sourcedDataStream = configure(env.addSource(sourceFunction), sourceDetail);
 
-        return new TransformStream(sourceDetail.getId(), sourcedDataStream.rebalance().map(new MapFunction<String, LinkedHashMap<String, Object>>() {
-            @Override
-            public LinkedHashMap<String, Object> map(String value) throws Exception {
-                return JSON.parseObject(value, LinkedHashMap.class, Feature.OrderedField);
+        DataStream<Row> rowDataStream;
+        if (sourcedDataStream.getType() instanceof RowTypeInfo) {
+            // 数据源内已直接解码为行(kafka / datagen)
+            rowDataStream = (DataStream<Row>) sourcedDataStream;
+        } else {
+            // 解码与数据源链化, 不额外shuffle
+            rowDataStream = ((DataStream<String>) sourcedDataStream)
+                    .flatMap(new JsonRowParseFunction(schema, reuse))
+                    .returns(schema.getRowTypeInfo());
+            rowDataStream = configure(rowDataStream, sourceDetail);
+        }
+        // 接入时间在解码后写入, 与数据源链化
+        if (trackLatency) {
+            rowDataStream = configure(rowDataStream.map(new IngestTimeFunction(schema.indexOf(LatencyTracking.FIELD), samplePercent))
+                    .returns(schema.getRowTypeInfo()).name("ingest-time"), sourceDetail);
+        }
+        // kafka消费者内已按分区生成水位线, 其余数据源解码后生成
+        if (!(sourceFunction instanceof FlinkKafkaConsumerBase)) {
+            final WatermarkStrategy<Row> watermarkStrategy = RowTimestampAssigner.forSource(sourceDetail, schema);
+            if (null != watermarkStrategy) {
+                rowDataStream = configure(rowDataStream.assignTimestampsAndWatermarks(watermarkStrategy), sourceDetail);
             }
-        }), typeList, fieldList);
+        }
+        // 数据源 -> 引擎 的分区
+        if (partition) {
+            rowDataStream = PartitionStrategy.partitionRows(rowDataStream, sourceDetail.getPartition(), schema);
+        }
+        return new TransformStream(sourceDetail.getId(), rowDataStream, schema);
     }
 
     /**
@@ -64,26 +146,170 @@ public interface StreamFactory {
      * @return
      */
     default List<TransformStream> buildSourceStreams(List<JobDetail.SourceDetail> sourceDetailList, StreamExecutionEnvironment env) {
+        return buildSourceStreams(sourceDetailList, Collections.emptyMap(), env);
+    }
+
+    /**
+     * @param sourceDetailList
+     * @param projections      数据源id -> 被引用的字段
+     * @param env
+     * @return
+     */
+    default List<TransformStream> buildSourceStreams(List<JobDetail.SourceDetail> sourceDetailList, Map<String, Set<String>> projections, StreamExecutionEnvironment env) {
+        return buildSourceStreams(sourceDetailList, projections, true, env);
+    }
+
+    /**
+     * @param sourceDetailList
+     * @param projections      数据源id -> 被引用的字段
+     * @param partition        是否按数据源声明的策略分区
+     * @param env
+     * @return
+     */
+    default List<TransformStream> buildSourceStreams(List<JobDetail.SourceDetail> sourceDetailList, Map<String, Set<String>> projections, boolean partition, StreamExecutionEnvironment env) {
         return new ArrayList<TransformStream>(sourceDetailList.size()) {{
-            sourceDetailList.forEach(sourceDetail -> add(buildSourceStream(sourceDetail, env)));
+            sourceDetailList.forEach(sourceDetail -> add(buildSourceStream(sourceDetail, projections.get(sourceDetail.getId()), partition, env)));
         }};
     }
 
     /**
-     * 多流合并
+     * 引擎是否允许复用输入记录: 引擎算子不缓存输入记录的引用时返回true
+     *
+     * @param env
+     * @return
+     */
+    default boolean objectReuseSafe(StreamExecutionEnvironment env) {
+        return false;
+    }
+
+    /**
+     * 开启对象复用且引擎允许时, 数据源解码复用行实例
+     *
+     * @param env
+     * @return
+     */
+    default boolean reuseRecords(StreamExecutionEnvironment env) {
+        return env.getConfig().isObjectReuseEnabled() && objectReuseSafe(env);
+    }
+
+    /**
+     * 数据源算子资源
+     *
+     * @param dataStream
+     * @param sourceDetail
+     * @return
+     */
+    default <T> DataStream<T> configure(DataStream<T> dataStream, JobDetail.SourceDetail sourceDetail) {
+        return StreamOperatorUtils.configure(dataStream, sourceDetail.getParallelism(), sourceDetail.getMaxParallelism(), sourceDetail.getSlotSharingGroup());
+    }
+
+    /**
+     * 引擎算子资源
+     *
+     * @param dataStream
+     * @param jobDetail
+     * @return
+     */
+    default <T> DataStream<T> configure(DataStream<T> dataStream, JobDetail jobDetail) {
+        return StreamOperatorUtils.configure(dataStream, jobDetail.getParallelism(), jobDetail.getMaxParallelism(), jobDetail.getSlotSharingGroup());
+    }
+
+    /**
+     * 多流合并, 行转化为有序map供基于map的引擎使用
      *
      * @param transformStreams
      * @return
      */
     default <T> DataStream<T> union(List<TransformStream> transformStreams) {
+        // 合并后的流类型需一致, 使用所有数据源字段作为字典
+        final MapRecordTypeInfo typeInfo = recordType(transformStreams);
         TransformStream transformStream = transformStreams.remove(0);
-        DataStream<T> dataStream = (DataStream<T>) transformStream.getDataStream();
+        DataStream<T> dataStream = (DataStream<T>) toMapStream(transformStream, typeInfo);
         //　单流
         if (transformStreams.isEmpty()) {
             return dataStream;
         }
         // 多流
-        DataStream[] dataStreams = transformStreams.stream().map(ts -> ts.getDataStream()).collect(Collectors.toList()).toArray(new DataStream[]{});
+        DataStream[] dataStreams = transformStreams.stream().map(ts -> toMapStream(ts, typeInfo)).collect(Collectors.toList()).toArray(new DataStream[]{});
         return dataStream.union(dataStreams);
     }
+
+    /**
+     * 行流转化为map流
+     *
+     * @param transformStream
+     * @param typeInfo
+     * @return
+     */
+    default DataStream<Map<String, Object>> toMapStream(TransformStream transformStream, MapRecordTypeInfo typeInfo) {
+        final RowSchema schema = transformStream.getSchema();
+        final int ingestPos = schema.indexOf(LatencyTracking.FIELD);
+        if (ingestPos < 0) {
+            return transformStream.getDataStream()
+                    .map((MapFunction<Row, Map<String, Object>>) schema::toMap)
+                    .returns(typeInfo);
+        }
+        return transformStream.getDataStream()
+                .map((MapFunction<Row, Map<String, Object>>) row -> {
+                    final Map<String, Object> map = schema.toMap(row);
+                    // 未采样的记录不带接入时间字段
+                    if (null == row.getField(ingestPos)) {
+                        map.remove(LatencyTracking.FIELD);
+                    }
+                    return map;
+                })
+                .returns(typeInfo);
+    }
+
+    /**
+     * 所有数据源字段(去重, 保持声明顺序)及类型, 同名字段类型不一致时类型未知
+     *
+     * @param transformStreams
+     * @return
+     */
+    default MapRecordTypeInfo recordType(List<TransformStream> transformStreams) {
+        final Map<String, Class<?>> fields = new LinkedHashMap<>();
+        final Set<String> conflicts = new HashSet<>();
+        for (TransformStream ts : transformStreams) {
+            final RowSchema schema = ts.getSchema();
+            for (int i = 0; i < schema.getArity(); i++) {
+                final Class<?> previous = fields.putIfAbsent(schema.getFieldNames()[i], schema.getFieldClasses()[i]);
+                if (null != previous && previous != schema.getFieldClasses()[i]) {
+                    conflicts.add(schema.getFieldNames()[i]);
+                }
+            }
+        }
+        conflicts.forEach(field -> fields.put(field, null));
+        return new MapRecordTypeInfo(fields.keySet().toArray(new String[0]), fields.values().toArray(new Class<?>[0]));
+    }
+
+    /**
+     * 引擎输出的map流使用 {@link MapRecordTypeInfo} 序列化, 替代kryo
+     * 输出类型已被使用时追加一个链化的转换算子, 需在引擎算子资源设置之后调用
+     *
+     * @param dataStream
+     * @param recordType 已知的输出字段
+     * @return
+     */
+    default <T> DataStream<T> withRecordType(DataStream<T> dataStream, MapRecordTypeInfo recordType) {
+        if (null == dataStream || !Map.class.isAssignableFrom(dataStream.getType().getTypeClass())) {
+            return dataStream;
+        }
+        final TypeInformation<T> typeInfo = (TypeInformation<T>) recordType;
+        if (dataStream instanceof SingleOutputStreamOperator) {
+            try {
+                return ((SingleOutputStreamOperator<T>) dataStream).returns(typeInfo);
+            } catch (IllegalStateException e) {
+                // 输出类型已被使用
+            }
+        }
+        // 与引擎算子并行度一致, 保证链化
+        final SingleOutputStreamOperator<T> recordStream = dataStream.map((MapFunction<T, T>) value -> value)
+                .returns(typeInfo)
+                .setParallelism(dataStream.getParallelism());
+        if (dataStream.getTransformation().getMaxParallelism() > 0) {
+            recordStream.setMaxParallelism(dataStream.getTransformation().getMaxParallelism());
+        }
+        return recordStream;
+    }
 }
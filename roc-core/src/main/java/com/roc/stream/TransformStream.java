@@ -1,11 +1,11 @@
 package com.roc.stream;
 
 
+import com.roc.util.schema.RowSchema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.apache.flink.streaming.api.datastream.DataStream;
-
-import java.util.LinkedHashMap;
+import org.apache.flink.types.Row;
 
 /**
  * TransformStream
@@ -19,7 +19,6 @@ import java.util.LinkedHashMap;
 @AllArgsConstructor
 public class TransformStream {
     private String streamId;
-    private DataStream<LinkedHashMap<String, Object>> dataStream;
-    private String[] types;
-    private String[] fields;
+    private DataStream<Row> dataStream;
+    private RowSchema schema;
 }
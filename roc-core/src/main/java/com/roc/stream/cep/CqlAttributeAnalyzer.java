@@ -0,0 +1,268 @@
+package com.roc.stream.cep;
+
+import io.siddhi.query.api.SiddhiApp;
+import io.siddhi.query.api.execution.ExecutionElement;
+import io.siddhi.query.api.execution.partition.Partition;
+import io.siddhi.query.api.execution.query.Query;
+import io.siddhi.query.api.execution.query.input.handler.Filter;
+import io.siddhi.query.api.execution.query.input.handler.StreamFunction;
+import io.siddhi.query.api.execution.query.input.handler.StreamHandler;
+import io.siddhi.query.api.execution.query.input.handler.Window;
+import io.siddhi.query.api.execution.query.input.stream.InputStream;
+import io.siddhi.query.api.execution.query.input.stream.JoinInputStream;
+import io.siddhi.query.api.execution.query.input.stream.SingleInputStream;
+import io.siddhi.query.api.execution.query.selection.OrderByAttribute;
+import io.siddhi.query.api.execution.query.selection.OutputAttribute;
+import io.siddhi.query.api.execution.query.selection.Selector;
+import io.siddhi.query.api.expression.AttributeFunction;
+import io.siddhi.query.api.expression.Expression;
+import io.siddhi.query.api.expression.Variable;
+import io.siddhi.query.api.expression.condition.And;
+import io.siddhi.query.api.expression.condition.Compare;
+import io.siddhi.query.api.expression.condition.In;
+import io.siddhi.query.api.expression.condition.IsNull;
+import io.siddhi.query.api.expression.condition.Not;
+import io.siddhi.query.api.expression.condition.Or;
+import io.siddhi.query.api.expression.constant.Constant;
+import io.siddhi.query.api.expression.math.Add;
+import io.siddhi.query.api.expression.math.Divide;
+import io.siddhi.query.api.expression.math.Mod;
+import io.siddhi.query.api.expression.math.Multiply;
+import io.siddhi.query.api.expression.math.Subtract;
+import io.siddhi.query.compiler.SiddhiCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CqlAttributeAnalyzer
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/08
+ * @description 分析编译后的siddhi查询, 统计每个输入流被引用的字段, 用于数据源解码时的字段裁剪
+ */
+public final class CqlAttributeAnalyzer {
+    private static final Logger LOG = LoggerFactory.getLogger(CqlAttributeAnalyzer.class);
+    // siddhi app 语法要求以定义开头, 输入流定义由运行时补齐, 这里只需占位
+    private static final String PLACEHOLDER_DEFINITION = "define stream rocAnalyzerPlaceholder (v int);\n";
+
+    // 输入流 -> 被引用的字段
+    private final Map<String, Set<String>> referencedAttributes = new HashMap<>();
+    // 需要全部字段的输入流(select * / pattern / partition / 无法识别的表达式)
+    private final Set<String> fullStreams = new HashSet<>();
+    // 输出流 -> 输出字段
+    private final Map<String, Set<String>> outputAttributes = new HashMap<>();
+    private boolean analyzed = true;
+
+    private CqlAttributeAnalyzer() {
+    }
+
+    /**
+     * 分析cql, 解析失败时不做裁剪
+     *
+     * @param cql
+     * @return
+     */
+    public static CqlAttributeAnalyzer analyze(String cql) {
+        final CqlAttributeAnalyzer analyzer = new CqlAttributeAnalyzer();
+        try {
+            final SiddhiApp siddhiApp = SiddhiCompiler.parse(PLACEHOLDER_DEFINITION + cql);
+            for (ExecutionElement element : siddhiApp.getExecutionElementList()) {
+                if (element instanceof Query) {
+                    analyzer.analyzeQuery((Query) element);
+                } else if (element instanceof Partition) {
+                    for (Query query : ((Partition) element).getQueryList()) {
+                        analyzer.fullStreams.addAll(query.getInputStream().getUniqueStreamIds());
+                    }
+                    analyzer.fullStreams.addAll(((Partition) element).getPartitionTypeMap().keySet());
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("cql attribute analysis failed, projection pushdown disabled: " + e.getMessage());
+            analyzer.analyzed = false;
+        }
+        return analyzer;
+    }
+
+    /**
+     * 输入流需要的字段
+     *
+     * @param streamId
+     * @return 需要全部字段时返回null
+     */
+    public Set<String> getReferencedAttributes(String streamId) {
+        if (!analyzed || fullStreams.contains(streamId)) {
+            return null;
+        }
+        return referencedAttributes.get(streamId);
+    }
+
+    /**
+     * 所有输入流需要的字段
+     *
+     * @param streamIds
+     * @return
+     */
+    public Map<String, Set<String>> getReferencedAttributes(List<String> streamIds) {
+        final Map<String, Set<String>> projections = new HashMap<>(streamIds.size());
+        for (String streamId : streamIds) {
+            projections.put(streamId, getReferencedAttributes(streamId));
+        }
+        return projections;
+    }
+
+    /**
+     * 是否为查询的输出流(insert into)
+     *
+     * @param streamId
+     * @return 解析失败时返回true, 由运行时校验
+     */
+    public boolean hasOutputStream(String streamId) {
+        return !analyzed || outputAttributes.containsKey(streamId);
+    }
+
+    /**
+     * 输出流的字段
+     *
+     * @param streamId
+     * @return 无法识别时返回空数组
+     */
+    public String[] getOutputAttributes(String streamId) {
+        final Set<String> attributes = outputAttributes.get(streamId);
+        return null == attributes ? new String[0] : attributes.toArray(new String[0]);
+    }
+
+    private void analyzeQuery(Query query) {
+        if (null != query.getOutputStream() && null != query.getOutputStream().getId()) {
+            final Set<String> outputs = outputAttributes.computeIfAbsent(query.getOutputStream().getId(), k -> new LinkedHashSet<>());
+            for (OutputAttribute outputAttribute : query.getSelector().getSelectionList()) {
+                if (null != outputAttribute.getRename()) {
+                    outputs.add(outputAttribute.getRename());
+                }
+            }
+        }
+        final InputStream inputStream = query.getInputStream();
+        final List<String> streamIds = inputStream.getUniqueStreamIds();
+        final Set<String> attributes = new HashSet<>();
+
+        boolean full;
+        if (inputStream instanceof SingleInputStream) {
+            full = !collect(inputStream, attributes);
+        } else if (inputStream instanceof JoinInputStream) {
+            final JoinInputStream join = (JoinInputStream) inputStream;
+            full = !(collect(join.getLeftInputStream(), attributes)
+                    && collect(join.getRightInputStream(), attributes)
+                    && collect(join.getOnCompare(), attributes));
+        } else {
+            // pattern / sequence
+            full = true;
+        }
+        full = full || !collect(query.getSelector(), attributes);
+
+        for (String streamId : streamIds) {
+            if (full) {
+                fullStreams.add(streamId);
+            } else {
+                referencedAttributes.computeIfAbsent(streamId, k -> new HashSet<>()).addAll(attributes);
+            }
+        }
+    }
+
+    private boolean collect(InputStream inputStream, Set<String> attributes) {
+        if (!(inputStream instanceof SingleInputStream)) {
+            return false;
+        }
+        for (StreamHandler handler : ((SingleInputStream) inputStream).getStreamHandlers()) {
+            // filter / window / stream function 的参数
+            if (!(handler instanceof Filter || handler instanceof Window || handler instanceof StreamFunction)
+                    || !collect(handler.getParameters(), attributes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean collect(Selector selector, Set<String> attributes) {
+        final List<OutputAttribute> selectionList = selector.getSelectionList();
+        // select *
+        if (selectionList.isEmpty()) {
+            return false;
+        }
+        for (OutputAttribute outputAttribute : selectionList) {
+            if (!collect(outputAttribute.getExpression(), attributes)) return false;
+        }
+        for (Variable variable : selector.getGroupByList()) {
+            attributes.add(variable.getAttributeName());
+        }
+        for (OrderByAttribute orderByAttribute : selector.getOrderByList()) {
+            attributes.add(orderByAttribute.getVariable().getAttributeName());
+        }
+        return collect(selector.getHavingExpression(), attributes);
+    }
+
+    private boolean collect(Expression[] expressions, Set<String> attributes) {
+        if (null != expressions) {
+            for (Expression expression : expressions) {
+                if (!collect(expression, attributes)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 递归收集表达式引用的字段, 遇到无法识别的表达式返回false
+     */
+    private boolean collect(Expression expression, Set<String> attributes) {
+        if (null == expression || expression instanceof Constant) {
+            return true;
+        }
+        if (expression instanceof Variable) {
+            attributes.add(((Variable) expression).getAttributeName());
+            return true;
+        }
+        if (expression instanceof AttributeFunction) {
+            return collect(((AttributeFunction) expression).getParameters(), attributes);
+        }
+        if (expression instanceof Add) {
+            return collect(((Add) expression).getLeftValue(), attributes) && collect(((Add) expression).getRightValue(), attributes);
+        }
+        if (expression instanceof Subtract) {
+            return collect(((Subtract) expression).getLeftValue(), attributes) && collect(((Subtract) expression).getRightValue(), attributes);
+        }
+        if (expression instanceof Multiply) {
+            return collect(((Multiply) expression).getLeftValue(), attributes) && collect(((Multiply) expression).getRightValue(), attributes);
+        }
+        if (expression instanceof Divide) {
+            return collect(((Divide) expression).getLeftValue(), attributes) && collect(((Divide) expression).getRightValue(), attributes);
+        }
+        if (expression instanceof Mod) {
+            return collect(((Mod) expression).getLeftValue(), attributes) && collect(((Mod) expression).getRightValue(), attributes);
+        }
+        if (expression instanceof And) {
+            return collect(((And) expression).getLeftExpression(), attributes) && collect(((And) expression).getRightExpression(), attributes);
+        }
+        if (expression instanceof Or) {
+            return collect(((Or) expression).getLeftExpression(), attributes) && collect(((Or) expression).getRightExpression(), attributes);
+        }
+        if (expression instanceof Compare) {
+            return collect(((Compare) expression).getLeftExpression(), attributes) && collect(((Compare) expression).getRightExpression(), attributes);
+        }
+        if (expression instanceof Not) {
+            return collect(((Not) expression).getExpression(), attributes);
+        }
+        if (expression instanceof IsNull) {
+            return collect(((IsNull) expression).getExpression(), attributes);
+        }
+        if (expression instanceof In) {
+            return collect(((In) expression).getExpression(), attributes);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+package com.roc.stream.cep;
+
+import com.roc.common.cql.CqlLint;
+import com.roc.entity.JobDetail;
+import com.roc.metrics.LatencyTracking;
+import com.roc.stream.PartitionStrategy;
+import com.roc.stream.StreamFactory;
+import com.roc.util.schema.RowSchema;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.query.api.definition.StreamDefinition;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * CqlValidator
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/23
+ * @description 作业提交时校验cql: 按数据源字段定义与扩展函数在本地siddhi中编译, 检查数据汇引用的输出流, 并做静态检查(无界窗口 / 缺少 within / 未分区的模式)
+ * 编译错误抛出 IllegalArgumentException, 静态检查结果以警告返回, 不阻止提交
+ */
+public final class CqlValidator {
+
+    private CqlValidator() {
+    }
+
+    /**
+     * @param cql       规则内容(可使用 ${0}..${n} 引用数据源)
+     * @param jobDetail
+     * @return 警告
+     */
+    public static List<String> validate(String cql, JobDetail jobDetail) {
+        if (null == jobDetail.getSources() || jobDetail.getSources().isEmpty()) {
+            throw new IllegalArgumentException("at least one source is required");
+        }
+        final List<String> streamIds = jobDetail.getSources().stream().map(JobDetail.SourceDetail::getId).collect(Collectors.toList());
+        final boolean trackLatency = null != jobDetail.getLatencySamplePercent() && jobDetail.getLatencySamplePercent() > 0;
+        final StringBuilder app = new StringBuilder();
+        boolean keyed = true;
+        for (JobDetail.SourceDetail source : jobDetail.getSources()) {
+            RowSchema schema = RowSchema.compile(source.getFields());
+            if (trackLatency) {
+                schema = schema.append(LatencyTracking.FIELD, LatencyTracking.FIELD_TYPE);
+            }
+            app.append(SiddhiStreamConverter.streamDefinition(source.getId(), schema));
+            keyed &= null != PartitionStrategy.keyField(source.getPartition());
+        }
+        app.append(SiddhiStreamConverter.cqlFormat(cql, streamIds));
+
+        // 语法解析与静态检查
+        final List<String> warnings = CqlLint.lint(app.toString(), keyed);
+        // 编译(字段 / 函数 / 类型)
+        compile(app.toString(), sinkStreams(jobDetail.getSinks()));
+        return warnings;
+    }
+
+    private static void compile(String siddhiApp, List<String> sinkStreams) {
+        final Map<String, StreamDefinition> definitions = streamDefinitions(siddhiApp);
+        for (String stream : sinkStreams) {
+            if (!definitions.containsKey(stream)) {
+                throw new IllegalArgumentException("the sink stream [" + stream + "] is not an output stream of the cql");
+            }
+        }
+    }
+
+    /**
+     * 在本地siddhi中编译(含扩展函数), 返回输入 / 输出流定义
+     *
+     * @param siddhiApp 输入流定义 + cql
+     * @return 流id -> 流定义
+     */
+    static Map<String, StreamDefinition> streamDefinitions(String siddhiApp) {
+        final SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime runtime = null;
+        try {
+            SiddhiStreamConverter.registryFunction().forEach(siddhiManager::setExtension);
+            runtime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+            return new HashMap<>(runtime.getStreamDefinitionMap());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("cql compile error: " + e.getMessage(), e);
+        } finally {
+            if (null != runtime) {
+                runtime.shutdown();
+            }
+            siddhiManager.shutdown();
+        }
+    }
+
+    private static List<String> sinkStreams(List<JobDetail.SinkDetail> sinks) {
+        final List<String> streams = new ArrayList<>();
+        if (null != sinks) {
+            sinks.forEach(sink -> streams.add(StringUtils.defaultIfBlank(sink.getStream(), StreamFactory.DEFAULT_OUTPUT_STREAM)));
+        }
+        if (streams.isEmpty()) {
+            streams.add(StreamFactory.DEFAULT_OUTPUT_STREAM);
+        }
+        return streams;
+    }
+}
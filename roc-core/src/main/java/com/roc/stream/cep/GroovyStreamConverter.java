@@ -3,42 +3,142 @@ package com.roc.stream.cep;
 import com.roc.entity.JobDetail;
 import com.roc.stream.StreamFactory;
 import com.roc.stream.TransformStream;
+import com.roc.util.AbstractStreamEnv;
+import com.roc.util.schema.MapRecordTypeInfo;
 import com.roc.util.GroovyEngine;
+import groovy.lang.GroovyObject;
 import org.apache.commons.io.FileUtils;
 import org.apache.flink.cep.CEP;
 import org.apache.flink.cep.PatternSelectFunction;
 import org.apache.flink.cep.PatternStream;
+import org.apache.flink.api.common.JobExecutionResult;
 import org.apache.flink.cep.pattern.Pattern;
+import org.apache.flink.core.execution.JobClient;
+import org.apache.flink.core.execution.JobListener;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 /**
- * SiddhiStreamConverter
+ * GroovyStreamConverter
  * <p>
  *
  * @author jelly.wang
  * @create 2021/01/30
- * @description flink默认转换器
+ * @description groovy cep转换器
+ * exp 为groovy类(run方法返回 Pattern)或返回 Pattern 的脚本, file 类型(file#=>)为源码文件路径
+ * 客户端只编译一次: 字节码写入jar并加入 pipeline.jars 随作业分发(见 AbstractStreamEnv#addPipelineJar), taskmanager 恢复时直接加载规则类, 不再编译;
+ * 加载规则类的类加载器在作业提交后关闭
+ * compileMode 为 static 时条件类静态编译(需声明泛型类型, 如 SimpleCondition<LinkedHashMap<String, Object>>)
  */
 public class GroovyStreamConverter implements StreamFactory {
     private static final Logger LOGGER = Logger.getLogger(GroovyStreamConverter.class);
+    private static final String RUN_METHOD = "run";
+    private static final String EXP_TYPE_FILE = "file";
 
     @Override
     public <T> DataStream<T> convert(JobDetail jobDetail, StreamExecutionEnvironment env) {
         List<TransformStream> transformStreams = buildSourceStreams(jobDetail.getSources(), env);
+        MapRecordTypeInfo recordType = recordType(transformStreams);
+        Pattern<T, ?> pattern = loadPattern(jobDetail, env);
+        PatternStream<T> patternStream = CEP.pattern(union(transformStreams), pattern);
+        return withRecordType(configure(patternStream.select((PatternSelectFunction<T, T>) map -> (T) map.get("result").get(0)), jobDetail), recordType);
+    }
+
+    /**
+     * 编译规则并写入作业jar, 从同一个jar加载主类执行 run() 得到 Pattern, 保证客户端与taskmanager使用相同的类
+     *
+     * @param jobDetail
+     * @param env
+     * @return
+     */
+    private <T> Pattern<T, ?> loadPattern(JobDetail jobDetail, StreamExecutionEnvironment env) {
         try {
-            Pattern<T, ?> pattern = GroovyEngine.INSTANCE.runClass(FileUtils.readFileToString(new File("/media/jelly/_dde_data/project/git/roc/roc-core/src/test/java/com/jelly/test/groovy/RuleRoc.groovy")), "run", null);
-            PatternStream<T> patternStream = CEP.pattern(union(transformStreams), pattern);
-            return patternStream.select((PatternSelectFunction<T, T>) map -> (T) map.get("result").get(0));
-        } catch (Exception e) {
+            final Map<String, byte[]> classes = GroovyEngine.INSTANCE.compile(source(jobDetail), GroovyEngine.CompileMode.get(jobDetail.getCompileMode()));
+            final File jar = writeJar(jobDetail.getId(), classes);
+            AbstractStreamEnv.addPipelineJar(env, jar.toURI().toURL());
+            final URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, Thread.currentThread().getContextClassLoader());
+            final Pattern<T, ?> pattern;
+            try {
+                final GroovyObject rule = (GroovyObject) classLoader.loadClass(classes.keySet().iterator().next()).newInstance();
+                pattern = (Pattern<T, ?>) rule.invokeMethod(RUN_METHOD, null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                classLoader.close();
+                throw e;
+            }
+            // 生成JobGraph时序列化规则对象仍需要该类加载器, 提交后关闭
+            env.registerJobListener(new ClassLoaderCloser(classLoader));
+            LOGGER.info("groovy pattern compiled: " + classes.keySet() + " -> " + jar);
+            return pattern;
+        } catch (IOException | ReflectiveOperationException e) {
             LOGGER.error(e.getMessage(), e);
-            return null;
+            throw new IllegalArgumentException("failed to load the groovy pattern: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * exp 类型为 file 时读取源码文件, 否则 exp 即源码
+     *
+     * @param jobDetail
+     * @return
+     * @throws IOException
+     */
+    private static String source(JobDetail jobDetail) throws IOException {
+        if (!EXP_TYPE_FILE.equalsIgnoreCase(jobDetail.getExpType())) {
+            return jobDetail.getExp();
+        }
+        final File file = new File(jobDetail.getExp().trim());
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("the groovy rule file [" + file + "] does not exist");
+        }
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+    private static File writeJar(String jobId, Map<String, byte[]> classes) throws IOException {
+        final File jar = File.createTempFile("roc-groovy-" + jobId + "-", ".jar");
+        jar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> clazz : classes.entrySet()) {
+                out.putNextEntry(new JarEntry(clazz.getKey().replace('.', '/') + ".class"));
+                out.write(clazz.getValue());
+                out.closeEntry();
+            }
         }
+        return jar;
     }
 
+    /**
+     * 作业提交(成功或失败)后关闭规则类加载器, 已加载的类仍可使用
+     */
+    private static class ClassLoaderCloser implements JobListener {
+        private final URLClassLoader classLoader;
+
+        ClassLoaderCloser(URLClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public void onJobSubmitted(JobClient jobClient, Throwable throwable) {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                LOGGER.warn("failed to close the groovy rule class loader", e);
+            }
+        }
+
+        @Override
+        public void onJobExecuted(JobExecutionResult jobExecutionResult, Throwable throwable) {
+        }
+    }
 }
@@ -0,0 +1,719 @@
+package com.roc.stream.cep;
+
+import com.roc.metrics.LatencyTracking;
+import com.roc.metrics.RocMetrics;
+import com.roc.util.schema.TaggedRow;
+import com.roc.util.schema.TaggedRowTypeInfo;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.query.api.SiddhiApp;
+import io.siddhi.query.api.definition.StreamDefinition;
+import io.siddhi.query.api.execution.ExecutionElement;
+import io.siddhi.query.api.execution.partition.Partition;
+import io.siddhi.query.api.execution.query.Query;
+import io.siddhi.query.api.expression.Expression;
+import io.siddhi.query.compiler.SiddhiCompiler;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeinfo.PrimitiveArrayTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.tuple.Tuple3;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.api.java.typeutils.ListTypeInfo;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerService;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.types.Row;
+import org.apache.flink.util.OutputTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * SiddhiRuntimeOperator
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/21
+ * @description 在一个算子内运行一个siddhi app(多条查询), 每个输出流写入各自的侧输出, 主输出不使用
+ * 事件时间下输入按时间戳缓存到水位线到达后按序发送(siddhi回放模式); siddhi调度线程(时间窗口)产生的输出转交任务线程发出
+ * 运行时快照(分组, 规则id, 规则版本, 快照)保存在union算子状态中, 恢复时每个子任务只取自己的分组:
+ * 非分区模式: 每个子任务一个siddhi运行时, 分组为子任务下标; 并行度变化时子任务i恢复原子任务i的运行时,
+ * 缩容时下标不小于新并行度的运行时状态丢弃, 扩容时新增的子任务从空状态开始(均输出警告), 待发送的输入随算子状态重新分配
+ * 分区模式(输入为KeyedStream): 每个key group一个siddhi运行时(按需创建), 规则的查询放入按分区字段划分的siddhi分区, 运行时内每个key的状态独立;
+ * 并行度变化时各子任务恢复自己key group范围内的运行时; 每个子任务的运行时数不超过 最大并行度 / 并行度;
+ * 待发送的输入保存在keyed state中, 事件时间定时器按时间戳发送
+ * 规则: 每条规则(初始规则为exp)一个siddhi运行时, 输入发送给所有规则; 第二个输入为广播的控制流(action, id, cql), 运行中增加 / 替换 / 删除规则, 其余规则的状态不受影响
+ * 配置控制流时当前规则集(带版本)保存在快照中, 恢复时以快照中的规则为准; 每次增加 / 替换规则版本递增(各子任务收到的控制消息顺序相同, 版本一致),
+ * 恢复的运行时快照在启动运行时时才与规则版本比较, 版本不一致(规则已替换)的快照不使用
+ * 输入带接入时间(延迟跟踪采样)时, 由该输入同步触发的输出记录带相同的接入时间
+ */
+public class SiddhiRuntimeOperator extends AbstractStreamOperator<Map<String, Object>>
+        implements OneInputStreamOperator<TaggedRow, Map<String, Object>>, TwoInputStreamOperator<TaggedRow, Row, Map<String, Object>>, Triggerable<Object, VoidNamespace> {
+    private static final long serialVersionUID = 1L;
+    // 调度线程输出的发出间隔(毫秒)
+    private static final long DRAIN_INTERVAL = 100L;
+    private static final String ACTION_ADD = "add";
+    private static final String ACTION_REPLACE = "replace";
+    private static final String ACTION_REMOVE = "remove";
+    private static final Logger LOG = LoggerFactory.getLogger(SiddhiRuntimeOperator.class);
+
+    // 输入流定义, 与每条规则拼接为siddhi app
+    private final String streamDefinitions;
+    private final Map<String, String> initialRules;
+    private final boolean dynamicRules;
+    private final String[] inputStreamIds;
+    private final Map<String, Class<?>> extensions;
+    private final List<OutputTag<Map<String, Object>>> outputTags;
+    private final boolean eventTime;
+    private final TypeInformation<TaggedRow> inputType;
+    // 与输入流一一对应的分区字段, 非分区模式为null
+    private final String[] keyFields;
+    private final boolean keyed;
+
+    private transient SiddhiManager siddhiManager;
+    // 规则id -> cql
+    private transient Map<String, String> rules;
+    // 规则id -> 版本, 初始规则为0
+    private transient Map<String, Long> ruleVersions;
+    private transient long ruleVersion;
+    // 分组(key group / 子任务下标) -> 规则id -> siddhi运行时
+    private transient Map<Integer, Map<String, RuleRuntime>> runtimes;
+    // 分组 -> 规则id -> 恢复后尚未启动的运行时快照(规则版本, 快照)
+    private transient Map<Integer, Map<String, Tuple2<Long, byte[]>>> restoredSnapshots;
+    // 分区模式: cql -> 放入siddhi分区后的siddhi app
+    private transient Map<String, SiddhiApp> partitionedApps;
+    private transient Thread taskThread;
+    private transient Queue<PendingOutput> pendingOutputs;
+    // 输入流下标 -> 接入时间字段下标, 不跟踪延迟时为-1
+    private transient int[] ingestPositions;
+    // 正在发送的输入的接入时间, 任务线程读写
+    private transient Long currentIngestTime;
+    private transient long currentWatermark;
+    // 规则(规则id, 版本, cql)
+    private transient ListState<Tuple3<String, Long, String>> ruleState;
+    // 运行时快照(分组, 规则id, 规则版本, 快照)
+    private transient ListState<Tuple4<Integer, String, Long, byte[]>> runtimeState;
+    // 非分区模式: 按时间戳排序的待发送输入
+    private transient PriorityQueue<BufferedInput> buffer;
+    private transient ListState<Tuple2<Long, TaggedRow>> bufferState;
+    // 分区模式: 当前key的待发送输入(时间戳 -> 输入)
+    private transient MapState<Long, List<TaggedRow>> keyedBufferState;
+    private transient InternalTimerService<VoidNamespace> timerService;
+    private transient Counter records;
+    private transient Counter ruleUpdates;
+    private transient Counter[] outputs;
+
+    /**
+     * @param streamDefinitions 输入流定义
+     * @param initialRules      初始规则(规则id -> cql)
+     * @param dynamicRules      是否接收控制流更新规则
+     * @param inputStreamIds    与输入行下标一一对应的输入流
+     * @param extensions     扩展函数
+     * @param outputTags     输出流(tag id 为输出流名称)
+     * @param eventTime      是否事件时间
+     * @param inputType      输入类型, 用于缓存输入的快照
+     * @param keyFields      与输入流一一对应的分区字段, 输入(第一个输入)为按该字段keyBy的KeyedStream; 非分区模式为null
+     */
+    public SiddhiRuntimeOperator(String streamDefinitions, Map<String, String> initialRules, boolean dynamicRules, String[] inputStreamIds, Map<String, Class<?>> extensions,
+                                 List<OutputTag<Map<String, Object>>> outputTags, boolean eventTime, TypeInformation<TaggedRow> inputType,
+                                 String[] keyFields) {
+        this.streamDefinitions = streamDefinitions;
+        this.initialRules = initialRules;
+        this.dynamicRules = dynamicRules;
+        this.inputStreamIds = inputStreamIds;
+        this.extensions = extensions;
+        this.outputTags = outputTags;
+        this.eventTime = eventTime;
+        this.inputType = inputType;
+        this.keyFields = keyFields;
+        this.keyed = null != keyFields;
+        setChainingStrategy(ChainingStrategy.ALWAYS);
+    }
+
+    @Override
+    public void initializeState(StateInitializationContext context) throws Exception {
+        super.initializeState(context);
+        // 各子任务的规则相同(控制流广播), 只由第一个子任务写入
+        ruleState = context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>("siddhi-rules",
+                new TupleTypeInfo<>(Types.STRING, Types.LONG, Types.STRING)));
+        // 所有子任务的快照都分发到每个子任务, 只保留本子任务的分组
+        runtimeState = context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>("siddhi-runtime",
+                new TupleTypeInfo<>(Types.INT, Types.STRING, Types.LONG, PrimitiveArrayTypeInfo.BYTE_PRIMITIVE_ARRAY_TYPE_INFO)));
+        currentWatermark = Long.MIN_VALUE;
+        rules = new LinkedHashMap<>(initialRules);
+        ruleVersions = new HashMap<>();
+        initialRules.keySet().forEach(ruleId -> ruleVersions.put(ruleId, 0L));
+        ruleVersion = 0L;
+        if (context.isRestored() && dynamicRules && ruleState.get().iterator().hasNext()) {
+            rules.clear();
+            ruleVersions.clear();
+            for (Tuple3<String, Long, String> rule : ruleState.get()) {
+                rules.put(rule.f0, rule.f2);
+                ruleVersions.put(rule.f0, rule.f1);
+                ruleVersion = Math.max(ruleVersion, rule.f1);
+            }
+        }
+        if (keyed) {
+            keyedBufferState = context.getKeyedStateStore().getMapState(new MapStateDescriptor<>("siddhi-keyed-buffer",
+                    Types.LONG, new ListTypeInfo<>(inputType)));
+        } else {
+            bufferState = context.getOperatorStateStore().getListState(new ListStateDescriptor<>("siddhi-buffer",
+                    new TupleTypeInfo<>(Types.LONG, inputType)));
+            buffer = new PriorityQueue<>(Comparator.comparingLong(buffered -> buffered.timestamp));
+        }
+        restoredSnapshots = new HashMap<>();
+        if (context.isRestored()) {
+            restoreSnapshots();
+            if (!keyed) {
+                for (Tuple2<Long, TaggedRow> buffered : bufferState.get()) {
+                    buffer.add(new BufferedInput(buffered.f0, buffered.f1));
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出本子任务分组的运行时快照: 分区模式为本子任务的key group范围, 非分区模式为相同下标的原子任务; 非分区模式下丢弃或缺少快照时输出警告
+     */
+    private void restoreSnapshots() throws Exception {
+        final int parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+        final int index = getRuntimeContext().getIndexOfThisSubtask();
+        final KeyGroupRange keyGroupRange = keyed
+                ? KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(getRuntimeContext().getMaxNumberOfParallelSubtasks(), parallelism, index)
+                : KeyGroupRange.of(index, index);
+        final Set<Integer> discarded = new TreeSet<>();
+        boolean restored = false;
+        for (Tuple4<Integer, String, Long, byte[]> snapshot : runtimeState.get()) {
+            restored = true;
+            if (keyGroupRange.contains(snapshot.f0)) {
+                restoredSnapshots.computeIfAbsent(snapshot.f0, group -> new HashMap<>()).put(snapshot.f1, Tuple2.of(snapshot.f2, snapshot.f3));
+            } else if (!keyed && snapshot.f0 >= parallelism) {
+                discarded.add(snapshot.f0);
+            }
+        }
+        if (keyed || !restored) {
+            return;
+        }
+        if (!discarded.isEmpty() && index == 0) {
+            LOG.warn("parallelism decreased to {}, discard the siddhi runtime state of subtasks {}", parallelism, discarded);
+        }
+        if (!restoredSnapshots.containsKey(index)) {
+            LOG.warn("no siddhi runtime state for subtask {} after the parallelism changed, start with empty state", index);
+        }
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        taskThread = Thread.currentThread();
+        pendingOutputs = new ConcurrentLinkedQueue<>();
+        ingestPositions = new int[inputStreamIds.length];
+        for (int i = 0; i < ingestPositions.length; i++) {
+            ingestPositions[i] = inputType instanceof TaggedRowTypeInfo
+                    ? ((TaggedRowTypeInfo) inputType).getRowTypes()[i].getFieldIndex(LatencyTracking.FIELD) : -1;
+        }
+        runtimes = new HashMap<>();
+        final MetricGroup group = RocMetrics.group(getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_IN);
+        outputs = new Counter[outputTags.size()];
+        for (int i = 0; i < outputTags.size(); i++) {
+            outputs[i] = group.addGroup("stream", outputTags.get(i).getId()).counter(RocMetrics.RECORDS_OUT);
+        }
+        ruleUpdates = group.counter("ruleUpdates");
+        group.gauge("rules", (Gauge<Integer>) () -> rules.size());
+        group.gauge("siddhiRuntimes", (Gauge<Integer>) () -> runtimes.values().stream().mapToInt(Map::size).sum());
+
+        siddhiManager = new SiddhiManager();
+        extensions.forEach(siddhiManager::setExtension);
+        if (keyed) {
+            // 运行时按key group创建, 启动时只编译
+            partitionedApps = new HashMap<>();
+            for (String cql : rules.values()) {
+                partitionedApp(cql);
+            }
+            timerService = getInternalTimerService("siddhi-buffer", VoidNamespaceSerializer.INSTANCE, this);
+        } else {
+            runtimes(getRuntimeContext().getIndexOfThisSubtask());
+        }
+        getProcessingTimeService().scheduleAtFixedRate(timestamp -> drainPendingOutputs(), DRAIN_INTERVAL, DRAIN_INTERVAL);
+    }
+
+    @Override
+    public void processElement(StreamRecord<TaggedRow> element) throws Exception {
+        processElement1(element);
+    }
+
+    @Override
+    public void processElement1(StreamRecord<TaggedRow> element) throws Exception {
+        records.inc();
+        final TaggedRow value = element.getValue();
+        final int group = keyed ? keyGroup(getCurrentKey()) : getRuntimeContext().getIndexOfThisSubtask();
+        if (!eventTime || !element.hasTimestamp()) {
+            send(runtimes(group), value, -1L);
+        } else if (element.getTimestamp() <= currentWatermark) {
+            send(runtimes(group), value, element.getTimestamp());
+        } else if (keyed) {
+            List<TaggedRow> buffered = keyedBufferState.get(element.getTimestamp());
+            if (null == buffered) {
+                buffered = new ArrayList<>(1);
+            }
+            buffered.add(value);
+            keyedBufferState.put(element.getTimestamp(), buffered);
+            timerService.registerEventTimeTimer(VoidNamespace.INSTANCE, element.getTimestamp());
+        } else {
+            buffer.add(new BufferedInput(element.getTimestamp(), value));
+        }
+        drainPendingOutputs();
+    }
+
+    /**
+     * 分区模式下水位线越过时间戳后发送该key缓存的输入
+     */
+    @Override
+    public void onEventTime(InternalTimer<Object, VoidNamespace> timer) throws Exception {
+        final List<TaggedRow> buffered = keyedBufferState.get(timer.getTimestamp());
+        if (null == buffered) {
+            return;
+        }
+        keyedBufferState.remove(timer.getTimestamp());
+        final Map<String, RuleRuntime> ruleRuntimes = runtimes(keyGroup(timer.getKey()));
+        for (TaggedRow value : buffered) {
+            send(ruleRuntimes, value, timer.getTimestamp());
+        }
+    }
+
+    @Override
+    public void onProcessingTime(InternalTimer<Object, VoidNamespace> timer) {
+    }
+
+    @Override
+    public void processWatermark(Watermark mark) throws Exception {
+        currentWatermark = mark.getTimestamp();
+        if (!keyed) {
+            while (!buffer.isEmpty() && buffer.peek().timestamp <= currentWatermark) {
+                final BufferedInput buffered = buffer.poll();
+                send(runtimes(getRuntimeContext().getIndexOfThisSubtask()), buffered.value, buffered.timestamp);
+            }
+        }
+        drainPendingOutputs();
+        // 分区模式的定时器在此触发, 先于水位线发出
+        super.processWatermark(mark);
+    }
+
+    @Override
+    public void processWatermark1(Watermark mark) throws Exception {
+        processWatermark(mark);
+    }
+
+    /**
+     * 控制流不参与水位线
+     */
+    @Override
+    public void processWatermark2(Watermark mark) {
+    }
+
+    /**
+     * 控制消息: action(add / replace / remove), id, cql; 校验失败的规则不生效, 不影响作业
+     */
+    @Override
+    public void processElement2(StreamRecord<Row> element) throws Exception {
+        final Row control = element.getValue();
+        final String action = (String) control.getField(0);
+        final String ruleId = (String) control.getField(1);
+        final String cql = (String) control.getField(2);
+        if (StringUtils.isBlank(ruleId)) {
+            LOG.warn("ignore the rule update without id: {}", control);
+            return;
+        }
+        if (ACTION_REMOVE.equalsIgnoreCase(action)) {
+            if (null != rules.remove(ruleId)) {
+                ruleVersions.remove(ruleId);
+                for (Map<String, RuleRuntime> ruleRuntimes : runtimes.values()) {
+                    final RuleRuntime removed = ruleRuntimes.remove(ruleId);
+                    if (null != removed) {
+                        removed.app.shutdown();
+                    }
+                }
+                if (keyed) {
+                    partitionedApps.keySet().retainAll(rules.values());
+                }
+                ruleUpdates.inc();
+                LOG.info("rule [{}] removed", ruleId);
+            }
+        } else if (ACTION_ADD.equalsIgnoreCase(action) || ACTION_REPLACE.equalsIgnoreCase(action)) {
+            if (ACTION_ADD.equalsIgnoreCase(action) && rules.containsKey(ruleId)) {
+                LOG.warn("ignore adding the existing rule [{}], use replace instead", ruleId);
+                return;
+            }
+            final String formatted = SiddhiStreamConverter.cqlFormat(cql, Arrays.asList(inputStreamIds));
+            try {
+                verify(formatted);
+            } catch (Exception e) {
+                LOG.error("ignore the invalid rule [" + ruleId + "]", e);
+                return;
+            }
+            rules.put(ruleId, formatted);
+            ruleVersions.put(ruleId, ++ruleVersion);
+            if (keyed) {
+                partitionedApps.keySet().retainAll(rules.values());
+            }
+            for (Map<String, RuleRuntime> ruleRuntimes : runtimes.values()) {
+                final RuleRuntime replaced = ruleRuntimes.put(ruleId, runtime(formatted, null));
+                if (null != replaced) {
+                    replaced.app.shutdown();
+                }
+            }
+            ruleUpdates.inc();
+            LOG.info("rule [{}] {}: {}", ruleId, action, formatted);
+        } else {
+            LOG.warn("ignore the rule update with unsupported action: {}", control);
+        }
+        drainPendingOutputs();
+    }
+
+    @Override
+    public void snapshotState(StateSnapshotContext context) throws Exception {
+        super.snapshotState(context);
+        drainPendingOutputs();
+        ruleState.clear();
+        if (dynamicRules && getRuntimeContext().getIndexOfThisSubtask() == 0) {
+            for (Map.Entry<String, String> rule : rules.entrySet()) {
+                ruleState.add(Tuple3.of(rule.getKey(), ruleVersions.get(rule.getKey()), rule.getValue()));
+            }
+        }
+        runtimeState.clear();
+        for (Map.Entry<Integer, Map<String, RuleRuntime>> ruleRuntimes : runtimes.entrySet()) {
+            for (Map.Entry<String, RuleRuntime> runtime : ruleRuntimes.getValue().entrySet()) {
+                runtimeState.add(Tuple4.of(ruleRuntimes.getKey(), runtime.getKey(), ruleVersions.get(runtime.getKey()), runtime.getValue().app.snapshot()));
+            }
+        }
+        // 恢复后尚未启动的分组沿用恢复的快照, 规则已替换 / 删除的不再保留
+        for (Map.Entry<Integer, Map<String, Tuple2<Long, byte[]>>> snapshots : restoredSnapshots.entrySet()) {
+            for (Map.Entry<String, Tuple2<Long, byte[]>> snapshot : snapshots.getValue().entrySet()) {
+                if (snapshot.getValue().f0.equals(ruleVersions.get(snapshot.getKey()))) {
+                    runtimeState.add(Tuple4.of(snapshots.getKey(), snapshot.getKey(), snapshot.getValue().f0, snapshot.getValue().f1));
+                }
+            }
+        }
+        if (keyed) {
+            return;
+        }
+        bufferState.clear();
+        for (BufferedInput buffered : buffer) {
+            bufferState.add(Tuple2.of(buffered.timestamp, buffered.value));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        drainPendingOutputs();
+        super.close();
+    }
+
+    @Override
+    public void dispose() throws Exception {
+        if (null != runtimes) {
+            runtimes.values().forEach(ruleRuntimes -> ruleRuntimes.values().forEach(runtime -> runtime.app.shutdown()));
+        }
+        if (null != siddhiManager) {
+            siddhiManager.shutdown();
+        }
+        super.dispose();
+    }
+
+    /**
+     * 获取或创建分组的规则运行时, 有与规则版本一致的快照时恢复
+     *
+     * @param group key group, 非分区模式为子任务下标
+     * @return
+     */
+    private Map<String, RuleRuntime> runtimes(int group) throws Exception {
+        Map<String, RuleRuntime> ruleRuntimes = runtimes.get(group);
+        if (null != ruleRuntimes) {
+            return ruleRuntimes;
+        }
+        final Map<String, Tuple2<Long, byte[]>> snapshots = restoredSnapshots.remove(group);
+        ruleRuntimes = new LinkedHashMap<>(rules.size() << 1);
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            final Tuple2<Long, byte[]> snapshot = null == snapshots ? null : snapshots.get(rule.getKey());
+            final boolean current = null != snapshot && snapshot.f0.equals(ruleVersions.get(rule.getKey()));
+            ruleRuntimes.put(rule.getKey(), runtime(rule.getValue(), current ? snapshot.f1 : null));
+        }
+        runtimes.put(group, ruleRuntimes);
+        return ruleRuntimes;
+    }
+
+    private int keyGroup(Object key) {
+        return KeyGroupRangeAssignment.assignToKeyGroup(key, getRuntimeContext().getMaxNumberOfParallelSubtasks());
+    }
+
+    /**
+     * 分区模式: 规则的查询放入按分区字段划分的siddhi分区, 同一key group的运行时内每个key的状态独立
+     * 查询消费的流带分区字段时(输入流与中间流)按该字段划分, 不带时(如触发器)发送给所有key; cql中已声明的分区保持不变
+     *
+     * @param cql
+     * @return
+     */
+    private SiddhiApp partitionedApp(String cql) {
+        SiddhiApp app = partitionedApps.get(cql);
+        if (null != app) {
+            return app;
+        }
+        // 先编译一次, 取得中间流与输出流的定义
+        final Map<String, StreamDefinition> definitions;
+        final SiddhiAppRuntime compiled = siddhiManager.createSiddhiAppRuntime(streamDefinitions + cql);
+        try {
+            definitions = new HashMap<>(compiled.getStreamDefinitionMap());
+        } finally {
+            compiled.shutdown();
+        }
+        final SiddhiApp parsed = SiddhiCompiler.parse(streamDefinitions + cql);
+        app = SiddhiApp.siddhiApp();
+        parsed.getAnnotations().forEach(app::annotation);
+        for (StreamDefinition definition : definitions.values()) {
+            final String streamId = definition.getId();
+            if (!streamId.startsWith("!") && !parsed.getTriggerDefinitionMap().containsKey(streamId)
+                    && !parsed.getWindowDefinitionMap().containsKey(streamId) && !parsed.getTableDefinitionMap().containsKey(streamId)) {
+                app.defineStream(definition);
+            }
+        }
+        parsed.getTableDefinitionMap().values().forEach(app::defineTable);
+        parsed.getWindowDefinitionMap().values().forEach(app::defineWindow);
+        parsed.getTriggerDefinitionMap().values().forEach(app::defineTrigger);
+        parsed.getAggregationDefinitionMap().values().forEach(app::defineAggregation);
+        parsed.getFunctionDefinitionMap().values().forEach(app::defineFunction);
+        final Partition partition = Partition.partition();
+        for (ExecutionElement element : parsed.getExecutionElementList()) {
+            if (element instanceof Partition) {
+                app.addPartition((Partition) element);
+                continue;
+            }
+            final Query query = (Query) element;
+            partition.addQuery(query);
+            for (String streamId : query.getInputStream().getUniqueStreamIds()) {
+                final String keyField = definitions.containsKey(streamId) ? keyField(definitions.get(streamId)) : null;
+                if (null != keyField && !partition.getPartitionTypeMap().containsKey(streamId)) {
+                    partition.with(streamId, Expression.variable(keyField));
+                }
+            }
+        }
+        if (!partition.getQueryList().isEmpty()) {
+            app.addPartition(partition);
+        }
+        partitionedApps.put(cql, app);
+        return app;
+    }
+
+    /**
+     * 流的分区字段: 输入流为数据源声明的分区字段, 其余流取包含的第一个分区字段
+     *
+     * @param definition
+     * @return 不包含分区字段时为null
+     */
+    private String keyField(StreamDefinition definition) {
+        final int input = Arrays.asList(inputStreamIds).indexOf(definition.getId());
+        if (input >= 0) {
+            return keyFields[input];
+        }
+        final List<String> attributes = Arrays.asList(definition.getAttributeNameArray());
+        for (String keyField : keyFields) {
+            if (attributes.contains(keyField)) {
+                return keyField;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建规则的siddhi运行时, 规则未输出到任何数据汇的流时抛出异常
+     *
+     * @param cql
+     * @param snapshot 为空时不恢复
+     * @return
+     */
+    private RuleRuntime runtime(String cql, byte[] snapshot) throws Exception {
+        final SiddhiAppRuntime app = keyed ? siddhiManager.createSiddhiAppRuntime(partitionedApp(cql)) : siddhiManager.createSiddhiAppRuntime(streamDefinitions + cql);
+        if (eventTime) {
+            // 回放模式: siddhi时间由事件时间戳推进
+            app.enablePlayBack(true, null, null);
+        }
+        int callbacks = 0;
+        for (int i = 0; i < outputTags.size(); i++) {
+            final String streamId = outputTags.get(i).getId();
+            final StreamDefinition definition = app.getStreamDefinitionMap().get(streamId);
+            if (null != definition) {
+                app.addCallback(streamId, new OutputCallback(i, definition.getAttributeNameArray()));
+                callbacks++;
+            }
+        }
+        if (callbacks == 0) {
+            app.shutdown();
+            throw new IllegalArgumentException("the rule does not insert into any sink stream: " + cql);
+        }
+        final InputHandler[] handlers = new InputHandler[inputStreamIds.length];
+        for (int i = 0; i < inputStreamIds.length; i++) {
+            handlers[i] = app.getInputHandler(inputStreamIds[i]);
+        }
+        app.start();
+        if (null != snapshot) {
+            app.restore(snapshot);
+        }
+        return new RuleRuntime(app, handlers);
+    }
+
+    /**
+     * 编译规则并检查输出流, 不保留运行时
+     *
+     * @param cql
+     */
+    private void verify(String cql) throws Exception {
+        runtime(cql, null).app.shutdown();
+    }
+
+    /**
+     * 输入发送给所有规则, siddhi在发送线程内同步产生的输出带该输入的接入时间
+     *
+     * @param ruleRuntimes
+     * @param value
+     * @param timestamp 小于0时不带时间戳
+     */
+    private void send(Map<String, RuleRuntime> ruleRuntimes, TaggedRow value, long timestamp) throws InterruptedException {
+        final int ingestPos = ingestPositions[value.getTag()];
+        currentIngestTime = ingestPos < 0 ? null : (Long) value.getRow().getField(ingestPos);
+        try {
+            for (RuleRuntime runtime : ruleRuntimes.values()) {
+                final InputHandler handler = runtime.handlers[value.getTag()];
+                if (timestamp < 0) {
+                    handler.send(toArray(value.getRow()));
+                } else {
+                    handler.send(timestamp, toArray(value.getRow()));
+                }
+            }
+        } finally {
+            currentIngestTime = null;
+        }
+    }
+
+    // siddhi事件持有数据数组的引用, 每条输入新建
+    private static Object[] toArray(Row row) {
+        final Object[] data = new Object[row.getArity()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = row.getField(i);
+        }
+        return data;
+    }
+
+    private void emit(int index, Map<String, Object> record, long timestamp) {
+        if (Thread.currentThread() == taskThread) {
+            collect(index, record, timestamp);
+        } else {
+            pendingOutputs.add(new PendingOutput(index, record, timestamp));
+        }
+    }
+
+    private void collect(int index, Map<String, Object> record, long timestamp) {
+        outputs[index].inc();
+        output.collect(outputTags.get(index), eventTime ? new StreamRecord<>(record, timestamp) : new StreamRecord<>(record));
+    }
+
+    private void drainPendingOutputs() {
+        PendingOutput pending;
+        while (null != (pending = pendingOutputs.poll())) {
+            collect(pending.index, pending.record, pending.timestamp);
+        }
+    }
+
+    private final class OutputCallback extends StreamCallback {
+        private final int index;
+        private final String[] attributeNames;
+
+        OutputCallback(int index, String[] attributeNames) {
+            this.index = index;
+            this.attributeNames = attributeNames;
+        }
+
+        @Override
+        public void receive(Event[] events) {
+            for (Event event : events) {
+                final Object[] data = event.getData();
+                final Map<String, Object> record = new LinkedHashMap<>(attributeNames.length << 1);
+                for (int i = 0; i < attributeNames.length; i++) {
+                    record.put(attributeNames[i], data[i]);
+                }
+                if (null != currentIngestTime && Thread.currentThread() == taskThread) {
+                    record.putIfAbsent(LatencyTracking.FIELD, currentIngestTime);
+                }
+                emit(index, record, event.getTimestamp());
+            }
+        }
+    }
+
+    private static final class RuleRuntime {
+        private final SiddhiAppRuntime app;
+        private final InputHandler[] handlers;
+
+        RuleRuntime(SiddhiAppRuntime app, InputHandler[] handlers) {
+            this.app = app;
+            this.handlers = handlers;
+        }
+    }
+
+    private static final class BufferedInput {
+        private final long timestamp;
+        private final TaggedRow value;
+
+        BufferedInput(long timestamp, TaggedRow value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+
+    private static final class PendingOutput {
+        private final int index;
+        private final Map<String, Object> record;
+        private final long timestamp;
+
+        PendingOutput(int index, Map<String, Object> record, long timestamp) {
+            this.index = index;
+            this.record = record;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -3,18 +3,44 @@ package com.roc.stream.cep;
 
 import com.roc.entity.JobDetail;
 import com.roc.functions.AviatorRegexFunction;
+import com.roc.functions.JsonPathFunction;
+import com.roc.functions.RegexExtractFunction;
+import com.roc.functions.RegexMatchFunction;
+import com.roc.functions.SplitPartFunction;
+import com.roc.functions.SubstringFunction;
+import com.roc.metrics.LatencyTracking;
+import com.roc.stream.PartitionStrategy;
 import com.roc.stream.StreamFactory;
 import com.roc.stream.TransformStream;
-import com.roc.util.TypeInformationUtils;
+import com.roc.util.schema.MapRecordTypeInfo;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.TaggedRow;
+import com.roc.util.schema.TaggedRowTypeInfo;
 import io.siddhi.core.executor.function.*;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.StreamDefinition;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
+import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
-import org.apache.flink.streaming.siddhi.SiddhiCEP;
-import org.apache.flink.streaming.siddhi.SiddhiStream;
+import org.apache.flink.streaming.api.transformations.TwoInputTransformation;
+import org.apache.flink.types.Row;
+import org.apache.flink.util.OutputTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -24,79 +50,314 @@ import java.util.stream.Collectors;
  * @author jelly.wang
  * @create 2021/01/30
  * @description siddhi stream 转换器
+ * exp 可包含多条查询, 数据汇通过 stream 指定输出流(默认 outputStream), 所有查询运行在同一个siddhi算子内
+ * 数据源均声明 partition: keyBy:field 时siddhi算子的输入按该字段keyBy(分区字段为空的行丢弃), 每个key独立运行规则(按key group运行siddhi, 规则放入按分区字段划分的siddhi分区), 可随并行度扩展(规则按实体计算时使用)
+ * 配置 control 时控制流广播到siddhi算子, 运行中增加 / 替换 / 删除规则(exp 为id default 的初始规则)
  */
 public class SiddhiStreamConverter implements StreamFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(SiddhiStreamConverter.class);
+    // 初始规则(exp)id
+    static final String INITIAL_RULE = "default";
+    // 控制流默认字段
+    static final String CONTROL_FIELDS = "action String,id String,cql String";
 
     @Override
     public <T> DataStream<T> convert(JobDetail jobDetail, StreamExecutionEnvironment env) {
-        // 获取数据源流
-        List<TransformStream> transformStreams = buildSourceStreams(jobDetail.getSources(), env);
-        List<String> streamIds = transformStreams.stream().map(TransformStream::getStreamId).collect(Collectors.toList());
-        // 数据源流转化siddhi流
-        SiddhiStream.ExecutableStream executableStream = buildSiddhiStream(transformStreams, env);
+        final Map<String, DataStream<T>> outputs = convertAll(jobDetail, env);
+        return outputs.containsKey(DEFAULT_OUTPUT_STREAM) ? outputs.get(DEFAULT_OUTPUT_STREAM) : outputs.values().iterator().next();
+    }
+
+    @Override
+    public <T> Map<String, DataStream<T>> convertAll(JobDetail jobDetail, StreamExecutionEnvironment env) {
+        List<String> streamIds = jobDetail.getSources().stream().map(JobDetail.SourceDetail::getId).collect(Collectors.toList());
         // sql stream id映射
         String cql = cqlFormat(jobDetail.getExp(), streamIds);
+        // 字段裁剪: 数据源只解码cql引用的字段, 规则可动态更新时解码全部字段
+        CqlAttributeAnalyzer analyzer = CqlAttributeAnalyzer.analyze(cql);
+        JobDetail.SourceDetail control = jobDetail.getControl();
+        Map<String, Set<String>> projections = null == control ? analyzer.getReferencedAttributes(streamIds) : Collections.emptyMap();
+        // 获取数据源流, 分区模式下数据源不单独keyBy, 打上下标后只在siddhi算子前keyBy一次
+        boolean keyed = jobDetail.getSources().stream().allMatch(source -> null != PartitionStrategy.keyField(source.getPartition()));
+        List<TransformStream> transformStreams = buildSourceStreams(jobDetail.getSources(), projections, !keyed, env);
+        // 数据汇引用的输出流, 每个输出流一个侧输出, 字段类型取编译后的输出流定义
+        Map<String, StreamDefinition> definitions = CqlValidator.streamDefinitions(streamDefinitions(transformStreams) + cql);
+        boolean trackLatency = null != LatencyTracking.samplePercent(env.getConfig());
+        List<OutputTag<Map<String, Object>>> outputTags = outputStreams(jobDetail.getSinks(), analyzer).stream()
+                .map(streamId -> new OutputTag<Map<String, Object>>(streamId, recordType(analyzer.getOutputAttributes(streamId), definitions.get(streamId), trackLatency)))
+                .collect(Collectors.toList());
+        // 数据源流合并为带下标的行流
+        TaggedRowTypeInfo inputType = new TaggedRowTypeInfo(transformStreams.stream().map(ts -> ts.getSchema().getRowTypeInfo()).toArray(RowTypeInfo[]::new));
+        TaggedRowKeySelector keySelector = keyed ? keySelector(jobDetail.getSources(), transformStreams) : null;
+        DataStream<TaggedRow> input = buildTaggedStream(transformStreams, inputType, keySelector, jobDetail);
+        if (null != keySelector) {
+            LOG.info("siddhi operator runs keyed by the source partition keys, parallelism: {}", jobDetail.getParallelism());
+            input = input.keyBy(keySelector, keySelector.getKeyType());
+        }
+
+        SiddhiRuntimeOperator operator = new SiddhiRuntimeOperator(streamDefinitions(transformStreams), Collections.singletonMap(INITIAL_RULE, cql), null != control,
+                transformStreams.stream().map(TransformStream::getStreamId).toArray(String[]::new),
+                registryFunction(), outputTags, env.getStreamTimeCharacteristic() != TimeCharacteristic.ProcessingTime, inputType,
+                keyed ? jobDetail.getSources().stream().map(source -> PartitionStrategy.keyField(source.getPartition())).toArray(String[]::new) : null);
+        SingleOutputStreamOperator<Map<String, Object>> siddhiStream;
+        if (null == control) {
+            siddhiStream = input.transform("siddhi", new MapRecordTypeInfo(new String[0]), operator);
+        } else {
+            siddhiStream = input.connect(buildControlStream(control, env)).transform("siddhi", new MapRecordTypeInfo(new String[0]), operator);
+            if (null != keySelector) {
+                // ConnectedStreams只在两个输入均为KeyedStream时设置状态key, 控制流为广播流, 按第一个输入的key设置(同 BroadcastConnectedStream)
+                final TwoInputTransformation<TaggedRow, Row, Map<String, Object>> transform = (TwoInputTransformation<TaggedRow, Row, Map<String, Object>>) siddhiStream.getTransformation();
+                transform.setStateKeySelectors(keySelector, null);
+                transform.setStateKeyType(keySelector.getKeyType());
+            }
+        }
+        configure(siddhiStream, jobDetail);
 
-        return (DataStream<T>) executableStream.cql(cql).returnAsMap("outputStream");
+        Map<String, DataStream<T>> outputs = new LinkedHashMap<>();
+        outputTags.forEach(outputTag -> outputs.put(outputTag.getId(), (DataStream<T>) siddhiStream.getSideOutput(outputTag)));
+        return outputs;
     }
 
     /**
-     * 将flink stream　转化成 siddhi　stream
+     * 处理时间下siddhi算子收到记录即转为siddhi事件, 不持有输入行; 事件时间下记录在水位线到达前被缓存, 不能复用
+     *
+     * @param env
+     * @return
+     */
+    @Override
+    public boolean objectReuseSafe(StreamExecutionEnvironment env) {
+        return env.getStreamTimeCharacteristic() == TimeCharacteristic.ProcessingTime;
+    }
+
+    /**
+     * 数据源流打上输入流下标后合并; 非分区模式与siddhi算子资源一致, 与siddhi算子链化;
+     * 分区模式与数据源资源一致, 与数据源链化, 丢弃分区字段为空的行, 之后keyBy到siddhi算子
      *
      * @param transformStreams
+     * @param inputType
+     * @param keySelector      非分区模式为null
+     * @param jobDetail
+     * @return
+     */
+    private DataStream<TaggedRow> buildTaggedStream(List<TransformStream> transformStreams, TaggedRowTypeInfo inputType, TaggedRowKeySelector keySelector, JobDetail jobDetail) {
+        final List<DataStream<TaggedRow>> taggedStreams = new ArrayList<>(transformStreams.size());
+        for (int i = 0; i < transformStreams.size(); i++) {
+            final DataStream<TaggedRow> tagged = transformStreams.get(i).getDataStream()
+                    .flatMap(new TaggedRowFunction(i, null == keySelector ? -1 : keySelector.getKeyPosition(i)))
+                    .returns(inputType)
+                    .name("tag-" + transformStreams.get(i).getStreamId());
+            taggedStreams.add(null == keySelector ? configure(tagged, jobDetail) : configure(tagged, jobDetail.getSources().get(i)));
+        }
+        final DataStream<TaggedRow> first = taggedStreams.remove(0);
+        return taggedStreams.isEmpty() ? first : first.union(taggedStreams.toArray(new DataStream[0]));
+    }
+
+    /**
+     * 控制流: 按 action, id, cql 顺序输出后广播到siddhi算子的每个子任务
+     *
+     * @param control
      * @param env
      * @return
      */
-    private SiddhiStream.ExecutableStream buildSiddhiStream(List<TransformStream> transformStreams, StreamExecutionEnvironment env) {
-        // 设置siddhi
-        SiddhiCEP siddhiCEP = SiddhiCEP.getSiddhiEnvironment(env);
-        // 注册函数
-        registryFunction(siddhiCEP);
+    private DataStream<Row> buildControlStream(JobDetail.SourceDetail control, StreamExecutionEnvironment env) {
+        if (StringUtils.isBlank(control.getFields())) {
+            control.setFields(CONTROL_FIELDS);
+        }
+        final TransformStream controlStream = buildSourceStream(control, new HashSet<>(Arrays.asList("action", "id", "cql")), env);
+        final RowSchema schema = controlStream.getSchema();
+        final int[] positions = {schema.indexOf("action"), schema.indexOf("id"), schema.indexOf("cql")};
+        for (int pos : positions) {
+            if (pos < 0) {
+                throw new IllegalArgumentException("the control source must declare the fields: " + CONTROL_FIELDS);
+            }
+        }
+        return configure(controlStream.getDataStream()
+                .map((MapFunction<Row, Row>) row -> Row.of(row.getField(positions[0]), row.getField(positions[1]), row.getField(positions[2])))
+                .returns(RowSchema.compile(CONTROL_FIELDS).getRowTypeInfo()), control)
+                .broadcast();
+    }
 
-        TransformStream transformStream = transformStreams.remove(0);
-        // 单流
-        SiddhiStream.SingleSiddhiStream<LinkedHashMap<String, Object>> singleSiddhiStream = siddhiCEP.from(transformStream.getStreamId(), transformStream.getDataStream(), TypeInformationUtils.getTypeInformation(transformStream.getTypes()), transformStream.getFields());
-        if (transformStreams.isEmpty()) {
-            return singleSiddhiStream;
+    /**
+     * 所有数据源均为keyBy分区时按分区字段运行siddhi, 分区字段类型需一致(相同的键值为同一个key), 分区字段为空的行在keyBy前丢弃
+     *
+     * @param sources
+     * @param transformStreams
+     * @return
+     */
+    private TaggedRowKeySelector keySelector(List<JobDetail.SourceDetail> sources, List<TransformStream> transformStreams) {
+        final int[] keyPositions = new int[sources.size()];
+        Class<?> keyClass = null;
+        TypeInformation<?> keyType = null;
+        for (int i = 0; i < sources.size(); i++) {
+            final String keyField = PartitionStrategy.keyField(sources.get(i).getPartition());
+            final RowSchema schema = transformStreams.get(i).getSchema();
+            keyPositions[i] = schema.indexOf(keyField);
+            if (keyPositions[i] < 0) {
+                throw new IllegalArgumentException("the partition key [" + keyField + "] is not declared in " + schema);
+            }
+            final Class<?> fieldClass = schema.getFieldClasses()[keyPositions[i]];
+            if (null != keyClass && keyClass != fieldClass) {
+                throw new IllegalArgumentException("the partition keys of the sources must have the same type: " + keyClass.getSimpleName() + ", " + fieldClass.getSimpleName());
+            }
+            keyClass = fieldClass;
+            keyType = schema.getTypeInformations()[keyPositions[i]];
         }
+        return new TaggedRowKeySelector(keyPositions, keyType);
+    }
 
-        // 多流
-        SiddhiStream.UnionSiddhiStream<LinkedHashMap<String, Object>> unionSiddhiStream = null;
+    /**
+     * 输出流的记录类型: 字段名取分析结果(字典), 类型取siddhi输出流定义; 延迟跟踪时追加接入时间字段
+     *
+     * @param fieldNames
+     * @param definition
+     * @param trackLatency
+     * @return
+     */
+    private static MapRecordTypeInfo recordType(String[] fieldNames, StreamDefinition definition, boolean trackLatency) {
+        final boolean appendIngestTime = trackLatency && !Arrays.asList(fieldNames).contains(LatencyTracking.FIELD);
+        if (appendIngestTime) {
+            fieldNames = Arrays.copyOf(fieldNames, fieldNames.length + 1);
+            fieldNames[fieldNames.length - 1] = LatencyTracking.FIELD;
+        }
+        final Class<?>[] fieldClasses = new Class<?>[fieldNames.length];
+        if (null != definition) {
+            final List<String> attributes = Arrays.asList(definition.getAttributeNameArray());
+            for (int i = 0; i < fieldNames.length; i++) {
+                final int pos = attributes.indexOf(fieldNames[i]);
+                fieldClasses[i] = pos < 0 ? null : fieldClass(definition.getAttributeList().get(pos).getType());
+            }
+        }
+        if (appendIngestTime) {
+            fieldClasses[fieldNames.length - 1] = Long.class;
+        }
+        return new MapRecordTypeInfo(fieldNames, fieldClasses);
+    }
+
+    private static Class<?> fieldClass(Attribute.Type type) {
+        switch (type) {
+            case STRING:
+                return String.class;
+            case INT:
+                return Integer.class;
+            case LONG:
+                return Long.class;
+            case DOUBLE:
+                return Double.class;
+            case FLOAT:
+                return Float.class;
+            case BOOL:
+                return Boolean.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 数据汇引用的输出流(去重, 保持声明顺序)
+     *
+     * @param sinks
+     * @param analyzer
+     * @return
+     */
+    private List<String> outputStreams(List<JobDetail.SinkDetail> sinks, CqlAttributeAnalyzer analyzer) {
+        final List<String> streams = null == sinks ? new ArrayList<>() : sinks.stream()
+                .map(sink -> StringUtils.defaultIfBlank(sink.getStream(), DEFAULT_OUTPUT_STREAM))
+                .distinct()
+                .collect(Collectors.toList());
+        if (streams.isEmpty()) {
+            streams.add(DEFAULT_OUTPUT_STREAM);
+        }
+        for (String stream : streams) {
+            if (!analyzer.hasOutputStream(stream)) {
+                throw new IllegalArgumentException("the sink stream [" + stream + "] is not an output stream of the cql");
+            }
+        }
+        return streams;
+    }
+
+    /**
+     * 输入流定义, 与每条规则的cql拼接为siddhi app
+     *
+     * @param transformStreams
+     * @return
+     */
+    private String streamDefinitions(List<TransformStream> transformStreams) {
+        final StringBuilder app = new StringBuilder();
         for (TransformStream ts : transformStreams) {
-            if (null == unionSiddhiStream) {
-                unionSiddhiStream = singleSiddhiStream.union(ts.getStreamId(), ts.getDataStream(), TypeInformationUtils.getTypeInformation(ts.getTypes()), ts.getFields());
-            } else {
-                unionSiddhiStream = unionSiddhiStream.union(ts.getStreamId(), ts.getDataStream(), ts.getFields());
+            app.append(streamDefinition(ts.getStreamId(), ts.getSchema()));
+        }
+        return app.toString();
+    }
+
+    /**
+     * 单个输入流定义
+     *
+     * @param streamId
+     * @param schema
+     * @return
+     */
+    static String streamDefinition(String streamId, RowSchema schema) {
+        final StringBuilder definition = new StringBuilder("define stream ").append(streamId).append(" (");
+        for (int i = 0; i < schema.getArity(); i++) {
+            if (i > 0) {
+                definition.append(", ");
             }
+            definition.append(schema.getFieldNames()[i]).append(' ').append(siddhiType(schema.getFieldClasses()[i]));
         }
-        return unionSiddhiStream;
+        return definition.append(");\n").toString();
+    }
+
+    private static String siddhiType(Class<?> fieldClass) {
+        if (String.class == fieldClass) {
+            return "string";
+        } else if (Integer.class == fieldClass) {
+            return "int";
+        } else if (Long.class == fieldClass) {
+            return "long";
+        } else if (Double.class == fieldClass) {
+            return "double";
+        } else if (Float.class == fieldClass) {
+            return "float";
+        } else if (Boolean.class == fieldClass) {
+            return "bool";
+        }
+        return "object";
     }
 
     /**
-     * @param siddhiCEP
+     * 扩展函数(函数名 -> 实现类), 运行时、提交校验与测试使用同一份注册
+     *
+     * @return
      */
-    private void registryFunction(SiddhiCEP siddhiCEP) {
+    public static Map<String, Class<?>> registryFunction() {
+        final Map<String, Class<?>> extensions = new LinkedHashMap<>();
         // 注册AVIATOR 函数库
-        siddhiCEP.registerExtension("aviator", AviatorRegexFunction.class);
-        siddhiCEP.registerExtension("cast", CastFunctionExecutor.class);
-        siddhiCEP.registerExtension("coalesce", CoalesceFunctionExecutor.class);
-        siddhiCEP.registerExtension("convert", ConvertFunctionExecutor.class);
-        siddhiCEP.registerExtension("set", CreateSetFunctionExecutor.class);
-        siddhiCEP.registerExtension("currentTimeMillis", CurrentTimeMillisFunctionExecutor.class);
-        siddhiCEP.registerExtension("default", DefaultFunctionExecutor.class);
-        siddhiCEP.registerExtension("eventTimestamp", EventTimestampFunctionExecutor.class);
-        siddhiCEP.registerExtension("ifThenElse", IfThenElseFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfBoolean", InstanceOfBooleanFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfDouble", InstanceOfDoubleFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfFloatFunction", InstanceOfFloatFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfInteger", InstanceOfIntegerFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfLong", InstanceOfLongFunctionExecutor.class);
-        siddhiCEP.registerExtension("instanceOfString", InstanceOfStringFunctionExecutor.class);
-        siddhiCEP.registerExtension("max", MaximumFunctionExecutor.class);
-        siddhiCEP.registerExtension("min", MinimumFunctionExecutor.class);
-        siddhiCEP.registerExtension("script", ScriptFunctionExecutor.class);
-        siddhiCEP.registerExtension("sizeOfSet", SizeOfSetFunctionExecutor.class);
-        siddhiCEP.registerExtension("uuid", UUIDFunctionExecutor.class);
+        extensions.put("aviator", AviatorRegexFunction.class);
+        // 原生字符串函数, 返回确定类型
+        extensions.put("regexExtract", RegexExtractFunction.class);
+        extensions.put("regexMatch", RegexMatchFunction.class);
+        extensions.put("splitPart", SplitPartFunction.class);
+        extensions.put("substring", SubstringFunction.class);
+        extensions.put("jsonPath", JsonPathFunction.class);
+        extensions.put("cast", CastFunctionExecutor.class);
+        extensions.put("coalesce", CoalesceFunctionExecutor.class);
+        extensions.put("convert", ConvertFunctionExecutor.class);
+        extensions.put("set", CreateSetFunctionExecutor.class);
+        extensions.put("currentTimeMillis", CurrentTimeMillisFunctionExecutor.class);
+        extensions.put("default", DefaultFunctionExecutor.class);
+        extensions.put("eventTimestamp", EventTimestampFunctionExecutor.class);
+        extensions.put("ifThenElse", IfThenElseFunctionExecutor.class);
+        extensions.put("instanceOfBoolean", InstanceOfBooleanFunctionExecutor.class);
+        extensions.put("instanceOfDouble", InstanceOfDoubleFunctionExecutor.class);
+        extensions.put("instanceOfFloatFunction", InstanceOfFloatFunctionExecutor.class);
+        extensions.put("instanceOfInteger", InstanceOfIntegerFunctionExecutor.class);
+        extensions.put("instanceOfLong", InstanceOfLongFunctionExecutor.class);
+        extensions.put("instanceOfString", InstanceOfStringFunctionExecutor.class);
+        extensions.put("max", MaximumFunctionExecutor.class);
+        extensions.put("min", MinimumFunctionExecutor.class);
+        extensions.put("script", ScriptFunctionExecutor.class);
+        extensions.put("sizeOfSet", SizeOfSetFunctionExecutor.class);
+        extensions.put("uuid", UUIDFunctionExecutor.class);
+        return extensions;
     }
 
     /**
@@ -106,7 +367,7 @@ public class SiddhiStreamConverter implements StreamFactory {
      * @param streamIds
      * @return
      */
-    private String cqlFormat(String cql, List<String> streamIds) {
+    static String cqlFormat(String cql, List<String> streamIds) {
         for (int i = 0; i < streamIds.size(); i++) {
             cql = StringUtils.replace(cql, "${" + i + "}", streamIds.get(i));
         }
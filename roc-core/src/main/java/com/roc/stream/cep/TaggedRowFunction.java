@@ -0,0 +1,50 @@
+package com.roc.stream.cep;
+
+import com.roc.metrics.RocMetrics;
+import com.roc.util.schema.TaggedRow;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.types.Row;
+import org.apache.flink.util.Collector;
+
+/**
+ * TaggedRowFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/23
+ * @description 数据源的行打上输入流下标; 分区模式下丢弃分区字段为空的行(计入 recordsDropped),
+ * 空key不替换为固定值, 避免与该值的真实实体共用siddhi状态
+ */
+public class TaggedRowFunction extends RichFlatMapFunction<Row, TaggedRow> {
+    private static final long serialVersionUID = 1L;
+
+    private final int tag;
+    private final int keyPosition;
+
+    private transient Counter dropped;
+
+    /**
+     * @param tag         输入流下标
+     * @param keyPosition 分区字段下标, 非分区模式为-1
+     */
+    public TaggedRowFunction(int tag, int keyPosition) {
+        this.tag = tag;
+        this.keyPosition = keyPosition;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        dropped = RocMetrics.counter(RocMetrics.group(getRuntimeContext().getMetricGroup()), RocMetrics.DROPPED);
+    }
+
+    @Override
+    public void flatMap(Row row, Collector<TaggedRow> out) {
+        if (keyPosition >= 0 && null == row.getField(keyPosition)) {
+            dropped.inc();
+            return;
+        }
+        out.collect(new TaggedRow(tag, row));
+    }
+}
@@ -0,0 +1,47 @@
+package com.roc.stream.cep;
+
+import com.roc.util.schema.TaggedRow;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.functions.KeySelector;
+
+/**
+ * TaggedRowKeySelector
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/22
+ * @description 按输入流下标取各自的分区字段; 分区字段为空的行已在keyBy前丢弃(见 {@link TaggedRowFunction})
+ */
+public class TaggedRowKeySelector implements KeySelector<TaggedRow, Object> {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] keyPositions;
+    private final TypeInformation<Object> keyType;
+
+    /**
+     * @param keyPositions 与输入流下标一一对应的分区字段下标
+     * @param keyType      分区字段的声明类型
+     */
+    @SuppressWarnings("unchecked")
+    public TaggedRowKeySelector(int[] keyPositions, TypeInformation<?> keyType) {
+        this.keyPositions = keyPositions;
+        this.keyType = (TypeInformation<Object>) keyType;
+    }
+
+    public TypeInformation<Object> getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * @param tag 输入流下标
+     * @return 分区字段下标
+     */
+    public int getKeyPosition(int tag) {
+        return keyPositions[tag];
+    }
+
+    @Override
+    public Object getKey(TaggedRow value) {
+        return value.getRow().getField(keyPositions[value.getTag()]);
+    }
+}
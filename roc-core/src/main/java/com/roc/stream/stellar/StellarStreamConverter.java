@@ -5,6 +5,7 @@ import com.roc.stellar.dsl.Context;
 import com.roc.stellar.dsl.Stellar;
 import com.roc.stream.StreamFactory;
 import com.roc.stream.TransformStream;
+import com.roc.util.schema.MapRecordTypeInfo;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
@@ -27,9 +28,10 @@ public class StellarStreamConverter implements StreamFactory {
     @Override
     public <T> DataStream<T> convert(JobDetail jobDetail, StreamExecutionEnvironment env) {
         List<TransformStream> transformStreams = buildSourceStreams(jobDetail.getSources(), env);
+        MapRecordTypeInfo recordType = recordType(transformStreams);
         // WORD_COUNT_FUN()
         String exp = jobDetail.getExp();
-        return buildStellarStream(StringUtils.substringBefore(exp, "("), union(transformStreams));
+        return withRecordType(configure(buildStellarStream(StringUtils.substringBefore(exp, "("), union(transformStreams)), jobDetail), recordType);
     }
 
 
@@ -1,8 +1,21 @@
 package com.roc.util;
 
+import com.roc.common.text.ConfigUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.PipelineOptions;
 import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.environment.CheckpointConfig;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.joor.Reflect;
+import org.joor.ReflectException;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 /**
  * AbstractStreamEnv
@@ -13,6 +26,9 @@ import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
  * @description flinkstream 环境变量
  */
 public abstract class AbstractStreamEnv {
+    private static final String CONFIG_FILE = "config.properties";
+    private static final String[] FLINK_CONFIG_PREFIXES = {"execution.", "pipeline.", "state."};
+
     private StreamExecutionEnvironment env;
 
     public StreamExecutionEnvironment getEnv() {
@@ -40,5 +56,51 @@ public abstract class AbstractStreamEnv {
         env.getCheckpointConfig().enableExternalizedCheckpoints(CheckpointConfig.ExternalizedCheckpointCleanup.RETAIN_ON_CANCELLATION);
         // 开启 EXACTLY_ONCE
         env.getCheckpointConfig().setCheckpointingMode(CheckpointingMode.EXACTLY_ONCE);
+        // config.properties 中的flink参数覆盖以上默认值
+        configure(Collections.emptyMap());
+    }
+
+    /**
+     * 按flink参数配置执行环境, 优先级: 任务参数 > config.properties > 默认值
+     * execution.checkpointing.*: 快照周期 / 模式(AT_LEAST_ONCE) / 非对齐快照等
+     * state.*: 状态后端(rocksdb) / 增量快照 / rocksdb内存等
+     * pipeline.*: 对象复用等
+     *
+     * @param overrides 任务参数
+     */
+    public void configure(Map<String, String> overrides) {
+        final Configuration configuration = new Configuration();
+        final Properties props = ConfigUtils.loadProperties(CONFIG_FILE);
+        for (String key : props.stringPropertyNames()) {
+            if (StringUtils.startsWithAny(key, FLINK_CONFIG_PREFIXES)) {
+                configuration.setString(key, props.getProperty(key).trim());
+            }
+        }
+        if (null != overrides) {
+            overrides.forEach(configuration::setString);
+        }
+        env.configure(configuration, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * 执行环境自身的配置(提交作业时生成JobGraph使用)追加 pipeline.jars, 随作业分发到taskmanager的用户类加载器
+     * env.configure 不处理 pipeline.jars, flink 1.11 未公开执行环境的配置, 通过 StreamExecutionEnvironment#getConfiguration(protected) 修改;
+     * 执行环境不支持时抛出异常, 不静默丢失
+     *
+     * @param env
+     * @param jar
+     * @throws IllegalStateException 无法获取执行环境的配置
+     */
+    public static void addPipelineJar(StreamExecutionEnvironment env, URL jar) {
+        final Configuration configuration;
+        try {
+            configuration = Reflect.on(env).call("getConfiguration").get();
+        } catch (ReflectException | ClassCastException e) {
+            throw new IllegalStateException("cannot add " + jar + " to pipeline.jars: the configuration of "
+                    + env.getClass().getName() + " is not accessible", e);
+        }
+        final List<String> jars = new ArrayList<>(configuration.getOptional(PipelineOptions.JARS).orElse(Collections.emptyList()));
+        jars.add(jar.toString());
+        configuration.set(PipelineOptions.JARS, jars);
     }
 }
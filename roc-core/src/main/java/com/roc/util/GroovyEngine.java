@@ -2,16 +2,36 @@ package com.roc.util;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.roc.common.bytecode.MD5Utils;
 import com.roc.common.text.ConfigUtils;
+import com.roc.common.text.HashUtil;
 import groovy.lang.Binding;
 import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyObject;
+import groovy.lang.MissingMethodException;
 import groovy.lang.Script;
+import groovy.transform.CompileStatic;
+import groovy.transform.TypeChecked;
 import groovy.util.GroovyScriptEngine;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
 
-import javax.script.*;
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -19,13 +39,25 @@ import java.util.concurrent.TimeUnit;
  * @author : jelly.wang
  * @date : Created in 2021-01-26 下午10:15
  * @description: groovy执行引擎
+ * 脚本 / 类按源码murmur128摘要缓存编译结果, 按条目数与源码长度(权重)限制大小, 超时未访问淘汰;
+ * 每个缓存条目使用独立的类加载器, 淘汰后类可卸载, 避免metaspace无界增长
+ * 线程安全: 每次调用从条目的实例池借出脚本 / 类实例(调用期间独占, 脚本使用独立的Binding), 调用结束归还, 多个subtask可并行执行
  */
 public final class GroovyEngine {
-    private final ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByName("groovy");
-    private final GroovyClassLoader groovyClassLoader = new GroovyClassLoader();
-    private final Cache<String, Script> GROOVY_SCRIPT_ENGINE_CACHE = CacheBuilder.newBuilder().expireAfterAccess(ConfigUtils.getInt("cache_size", 30), TimeUnit.MINUTES).build();
-    private final Cache<String, GroovyObject> GROOVY_CLASS_ENGINE_CACHE = CacheBuilder.newBuilder().expireAfterAccess(ConfigUtils.getInt("cache_size", 30), TimeUnit.MINUTES).build();
+    // 缓存条目数
+    private static final int CACHE_SIZE = ConfigUtils.getInt("groovy_cache_size", 1000);
+    // 缓存源码总长度(字符)
+    private static final int CACHE_MAX_WEIGHT = ConfigUtils.getInt("groovy_cache_max_weight", 16 * 1024 * 1024);
+    private static final int CACHE_EXPIRE_MINUTES = ConfigUtils.getInt("groovy_cache_expire_minutes", 30);
+    // 每个编译结果池化的实例数, 并发超出时临时创建
+    private static final int POOL_SIZE = Math.max(1, ConfigUtils.getInt("groovy_pool_size", Runtime.getRuntime().availableProcessors() * 2));
+    private final Cache<String, Compiled> GROOVY_SCRIPT_ENGINE_CACHE = newCache();
+    private final Cache<String, Compiled> GROOVY_SCRIPT_CACHE = newCache();
+    private final Cache<String, Compiled> GROOVY_CLASS_ENGINE_CACHE = newCache();
     public final static GroovyEngine INSTANCE = new GroovyEngine();
+    // 静态编译模式下的默认导入, 可通过 groovy_imports 配置, classpath 中不存在的类忽略
+    private static final String[] RULE_IMPORTS = {"org.apache.flink.cep.pattern.Pattern", "org.apache.flink.cep.pattern.conditions.SimpleCondition",
+            "org.apache.flink.cep.pattern.conditions.IterativeCondition", "org.apache.flink.streaming.api.windowing.time.Time"};
 
     private GroovyEngine() {
     }
@@ -40,9 +72,16 @@ public final class GroovyEngine {
      * @throws ScriptException
      */
     public <T> T runScript(String script, Map<String, Object> params) throws ScriptException {
-        Bindings bindings = scriptEngine.createBindings();
-        if (null != params) bindings.putAll(params);
-        return (T) scriptEngine.eval(script, bindings);
+        final Binding binding = new Binding();
+        if (null != params) params.forEach(binding::setVariable);
+        final Compiled compiled = compiledScript(script);
+        final Script instance = (Script) compiled.borrow();
+        try {
+            instance.setBinding(binding);
+            return (T) instance.run();
+        } finally {
+            compiled.release(instance);
+        }
     }
 
     /**
@@ -57,8 +96,20 @@ public final class GroovyEngine {
      * @throws NoSuchMethodException
      */
     public <T> T runFunction(String script, String method, Object[] params) throws ScriptException, NoSuchMethodException {
-        scriptEngine.eval(script);
-        return (T) ((Invocable) scriptEngine).invokeFunction(method, params);
+        final Compiled compiled = compiledScript(script);
+        final Script instance = (Script) compiled.borrow();
+        try {
+            instance.setBinding(new Binding());
+            instance.run();
+            return (T) instance.invokeMethod(method, params);
+        } catch (MissingMethodException e) {
+            if (method.equals(e.getMethod()) && instance.getClass() == e.getType()) {
+                throw new NoSuchMethodException(method);
+            }
+            throw e;
+        } finally {
+            compiled.release(instance);
+        }
     }
 
     /**
@@ -73,15 +124,19 @@ public final class GroovyEngine {
      * @throws Exception
      */
     public <T> T runFile(String filePath, String fileName, String method, Object[] params) throws Exception {
-        Script script = GROOVY_SCRIPT_ENGINE_CACHE.get(fileName, () -> {
-            GroovyScriptEngine engine = new GroovyScriptEngine(filePath);
-            return engine.createScript(fileName, new Binding());
-        });
-        return (T) script.invokeMethod(method, params);
+        final Compiled compiled = GROOVY_SCRIPT_ENGINE_CACHE.get(filePath + "/" + fileName,
+                () -> new Compiled(new GroovyScriptEngine(filePath).loadScriptByName(fileName), 0));
+        final Script script = (Script) compiled.borrow();
+        try {
+            script.setBinding(new Binding());
+            return (T) script.invokeMethod(method, params);
+        } finally {
+            compiled.release(script);
+        }
     }
 
     /**
-     * 执行groovy类
+     * 执行groovy类, 类实例按线程独占使用, 实例字段不在调用之间共享
      *
      * @param clazz
      * @param method
@@ -91,11 +146,196 @@ public final class GroovyEngine {
      * @throws ExecutionException
      */
     public <T> T runClass(String clazz, String method, Object params) throws ExecutionException {
-        GroovyObject groovyObject = GROOVY_CLASS_ENGINE_CACHE.get(MD5Utils.getMD5(clazz), () -> {
-            Class groovyClass = groovyClassLoader.parseClass(clazz);
-            return (GroovyObject) groovyClass.newInstance();
-        });
-        return (T) groovyObject.invokeMethod(method, params);
+        final Compiled compiled = GROOVY_CLASS_ENGINE_CACHE.get(HashUtil.murmur128AsHex(clazz), () -> new Compiled(parseClass(clazz), clazz.length()));
+        final GroovyObject groovyObject = compiled.borrow();
+        try {
+            return (T) groovyObject.invokeMethod(method, params);
+        } finally {
+            compiled.release(groovyObject);
+        }
+    }
+
+    /**
+     * 缓存命中 / 未命中 / 淘汰统计(脚本, 类, 文件)
+     *
+     * @return
+     */
+    public CacheStats stats() {
+        return GROOVY_SCRIPT_CACHE.stats().plus(GROOVY_CLASS_ENGINE_CACHE.stats()).plus(GROOVY_SCRIPT_ENGINE_CACHE.stats());
+    }
+
+    /**
+     * 淘汰脚本 / 类的编译结果, 下次执行时重新编译
+     *
+     * @param source 脚本或类源码
+     */
+    public void invalidate(String source) {
+        final String key = HashUtil.murmur128AsHex(source);
+        GROOVY_SCRIPT_CACHE.invalidate(key);
+        GROOVY_CLASS_ENGINE_CACHE.invalidate(key);
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public void invalidateAll() {
+        GROOVY_SCRIPT_CACHE.invalidateAll();
+        GROOVY_CLASS_ENGINE_CACHE.invalidateAll();
+        GROOVY_SCRIPT_ENGINE_CACHE.invalidateAll();
+    }
+
+    private Compiled compiledScript(String script) throws ScriptException {
+        try {
+            return GROOVY_SCRIPT_CACHE.get(HashUtil.murmur128AsHex(script), () -> new Compiled(parseClass(script), script.length()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new ScriptException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    /**
+     * 每次使用新的类加载器解析, 不缓存源码; 缓存淘汰后类与类加载器一起回收
+     *
+     * @param source
+     * @return
+     * @throws CompilationFailedException
+     */
+    private static Class<?> parseClass(String source) throws CompilationFailedException {
+        final GroovyClassLoader classLoader = new GroovyClassLoader(Thread.currentThread().getContextClassLoader());
+        return classLoader.parseClass(new GroovyCodeSource(source, "Script" + HashUtil.murmur128AsHex(source) + ".groovy", "/groovy/script"), false);
+    }
+
+    /**
+     * 权重为源码长度, 最小权重为 CACHE_MAX_WEIGHT / CACHE_SIZE, 因此条目数同样不超过 CACHE_SIZE
+     * (guava 不支持同时设置 maximumSize 与 maximumWeight)
+     */
+    private static Cache<String, Compiled> newCache() {
+        final int minWeight = Math.max(1, CACHE_MAX_WEIGHT / Math.max(1, CACHE_SIZE));
+        return CacheBuilder.newBuilder()
+                .maximumWeight(CACHE_MAX_WEIGHT)
+                .<String, Compiled>weigher((key, compiled) -> Math.max(minWeight, compiled.weight))
+                .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 编译结果, 权重(源码长度)及实例池; 池满时归还的实例直接丢弃
+     */
+    private static final class Compiled {
+        private final Class<?> clazz;
+        private final int weight;
+        private final BlockingQueue<GroovyObject> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        private Compiled(Class<?> clazz, int weight) {
+            this.clazz = clazz;
+            this.weight = weight;
+            // 预先创建一个实例, 构造失败时在加载缓存时抛出
+            pool.offer(newInstance());
+        }
+
+        private GroovyObject borrow() {
+            final GroovyObject instance = pool.poll();
+            return null == instance ? newInstance() : instance;
+        }
+
+        private void release(GroovyObject instance) {
+            if (instance instanceof Script) {
+                // 不保留上次调用的参数
+                ((Script) instance).setBinding(new Binding());
+            }
+            pool.offer(instance);
+        }
+
+        private GroovyObject newInstance() {
+            return (GroovyObject) InvokerHelper.invokeNoArgumentsConstructorOf(clazz);
+        }
+    }
+
+    /**
+     * 编译groovy源码为字节码(动态模式)
+     *
+     * @param source
+     * @return
+     */
+    public Map<String, byte[]> compile(String source) {
+        return compile(source, CompileMode.DYNAMIC);
+    }
+
+    /**
+     * 编译groovy源码为字节码, 不加载类(由调用方决定类加载器, 如随作业分发的jar)
+     *
+     * @param source 类或脚本
+     * @param mode   编译模式
+     * @return 类名 -> 字节码, 第一个为主类(源码中的第一个类或脚本类)
+     */
+    public Map<String, byte[]> compile(String source, CompileMode mode) {
+        final CompilationUnit unit = new CompilationUnit(compilerConfiguration(mode));
+        // 脚本类名由源码摘要决定, 同一源码编译结果一致
+        unit.addSource("Rule" + MD5Utils.getMD5(source) + ".groovy", source);
+        unit.compile(Phases.CLASS_GENERATION);
+        final String mainClass = unit.getFirstClassNode().getName();
+        final Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (GroovyClass groovyClass : unit.getClasses()) {
+            if (groovyClass.getName().equals(mainClass)) {
+                classes.put(groovyClass.getName(), groovyClass.getBytes());
+            }
+        }
+        for (GroovyClass groovyClass : unit.getClasses()) {
+            classes.putIfAbsent(groovyClass.getName(), groovyClass.getBytes());
+        }
+        return classes;
+    }
+
+    private static CompilerConfiguration compilerConfiguration(CompileMode mode) {
+        final CompilerConfiguration configuration = new CompilerConfiguration();
+        if (mode == CompileMode.DYNAMIC) {
+            return configuration;
+        }
+        configuration.addCompilationCustomizers(new ImportCustomizer().addImports(ruleImports()));
+        // 静态编译: 方法调用直接生成字节码调用, 不经过MOP动态分派; 类型检查: 只在编译期检查类型, 仍动态分派
+        configuration.addCompilationCustomizers(new ASTTransformationCustomizer(mode == CompileMode.STATIC ? CompileStatic.class : TypeChecked.class));
+        return configuration;
+    }
+
+    private static String[] ruleImports() {
+        final String[] configured = ConfigUtils.getStrArray("groovy_imports");
+        final List<String> imports = new ArrayList<>();
+        for (String name : configured.length > 0 ? configured : RULE_IMPORTS) {
+            try {
+                Class.forName(name.trim(), false, Thread.currentThread().getContextClassLoader());
+                imports.add(name.trim());
+            } catch (ClassNotFoundException e) {
+                // 未引入对应依赖时不导入
+            }
+        }
+        return imports.toArray(new String[0]);
+    }
+
+    /**
+     * 编译模式
+     */
+    public enum CompileMode {
+        // 默认, 与原有行为一致
+        DYNAMIC,
+        // @TypeChecked: 编译期类型检查
+        TYPE_CHECKED,
+        // @CompileStatic: 静态编译, 条件判断按普通jvm字节码执行
+        STATIC;
+
+        /**
+         * @param mode dynamic / type_checked / static, 为空时为 dynamic
+         * @return
+         */
+        public static CompileMode get(String mode) {
+            if (null == mode || mode.trim().isEmpty()) {
+                return DYNAMIC;
+            }
+            try {
+                return valueOf(mode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("the groovy compile mode [" + mode + "] is not supported");
+            }
+        }
     }
 
 
@@ -1,15 +1,25 @@
 package com.roc.util;
 
+import com.roc.common.base.ExceptionUtil;
 import com.roc.entity.JobDetail;
 import com.roc.sink.*;
+import com.roc.source.FlinkSimpleDatagenSource;
 import com.roc.source.FlinkSimpleElasticsearchSource;
 import com.roc.source.FlinkSimpleHBaseSource;
 import com.roc.source.FlinkSimpleKafkaSource;
 import com.roc.source.FlinkSimpleMysqlSource;
+import com.roc.util.schema.JsonRowDeserializationSchema;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.RowTimestampAssigner;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
 import org.apache.flink.streaming.api.functions.sink.SinkFunction;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.connectors.kafka.FlinkKafkaConsumerBase;
+import org.apache.flink.types.Row;
 import org.joor.Reflect;
 
+import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +35,7 @@ public final class SourceSinkConstructor {
         put("KAFKA", "createKafkaSource");
         put("MYSQL", "createMysqlSource");
         put("ELASTICSEARCH", "createElasticsearchSource");
+        put("DATAGEN", "createDatagenSource");
     }};
     // sink
     private final static Map<String, String> SINKS = new HashMap<String, String>() {{
@@ -39,17 +50,51 @@ public final class SourceSinkConstructor {
     }
 
     private static JobDetail.SourceDetail sourceDetail;
+    private static RowSchema rowSchema;
+    private static boolean reuseRecords;
     private static JobDetail.SinkDetail sinkDetail;
 
 
     public static SourceFunction newSourceFunction(JobDetail.SourceDetail sd) {
+        return newSourceFunction(sd, null);
+    }
+
+    /**
+     * type 为内置类型或数据源类全名
+     * 支持直接解码的数据源(kafka)按字段定义输出行并在数据源内生成水位线, 其余输出json字符串
+     *
+     * @param sd
+     * @param schema
+     * @return
+     */
+    public static SourceFunction newSourceFunction(JobDetail.SourceDetail sd, RowSchema schema) {
+        return newSourceFunction(sd, schema, false);
+    }
+
+    /**
+     * @param sd
+     * @param schema
+     * @param reuse  对象复用, 直接解码的数据源复用行实例
+     * @return
+     */
+    public static SourceFunction newSourceFunction(JobDetail.SourceDetail sd, RowSchema schema, boolean reuse) {
         sourceDetail = sd;
-        return Reflect.on(SourceSinkConstructor.class).call(SOURCES.get(sd.getType().toUpperCase())).get();
+        rowSchema = schema;
+        reuseRecords = reuse;
+        final String method = SOURCES.get(sd.getType().toUpperCase());
+        return Reflect.on(SourceSinkConstructor.class).call(null == method ? "createCustomSource" : method).get();
     }
 
+    /**
+     * type 为内置类型或数据汇类全名
+     *
+     * @param sd
+     * @return
+     */
     public static SinkFunction newSinkFunction(JobDetail.SinkDetail sd) {
         sinkDetail = sd;
-        return Reflect.on(SourceSinkConstructor.class).call(SINKS.get(sd.getType().toUpperCase())).get();
+        final String method = SINKS.get(sd.getType().toUpperCase());
+        return Reflect.on(SourceSinkConstructor.class).call(null == method ? "createCustomSink" : method).get();
     }
 
     /**
@@ -62,6 +107,15 @@ public final class SourceSinkConstructor {
     }
 
     private static SourceFunction createKafkaSource() {
+        if (null != rowSchema) {
+            final FlinkKafkaConsumerBase<Row> consumer = new FlinkSimpleKafkaSource(sourceDetail.getHost(), sourceDetail.getId(), sourceDetail.getStorage(), new JsonRowDeserializationSchema(rowSchema, reuseRecords)).build();
+            // 在消费者内按kafka分区生成水位线
+            final WatermarkStrategy<Row> watermarkStrategy = RowTimestampAssigner.forSource(sourceDetail, rowSchema);
+            if (null != watermarkStrategy) {
+                consumer.assignTimestampsAndWatermarks(watermarkStrategy);
+            }
+            return consumer;
+        }
         return new FlinkSimpleKafkaSource(sourceDetail.getHost(), sourceDetail.getId(), sourceDetail.getStorage()).build();
     }
 
@@ -74,6 +128,32 @@ public final class SourceSinkConstructor {
         return new FlinkSimpleElasticsearchSource(sourceDetail.getId(), sourceDetail.getAuth(), sourceDetail.getHost(), sourceDetail.getStorage());
     }
 
+    /**
+     * 按字段定义生成数据, 直接输出行
+     *
+     * @return
+     */
+    private static SourceFunction createDatagenSource() {
+        return new FlinkSimpleDatagenSource(sourceDetail, null == rowSchema ? RowSchema.compile(sourceDetail.getFields()) : rowSchema, reuseRecords);
+    }
+
+    /**
+     * 自定义数据源: type 为类全名, 优先使用 (SourceDetail, RowSchema) 构造器直接输出行, 否则使用 (SourceDetail) 构造器输出json字符串
+     *
+     * @return
+     */
+    private static SourceFunction createCustomSource() {
+        final Class<?> clazz = customClass(sourceDetail.getType());
+        if (null != rowSchema) {
+            // 按参数类型查找构造器, 构造器内部的异常直接抛出, 不回退到 (SourceDetail) 构造器
+            final Constructor<?> rowConstructor = ConstructorUtils.getAccessibleConstructor(clazz, JobDetail.SourceDetail.class, RowSchema.class);
+            if (null != rowConstructor) {
+                return newInstance(rowConstructor, sourceDetail, rowSchema);
+            }
+        }
+        return newInstance(customConstructor(clazz, JobDetail.SourceDetail.class), sourceDetail);
+    }
+
     /**
      * sink instance
      *
@@ -99,4 +179,37 @@ public final class SourceSinkConstructor {
     private static SinkFunction createRedisSink() {
         return new FlinkSimpleRedisSink(sinkDetail.getHost()).build();
     }
+
+    /**
+     * 自定义数据汇: type 为类全名, 使用 (SinkDetail) 构造器
+     *
+     * @return
+     */
+    private static SinkFunction createCustomSink() {
+        return newInstance(customConstructor(customClass(sinkDetail.getType()), JobDetail.SinkDetail.class), sinkDetail);
+    }
+
+    private static Class<?> customClass(String className) {
+        try {
+            return Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("the custom type [" + className + "] is not found", e);
+        }
+    }
+
+    private static Constructor<?> customConstructor(Class<?> clazz, Class<?> parameterType) {
+        final Constructor<?> constructor = ConstructorUtils.getAccessibleConstructor(clazz, parameterType);
+        if (null == constructor) {
+            throw new IllegalArgumentException("the custom type [" + clazz.getName() + "] requires a public (" + parameterType.getSimpleName() + ") constructor");
+        }
+        return constructor;
+    }
+
+    private static <T> T newInstance(Constructor<?> constructor, Object... args) {
+        try {
+            return (T) constructor.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw ExceptionUtil.unwrapAndUnchecked(e);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.roc.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.DataStreamSink;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+
+/**
+ * StreamOperatorUtils
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/11
+ * @description 算子并行度 / 最大并行度 / slot共享组 设置, 未配置时继承执行环境默认值
+ */
+public final class StreamOperatorUtils {
+
+    private StreamOperatorUtils() {
+    }
+
+    /**
+     * 设置算子资源, 非单输出算子(union / partition 后的流)不做处理
+     *
+     * @param dataStream
+     * @param parallelism
+     * @param maxParallelism
+     * @param slotSharingGroup
+     * @return
+     */
+    public static <T> DataStream<T> configure(DataStream<T> dataStream, Integer parallelism, Integer maxParallelism, String slotSharingGroup) {
+        if (!(dataStream instanceof SingleOutputStreamOperator)) {
+            return dataStream;
+        }
+        final SingleOutputStreamOperator<T> operator = (SingleOutputStreamOperator<T>) dataStream;
+        if (null != parallelism) {
+            operator.setParallelism(parallelism);
+        }
+        if (null != maxParallelism) {
+            operator.setMaxParallelism(maxParallelism);
+        }
+        if (StringUtils.isNotBlank(slotSharingGroup)) {
+            operator.slotSharingGroup(slotSharingGroup);
+        }
+        return operator;
+    }
+
+    /**
+     * 设置数据汇资源
+     *
+     * @param sink
+     * @param parallelism
+     * @param maxParallelism
+     * @param slotSharingGroup
+     * @return
+     */
+    public static <T> DataStreamSink<T> configure(DataStreamSink<T> sink, Integer parallelism, Integer maxParallelism, String slotSharingGroup) {
+        if (null != parallelism) {
+            sink.setParallelism(parallelism);
+        }
+        if (null != maxParallelism) {
+            // DataStreamSink 未暴露 setMaxParallelism
+            sink.getTransformation().setMaxParallelism(maxParallelism);
+        }
+        if (StringUtils.isNotBlank(slotSharingGroup)) {
+            sink.slotSharingGroup(slotSharingGroup);
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,86 @@
+package com.roc.util;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * ZipfSampler
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/17
+ * @description zipf分布采样(rejection-inversion, Hörmann & Derflinger), 无需预计算累积分布, 基数可到 Integer.MAX_VALUE
+ * 返回 [1, numberOfElements] 的排名, 排名k的概率正比于 1 / k^exponent
+ */
+public final class ZipfSampler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int numberOfElements;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNumberOfElements;
+    private final double s;
+
+    public ZipfSampler(int numberOfElements, double exponent) {
+        if (numberOfElements <= 0) {
+            throw new IllegalArgumentException("number of elements must be positive: " + numberOfElements);
+        }
+        if (exponent <= 0) {
+            throw new IllegalArgumentException("exponent must be positive: " + exponent);
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1D;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.s = 2D - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int sample(Random random) {
+        while (true) {
+            final double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            final double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double hIntegral(double x) {
+        final double logX = Math.log(x);
+        return helper2((1D - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1D - exponent);
+        if (t < -1D) {
+            t = -1D;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1+x)/x, x趋近0时取泰勒展开
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1D - x * (0.5 - x * (1D / 3D - 0.25 * x));
+    }
+
+    // (exp(x)-1)/x, x趋近0时取泰勒展开
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1D + x * 0.5 * (1D + x * (1D / 3D) * (1D + 0.25 * x));
+    }
+}
@@ -0,0 +1,444 @@
+package com.roc.util.schema;
+
+import org.apache.flink.types.Row;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JsonRowDecoder
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/06
+ * @description 流式json解码器, 直接将utf-8字节解析为行, 未声明的key只跳过不解析; 非线程安全
+ */
+public final class JsonRowDecoder {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final byte T_STRING = 0;
+    private static final byte T_LONG = 1;
+    private static final byte T_INT = 2;
+    private static final byte T_DOUBLE = 3;
+    private static final byte T_FLOAT = 4;
+    private static final byte T_BOOLEAN = 5;
+    private static final byte T_CHAR = 6;
+
+    private final RowSchema schema;
+    private final byte[][] keys;
+    private final byte[] types;
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+    private StringBuilder chars;
+
+    public JsonRowDecoder(RowSchema schema) {
+        this.schema = schema;
+        final String[] fieldNames = schema.getFieldNames();
+        final Class<?>[] fieldClasses = schema.getFieldClasses();
+        this.keys = new byte[fieldNames.length][];
+        this.types = new byte[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            keys[i] = fieldNames[i].getBytes(StandardCharsets.UTF_8);
+            types[i] = typeOf(fieldClasses[i]);
+        }
+    }
+
+    /**
+     * 解码
+     *
+     * @param message utf-8 编码的json对象
+     * @return
+     * @throws IOException json格式错误
+     */
+    public Row decode(byte[] message) throws IOException {
+        return decode(message, 0, message.length);
+    }
+
+    public Row decode(byte[] message, int offset, int length) throws IOException {
+        final Row row = new Row(keys.length);
+        decodeInto(message, offset, length, row);
+        return row;
+    }
+
+    /**
+     * 解码到已有的行中, 未出现的字段置空
+     *
+     * @param message
+     * @param offset
+     * @param length
+     * @param row
+     * @throws IOException
+     */
+    public void decodeInto(byte[] message, int offset, int length, Row row) throws IOException {
+        this.buf = message;
+        this.pos = offset;
+        this.end = offset + length;
+        for (int i = 0; i < keys.length; i++) {
+            row.setField(i, null);
+        }
+        try {
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            for (; ; ) {
+                skipWhitespace();
+                final int field = readKey();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (field < 0) {
+                    skipValue();
+                } else {
+                    row.setField(field, readValue(field));
+                }
+                skipWhitespace();
+                final byte b = next();
+                if (b == '}') {
+                    return;
+                }
+                if (b != ',') {
+                    throw error("expected ',' or '}'");
+                }
+            }
+        } finally {
+            this.buf = null;
+        }
+    }
+
+    // ------------------------------------------------------------ key
+
+    /**
+     * 读取key并匹配字段下标, 未声明返回-1
+     */
+    private int readKey() throws IOException {
+        expect('"');
+        final int start = pos;
+        boolean escaped = false;
+        for (; ; ) {
+            final byte b = next();
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                escaped = true;
+                next();
+            }
+        }
+        final int len = pos - 1 - start;
+        if (escaped) {
+            return schema.indexOf(decodeString(start, pos - 1));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            final byte[] key = keys[i];
+            if (key.length == len && equalsAt(key, start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equalsAt(byte[] key, int start) {
+        for (int j = 0; j < key.length; j++) {
+            if (buf[start + j] != key[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------ value
+
+    private Object readValue(int field) throws IOException {
+        final byte b = peek();
+        switch (b) {
+            case '"':
+                final String text = readString();
+                return types[field] == T_STRING ? text : schema.convert(field, text);
+            case '{':
+            case '[':
+                final int start = pos;
+                skipValue();
+                final String raw = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+                return types[field] == T_STRING ? raw : schema.convert(field, raw);
+            case 't':
+                expectLiteral("true");
+                return types[field] == T_BOOLEAN ? Boolean.TRUE : schema.convert(field, Boolean.TRUE);
+            case 'f':
+                expectLiteral("false");
+                return types[field] == T_BOOLEAN ? Boolean.FALSE : schema.convert(field, Boolean.FALSE);
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                return readNumber(field);
+        }
+    }
+
+    private Object readNumber(int field) throws IOException {
+        final int start = pos;
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean exponent = false;
+        while (pos < end) {
+            final byte b = buf[pos];
+            if (b >= '0' && b <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    if (fraction) fractionDigits++;
+                } else {
+                    // 超出long精度, 回退到标准解析
+                    digits++;
+                }
+            } else if (b == '.') {
+                fraction = true;
+            } else if (b == 'e' || b == 'E' || b == '+' || (b == '-' && pos > start)) {
+                exponent = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start || (negative && pos == start + 1)) {
+            throw error("unexpected character");
+        }
+        final long value = negative ? -mantissa : mantissa;
+        final boolean exact = digits <= 18 && !exponent;
+        switch (types[field]) {
+            case T_LONG:
+                if (exact && !fraction) return value;
+                return fraction || exponent ? (long) parseDouble(start) : parseLong(start);
+            case T_INT:
+                if (exact && !fraction) return toInt(value);
+                return fraction || exponent ? toInt(parseDouble(start)) : toInt(parseLong(start));
+            case T_DOUBLE:
+                return exact && digits <= 15 && fractionDigits <= 22 ? value / POWERS_OF_TEN[fractionDigits] : parseDouble(start);
+            case T_FLOAT:
+                return (float) (exact && digits <= 15 && fractionDigits <= 22 ? value / POWERS_OF_TEN[fractionDigits] : parseDouble(start));
+            case T_STRING:
+                return new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+            default:
+                return schema.convert(field, new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+        }
+    }
+
+    // 超出int范围按格式错误处理, 不截断
+    private int toInt(long value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("number out of int range");
+        }
+        return (int) value;
+    }
+
+    private int toInt(double value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("number out of int range");
+        }
+        return (int) value;
+    }
+
+    private long parseLong(int start) throws IOException {
+        try {
+            return Long.parseLong(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw error("illegal number");
+        }
+    }
+
+    private double parseDouble(int start) throws IOException {
+        try {
+            return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw error("illegal number");
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        final int start = pos;
+        boolean escaped = false;
+        for (; ; ) {
+            final byte b = next();
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                escaped = true;
+                next();
+            }
+        }
+        return escaped ? decodeString(start, pos - 1) : new String(buf, start, pos - 1 - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码含转义符的字符串
+     */
+    private String decodeString(int start, int stop) throws IOException {
+        if (null == chars) {
+            chars = new StringBuilder(64);
+        }
+        chars.setLength(0);
+        int segment = start;
+        int i = start;
+        while (i < stop) {
+            if (buf[i] != '\\') {
+                i++;
+                continue;
+            }
+            if (i > segment) {
+                chars.append(new String(buf, segment, i - segment, StandardCharsets.UTF_8));
+            }
+            final byte e = buf[++i];
+            switch (e) {
+                case 'n':
+                    chars.append('\n');
+                    break;
+                case 't':
+                    chars.append('\t');
+                    break;
+                case 'r':
+                    chars.append('\r');
+                    break;
+                case 'b':
+                    chars.append('\b');
+                    break;
+                case 'f':
+                    chars.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 >= stop) {
+                        throw error("illegal unicode escape");
+                    }
+                    chars.append((char) Integer.parseInt(new String(buf, i + 1, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                    break;
+                default:
+                    chars.append((char) e);
+            }
+            segment = ++i;
+        }
+        if (stop > segment) {
+            chars.append(new String(buf, segment, stop - segment, StandardCharsets.UTF_8));
+        }
+        return chars.toString();
+    }
+
+    /**
+     * 跳过任意json值, 不做解析
+     */
+    private void skipValue() throws IOException {
+        final byte b = peek();
+        if (b == '"') {
+            pos++;
+            skipStringBody();
+            return;
+        }
+        if (b != '{' && b != '[') {
+            // 数字或字面量
+            final int start = pos;
+            while (pos < end) {
+                final byte c = buf[pos];
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw error("unexpected character");
+            }
+            return;
+        }
+        int depth = 0;
+        for (; ; ) {
+            final byte c = next();
+            if (c == '"') {
+                skipStringBody();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipStringBody() throws IOException {
+        for (; ; ) {
+            final byte c = next();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                next();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------ helper
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            final byte b = buf[pos];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= end) {
+            throw error("unexpected end of input");
+        }
+        return buf[pos];
+    }
+
+    private byte next() throws IOException {
+        if (pos >= end) {
+            throw error("unexpected end of input");
+        }
+        return buf[pos++];
+    }
+
+    private void expect(char c) throws IOException {
+        if (next() != c) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            expect(literal.charAt(i));
+        }
+    }
+
+    private IOException error(String reason) {
+        return new IOException("malformed json at position " + pos + ": " + reason);
+    }
+
+    private static byte typeOf(Class<?> clazz) {
+        if (clazz == Long.class) return T_LONG;
+        if (clazz == Integer.class) return T_INT;
+        if (clazz == Double.class) return T_DOUBLE;
+        if (clazz == Float.class) return T_FLOAT;
+        if (clazz == Boolean.class) return T_BOOLEAN;
+        if (clazz == Character.class) return T_CHAR;
+        return T_STRING;
+    }
+}
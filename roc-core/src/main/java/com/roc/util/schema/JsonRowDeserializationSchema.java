@@ -0,0 +1,102 @@
+package com.roc.util.schema;
+
+import com.roc.metrics.RocMetrics;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.types.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * JsonRowDeserializationSchema
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/06
+ * @description 将utf-8 json字节直接解码为行, 跳过 byte[] -> String -> Map 的中间转换
+ * 解码失败的消息计数后跳过(返回null), 不中断任务
+ */
+public class JsonRowDeserializationSchema implements DeserializationSchema<Row> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(JsonRowDeserializationSchema.class);
+
+    private final RowSchema schema;
+    // 对象复用: 每条消息解码到同一行实例, 仅在下游不持有输入记录时开启
+    private final boolean reuseRow;
+
+    private transient JsonRowDecoder decoder;
+    private transient Row row;
+    private transient Counter records;
+    private transient Counter bytes;
+    private transient Counter decodeErrors;
+
+    public JsonRowDeserializationSchema(RowSchema schema) {
+        this(schema, false);
+    }
+
+    public JsonRowDeserializationSchema(RowSchema schema, boolean reuseRow) {
+        this.schema = checkNotNull(schema);
+        this.reuseRow = reuseRow;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void open(InitializationContext context) {
+        final MetricGroup group = RocMetrics.group(context.getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_IN);
+        bytes = RocMetrics.counter(group, RocMetrics.BYTES_IN);
+        decodeErrors = RocMetrics.counter(group, RocMetrics.DECODE_ERRORS);
+    }
+
+    @Override
+    public Row deserialize(byte[] message) throws IOException {
+        if (null == decoder) {
+            decoder = new JsonRowDecoder(schema);
+            if (null == records) {
+                // 未经 open 直接使用(单独解码)时不上报
+                records = new SimpleCounter();
+                bytes = new SimpleCounter();
+                decodeErrors = new SimpleCounter();
+            }
+        }
+        if (null == message) {
+            return null;
+        }
+        records.inc();
+        bytes.inc(message.length);
+        try {
+            if (!reuseRow) {
+                return decoder.decode(message);
+            }
+            if (null == row) {
+                row = new Row(schema.getArity());
+            }
+            decoder.decodeInto(message, 0, message.length, row);
+            return row;
+        } catch (IOException | RuntimeException e) {
+            decodeErrors.inc();
+            LOG.debug("skip the message that can not be decoded: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isEndOfStream(Row nextElement) {
+        return false;
+    }
+
+    @Override
+    public TypeInformation<Row> getProducedType() {
+        return schema.getRowTypeInfo();
+    }
+}
@@ -0,0 +1,81 @@
+package com.roc.util.schema;
+
+import com.alibaba.fastjson.JSON;
+import com.roc.metrics.RocMetrics;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.types.Row;
+import org.apache.flink.util.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JsonRowParseFunction
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/14
+ * @description json字符串按字段定义转化为行, 供输出字符串的数据源(hbase / mysql / elasticsearch)使用
+ * 解析失败的记录计数后跳过, 不中断任务
+ */
+public class JsonRowParseFunction extends RichFlatMapFunction<String, Row> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(JsonRowParseFunction.class);
+
+    private final RowSchema schema;
+    // 对象复用: 每条记录写入同一行实例
+    private final boolean reuseRow;
+
+    private transient Row row;
+    private transient Counter records;
+    private transient Counter decodeErrors;
+
+    public JsonRowParseFunction(RowSchema schema, boolean reuseRow) {
+        this.schema = schema;
+        this.reuseRow = reuseRow;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        final MetricGroup group = RocMetrics.group(getRuntimeContext().getMetricGroup());
+        records = RocMetrics.counter(group, RocMetrics.RECORDS_IN);
+        decodeErrors = RocMetrics.counter(group, RocMetrics.DECODE_ERRORS);
+    }
+
+    @Override
+    public void flatMap(String value, Collector<Row> out) {
+        records.inc();
+        final Row parsed;
+        try {
+            parsed = parse(value);
+        } catch (RuntimeException e) {
+            decodeErrors.inc();
+            LOG.debug("skip the record that can not be parsed: {}", e.getMessage());
+            return;
+        }
+        if (null != parsed) {
+            out.collect(parsed);
+        }
+    }
+
+    /**
+     * 解析单条记录
+     *
+     * @param value
+     * @return 空记录返回null
+     */
+    public Row parse(String value) {
+        if (null == value) {
+            return null;
+        }
+        if (!reuseRow) {
+            return schema.toRow(JSON.parseObject(value));
+        }
+        if (null == row) {
+            row = new Row(schema.getArity());
+        }
+        return schema.toRow(JSON.parseObject(value), row);
+    }
+}
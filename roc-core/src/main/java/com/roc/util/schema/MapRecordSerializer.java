@@ -0,0 +1,365 @@
+package com.roc.util.schema;
+
+import org.apache.flink.api.common.typeutils.CompositeTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.StringValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MapRecordSerializer
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/13
+ * @description map记录序列化器: 已知字段名写字典下标, 未知字段名内联; 值按类型标记写入, 其余类型交由kryo
+ * 格式: size(varint) + [key(varint, 0表示内联字段名) + tag(byte) + value]*
+ */
+public final class MapRecordSerializer extends TypeSerializer<Map<String, Object>> {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_LONG = 2;
+    private static final byte T_INT = 3;
+    private static final byte T_DOUBLE = 4;
+    private static final byte T_FLOAT = 5;
+    private static final byte T_BOOLEAN = 6;
+    private static final byte T_SHORT = 7;
+    private static final byte T_BYTE = 8;
+    private static final byte T_CHAR = 9;
+    private static final byte T_BYTES = 10;
+    private static final byte T_MAP = 11;
+    private static final byte T_LIST = 12;
+    private static final byte T_GENERIC = 13;
+
+    private final String[] fieldNames;
+    private final TypeSerializer<Object> genericSerializer;
+    private final Map<String, Integer> fieldIds;
+
+    public MapRecordSerializer(String[] fieldNames, TypeSerializer<Object> genericSerializer) {
+        this.fieldNames = fieldNames;
+        this.genericSerializer = genericSerializer;
+        this.fieldIds = new HashMap<>(fieldNames.length << 1);
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldIds.putIfAbsent(fieldNames[i], i);
+        }
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<Map<String, Object>> duplicate() {
+        final TypeSerializer<Object> duplicate = genericSerializer.duplicate();
+        return duplicate == genericSerializer ? this : new MapRecordSerializer(fieldNames, duplicate);
+    }
+
+    @Override
+    public Map<String, Object> createInstance() {
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * 基本类型与字符串不可变, 只复制容器
+     */
+    @Override
+    public Map<String, Object> copy(Map<String, Object> from) {
+        final LinkedHashMap<String, Object> map = new LinkedHashMap<>(from.size() << 1);
+        for (Map.Entry<String, Object> entry : from.entrySet()) {
+            map.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Object> copy(Map<String, Object> from, Map<String, Object> reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(Map<String, Object> record, DataOutputView target) throws IOException {
+        writeVarInt(record.size(), target);
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            final Integer id = fieldIds.get(entry.getKey());
+            if (null == id) {
+                writeVarInt(0, target);
+                StringValue.writeString(entry.getKey(), target);
+            } else {
+                writeVarInt(id + 1, target);
+            }
+            writeValue(entry.getValue(), target);
+        }
+    }
+
+    @Override
+    public Map<String, Object> deserialize(DataInputView source) throws IOException {
+        final int size = readVarInt(source);
+        final LinkedHashMap<String, Object> map = new LinkedHashMap<>(size << 1);
+        for (int i = 0; i < size; i++) {
+            final int id = readVarInt(source);
+            final String key = id == 0 ? StringValue.readString(source) : fieldNames[id - 1];
+            map.put(key, readValue(source));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Object> deserialize(Map<String, Object> reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    // ------------------------------------------------------------ value
+
+    private void writeValue(Object value, DataOutputView target) throws IOException {
+        if (null == value) {
+            target.writeByte(T_NULL);
+        } else if (value instanceof String) {
+            target.writeByte(T_STRING);
+            StringValue.writeString((String) value, target);
+        } else if (value instanceof Long) {
+            target.writeByte(T_LONG);
+            target.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            target.writeByte(T_INT);
+            target.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            target.writeByte(T_DOUBLE);
+            target.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            target.writeByte(T_FLOAT);
+            target.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            target.writeByte(T_BOOLEAN);
+            target.writeBoolean((Boolean) value);
+        } else if (value instanceof Short) {
+            target.writeByte(T_SHORT);
+            target.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            target.writeByte(T_BYTE);
+            target.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            target.writeByte(T_CHAR);
+            target.writeChar((Character) value);
+        } else if (value instanceof byte[]) {
+            target.writeByte(T_BYTES);
+            writeVarInt(((byte[]) value).length, target);
+            target.write((byte[]) value);
+        } else if (value instanceof Map) {
+            target.writeByte(T_MAP);
+            final Map<?, ?> map = (Map<?, ?>) value;
+            writeVarInt(map.size(), target);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey(), target);
+                writeValue(entry.getValue(), target);
+            }
+        } else if (value instanceof List) {
+            target.writeByte(T_LIST);
+            final List<?> list = (List<?>) value;
+            writeVarInt(list.size(), target);
+            for (Object element : list) {
+                writeValue(element, target);
+            }
+        } else {
+            target.writeByte(T_GENERIC);
+            genericSerializer.serialize(value, target);
+        }
+    }
+
+    private Object readValue(DataInputView source) throws IOException {
+        final byte tag = source.readByte();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_STRING:
+                return StringValue.readString(source);
+            case T_LONG:
+                return source.readLong();
+            case T_INT:
+                return source.readInt();
+            case T_DOUBLE:
+                return source.readDouble();
+            case T_FLOAT:
+                return source.readFloat();
+            case T_BOOLEAN:
+                return source.readBoolean();
+            case T_SHORT:
+                return source.readShort();
+            case T_BYTE:
+                return source.readByte();
+            case T_CHAR:
+                return source.readChar();
+            case T_BYTES:
+                final byte[] bytes = new byte[readVarInt(source)];
+                source.readFully(bytes);
+                return bytes;
+            case T_MAP:
+                final int mapSize = readVarInt(source);
+                final LinkedHashMap<Object, Object> map = new LinkedHashMap<>(mapSize << 1);
+                for (int i = 0; i < mapSize; i++) {
+                    map.put(readValue(source), readValue(source));
+                }
+                return map;
+            case T_LIST:
+                final int listSize = readVarInt(source);
+                final List<Object> list = new ArrayList<>(listSize);
+                for (int i = 0; i < listSize; i++) {
+                    list.add(readValue(source));
+                }
+                return list;
+            case T_GENERIC:
+                return genericSerializer.deserialize(source);
+            default:
+                throw new IOException("unknown value tag " + tag);
+        }
+    }
+
+    private Object copyValue(Object value) {
+        if (null == value || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return value;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof Map) {
+            final LinkedHashMap<Object, Object> map = new LinkedHashMap<>(((Map<?, ?>) value).size() << 1);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            return map;
+        }
+        if (value instanceof List) {
+            final List<Object> list = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                list.add(copyValue(element));
+            }
+            return list;
+        }
+        return genericSerializer.copy(value);
+    }
+
+    private static void writeVarInt(int value, DataOutputView target) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            target.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputView source) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = source.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // ------------------------------------------------------------ snapshot
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MapRecordSerializer)) {
+            return false;
+        }
+        final MapRecordSerializer other = (MapRecordSerializer) obj;
+        return Arrays.equals(fieldNames, other.fieldNames) && genericSerializer.equals(other.genericSerializer);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(fieldNames) + genericSerializer.hashCode();
+    }
+
+    @Override
+    public TypeSerializerSnapshot<Map<String, Object>> snapshotConfiguration() {
+        return new MapRecordSerializerSnapshot(this);
+    }
+
+    /**
+     * 快照保存字段字典, 字典变化时需迁移状态
+     */
+    public static final class MapRecordSerializerSnapshot extends CompositeTypeSerializerSnapshot<Map<String, Object>, MapRecordSerializer> {
+        private static final int VERSION = 1;
+
+        private String[] fieldNames;
+
+        public MapRecordSerializerSnapshot() {
+            super(MapRecordSerializer.class);
+        }
+
+        MapRecordSerializerSnapshot(MapRecordSerializer serializer) {
+            super(serializer);
+            this.fieldNames = serializer.fieldNames;
+        }
+
+        @Override
+        protected int getCurrentOuterSnapshotVersion() {
+            return VERSION;
+        }
+
+        @Override
+        protected TypeSerializer<?>[] getNestedSerializers(MapRecordSerializer outerSerializer) {
+            return new TypeSerializer<?>[]{outerSerializer.genericSerializer};
+        }
+
+        @Override
+        protected MapRecordSerializer createOuterSerializerWithNestedSerializers(TypeSerializer<?>[] nestedSerializers) {
+            return new MapRecordSerializer(fieldNames, (TypeSerializer<Object>) nestedSerializers[0]);
+        }
+
+        @Override
+        protected void writeOuterSnapshot(DataOutputView out) throws IOException {
+            writeVarInt(fieldNames.length, out);
+            for (String fieldName : fieldNames) {
+                StringValue.writeString(fieldName, out);
+            }
+        }
+
+        @Override
+        protected void readOuterSnapshot(int readOuterSnapshotVersion, DataInputView in, ClassLoader userCodeClassLoader) throws IOException {
+            fieldNames = new String[readVarInt(in)];
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldNames[i] = StringValue.readString(in);
+            }
+        }
+
+        @Override
+        protected OuterSchemaCompatibility resolveOuterSchemaCompatibility(MapRecordSerializer newSerializer) {
+            return Arrays.equals(fieldNames, newSerializer.fieldNames)
+                    ? OuterSchemaCompatibility.COMPATIBLE_AS_IS
+                    : OuterSchemaCompatibility.COMPATIBLE_AFTER_MIGRATION;
+        }
+    }
+}
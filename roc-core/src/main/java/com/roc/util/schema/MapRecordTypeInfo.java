@@ -0,0 +1,119 @@
+package com.roc.util.schema;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * MapRecordTypeInfo
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/13
+ * @description map记录类型, 替代GenericTypeInfo(kryo), 序列化见 {@link MapRecordSerializer}
+ */
+public class MapRecordTypeInfo extends TypeInformation<Map<String, Object>> {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] EMPTY = new String[0];
+
+    private final String[] fieldNames;
+    // 字段声明类型, 未知时为null; 只用于分区key类型, 不影响序列化
+    private final Class<?>[] fieldClasses;
+
+    /**
+     * @param fieldNames 已知字段名(字典), 上下游需一致
+     */
+    public MapRecordTypeInfo(String[] fieldNames) {
+        this(fieldNames, null);
+    }
+
+    /**
+     * @param fieldNames   已知字段名(字典), 上下游需一致
+     * @param fieldClasses 与字段名对应的声明类型, 元素可为null
+     */
+    public MapRecordTypeInfo(String[] fieldNames, Class<?>[] fieldClasses) {
+        this.fieldNames = null == fieldNames ? EMPTY : fieldNames;
+        this.fieldClasses = null == fieldClasses ? new Class<?>[this.fieldNames.length] : fieldClasses;
+        if (this.fieldClasses.length != this.fieldNames.length) {
+            throw new IllegalArgumentException("the field classes do not match the field names " + Arrays.toString(this.fieldNames));
+        }
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @param fieldName
+     * @return 字段声明类型, 未知时返回null
+     */
+    public Class<?> getFieldClass(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return fieldClasses[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<Map<String, Object>> getTypeClass() {
+        return (Class<Map<String, Object>>) (Class<?>) Map.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<Map<String, Object>> createSerializer(ExecutionConfig config) {
+        return new MapRecordSerializer(fieldNames, new KryoSerializer<>(Object.class, config));
+    }
+
+    @Override
+    public String toString() {
+        return "MapRecord" + Arrays.toString(fieldNames);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MapRecordTypeInfo && Arrays.equals(fieldNames, ((MapRecordTypeInfo) obj).fieldNames)
+                && Arrays.equals(fieldClasses, ((MapRecordTypeInfo) obj).fieldClasses);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(fieldNames) + Arrays.hashCode(fieldClasses);
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof MapRecordTypeInfo;
+    }
+}
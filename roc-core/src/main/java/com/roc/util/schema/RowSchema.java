@@ -0,0 +1,215 @@
+package com.roc.util.schema;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.roc.util.TypeInformationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
+import org.apache.flink.types.Row;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RowSchema
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/06
+ * @description 数据源字段定义(id String,name String,price Double)编译后的定长行结构
+ */
+public final class RowSchema implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] fieldNames;
+    private final String[] fieldTypes;
+    private final Class<?>[] fieldClasses;
+    private final TypeInformation<?>[] typeInformations;
+
+    private RowSchema(String[] fieldNames, String[] fieldTypes) {
+        this.fieldNames = fieldNames;
+        this.fieldTypes = fieldTypes;
+        this.typeInformations = TypeInformationUtils.getTypeInformation(fieldTypes);
+        this.fieldClasses = new Class<?>[typeInformations.length];
+        for (int i = 0; i < typeInformations.length; i++) {
+            fieldClasses[i] = typeInformations[i].getTypeClass();
+        }
+    }
+
+    /**
+     * 编译字段定义
+     *
+     * @param fields 格式: id String,name String,price Double
+     * @return
+     */
+    public static RowSchema compile(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            throw new IllegalArgumentException("source fields is required");
+        }
+        final String[] splitFields = fields.trim().split("\\s*,\\s*");
+        int len = splitFields.length;
+        String[] fieldNames = new String[len];
+        String[] fieldTypes = new String[len];
+        for (int i = 0; i < len; i++) {
+            final String[] ft = splitFields[i].trim().split("\\s+");
+            if (ft.length != 2) {
+                throw new IllegalArgumentException("the field definition [" + splitFields[i] + "] is not supported");
+            }
+            fieldNames[i] = ft[0];
+            fieldTypes[i] = ft[1];
+        }
+        return new RowSchema(fieldNames, fieldTypes);
+    }
+
+    public int getArity() {
+        return fieldNames.length;
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    public String[] getFieldTypes() {
+        return fieldTypes;
+    }
+
+    public Class<?>[] getFieldClasses() {
+        return fieldClasses;
+    }
+
+    public TypeInformation<?>[] getTypeInformations() {
+        return typeInformations;
+    }
+
+    public RowTypeInfo getRowTypeInfo() {
+        return new RowTypeInfo(typeInformations, fieldNames);
+    }
+
+    /**
+     * 字段裁剪, 仅保留被引用的字段(保持声明顺序), 未声明的名称忽略
+     *
+     * @param referencedFields 为空时不裁剪
+     * @return
+     */
+    public RowSchema project(Collection<String> referencedFields) {
+        if (null == referencedFields) {
+            return this;
+        }
+        final List<String> names = new ArrayList<>(fieldNames.length);
+        final List<String> types = new ArrayList<>(fieldNames.length);
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (referencedFields.contains(fieldNames[i])) {
+                names.add(fieldNames[i]);
+                types.add(fieldTypes[i]);
+            }
+        }
+        // 无引用字段时保留首个字段, 保证流定义合法
+        if (names.isEmpty()) {
+            names.add(fieldNames[0]);
+            types.add(fieldTypes[0]);
+        }
+        if (names.size() == fieldNames.length) {
+            return this;
+        }
+        return new RowSchema(names.toArray(new String[0]), types.toArray(new String[0]));
+    }
+
+    /**
+     * 追加字段, 字段已存在时不变
+     *
+     * @param fieldName
+     * @param fieldType
+     * @return
+     */
+    public RowSchema append(String fieldName, String fieldType) {
+        if (indexOf(fieldName) >= 0) {
+            return this;
+        }
+        final String[] names = Arrays.copyOf(fieldNames, fieldNames.length + 1);
+        final String[] types = Arrays.copyOf(fieldTypes, fieldTypes.length + 1);
+        names[fieldNames.length] = fieldName;
+        types[fieldTypes.length] = fieldType;
+        return new RowSchema(names, types);
+    }
+
+    /**
+     * 字段下标, 不存在返回-1
+     *
+     * @param fieldName
+     * @return
+     */
+    public int indexOf(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按字段定义将map转化为行, 未声明的字段被丢弃
+     *
+     * @param data
+     * @return
+     */
+    public Row toRow(Map<String, Object> data) {
+        return toRow(data, new Row(fieldNames.length));
+    }
+
+    /**
+     * 按字段定义将map写入已有的行
+     *
+     * @param data
+     * @param reuse
+     * @return
+     */
+    public Row toRow(Map<String, Object> data, Row reuse) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            reuse.setField(i, null == data ? null : convert(i, data.get(fieldNames[i])));
+        }
+        return reuse;
+    }
+
+    /**
+     * 行转化为有序map, 供基于map的引擎(groovy cep / stellar)使用
+     *
+     * @param row
+     * @return
+     */
+    public LinkedHashMap<String, Object> toMap(Row row) {
+        final LinkedHashMap<String, Object> map = new LinkedHashMap<>(fieldNames.length << 1);
+        for (int i = 0; i < fieldNames.length; i++) {
+            map.put(fieldNames[i], row.getField(i));
+        }
+        return map;
+    }
+
+    /**
+     * 按字段类型转换值
+     *
+     * @param pos
+     * @param value
+     * @return
+     */
+    public Object convert(int pos, Object value) {
+        if (null == value || fieldClasses[pos].isInstance(value)) {
+            return value;
+        }
+        return TypeUtils.cast(value, fieldClasses[pos], ParserConfig.getGlobalInstance());
+    }
+
+    @Override
+    public String toString() {
+        return "RowSchema{" +
+                "fieldNames=" + Arrays.toString(fieldNames) +
+                ", fieldTypes=" + Arrays.toString(fieldTypes) +
+                '}';
+    }
+}
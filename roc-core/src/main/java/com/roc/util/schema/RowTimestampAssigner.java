@@ -0,0 +1,69 @@
+package com.roc.util.schema;
+
+import com.roc.entity.JobDetail;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.eventtime.SerializableTimestampAssigner;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
+import org.apache.flink.types.Row;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * RowTimestampAssigner
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/12
+ * @description 从行的时间字段(毫秒)提取事件时间, 字段为空时沿用数据源记录时间(kafka record timestamp)
+ */
+public class RowTimestampAssigner implements SerializableTimestampAssigner<Row> {
+    private static final long serialVersionUID = 1L;
+
+    private final int pos;
+
+    public RowTimestampAssigner(int pos) {
+        this.pos = pos;
+    }
+
+    /**
+     * 数据源水位线策略
+     *
+     * @param sourceDetail
+     * @param schema
+     * @return 未配置时间字段时返回null
+     */
+    public static WatermarkStrategy<Row> forSource(JobDetail.SourceDetail sourceDetail, RowSchema schema) {
+        final String timestampField = sourceDetail.getTimestampField();
+        if (StringUtils.isBlank(timestampField)) {
+            return null;
+        }
+        final int pos = schema.indexOf(timestampField);
+        if (pos < 0) {
+            throw new IllegalArgumentException("the timestamp field [" + timestampField + "] is not declared in " + schema);
+        }
+        final long maxOutOfOrderness = null == sourceDetail.getMaxOutOfOrderness() ? 0L : sourceDetail.getMaxOutOfOrderness();
+        WatermarkStrategy<Row> watermarkStrategy = WatermarkStrategy.<Row>forBoundedOutOfOrderness(Duration.ofMillis(maxOutOfOrderness))
+                .withTimestampAssigner(new RowTimestampAssigner(pos));
+        // 空闲分区不再阻塞下游水位线推进
+        if (null != sourceDetail.getIdleTimeout() && sourceDetail.getIdleTimeout() > 0) {
+            watermarkStrategy = watermarkStrategy.withIdleness(Duration.ofMillis(sourceDetail.getIdleTimeout()));
+        }
+        return watermarkStrategy;
+    }
+
+    @Override
+    public long extractTimestamp(Row element, long recordTimestamp) {
+        final Object value = element.getField(pos);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof String && StringUtils.isNumeric((String) value)) {
+            return Long.parseLong((String) value);
+        }
+        return recordTimestamp;
+    }
+}
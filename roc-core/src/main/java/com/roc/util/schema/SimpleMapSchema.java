@@ -1,6 +1,7 @@
 package com.roc.util.schema;
 
 import com.alibaba.fastjson.JSON;
+import com.roc.metrics.LatencyTracking;
 import org.apache.flink.api.common.serialization.DeserializationSchema;
 import org.apache.flink.api.common.serialization.SerializationSchema;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
@@ -61,7 +62,7 @@ public class SimpleMapSchema implements DeserializationSchema<Map<String, String
 
     @Override
     public byte[] serialize(Map element) {
-        return JSON.toJSONString(element).getBytes();
+        return JSON.toJSONString(LatencyTracking.strip(element)).getBytes();
     }
 
     @Override
@@ -0,0 +1,23 @@
+package com.roc.util.schema;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.flink.types.Row;
+
+/**
+ * TaggedRow
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/21
+ * @description 带输入流下标的行, 多个字段结构不同的数据源合并为一个流时使用, 序列化见 {@link TaggedRowSerializer}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaggedRow {
+    // 输入流下标
+    private int tag;
+    private Row row;
+}
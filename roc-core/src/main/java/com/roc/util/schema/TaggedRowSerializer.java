@@ -0,0 +1,138 @@
+package com.roc.util.schema;
+
+import org.apache.flink.api.common.typeutils.CompositeTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.Row;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * TaggedRowSerializer
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/21
+ * @description 带输入流下标的行序列化器, 格式: tag(byte) + row(对应下标的行序列化器)
+ */
+public final class TaggedRowSerializer extends TypeSerializer<TaggedRow> {
+    private static final long serialVersionUID = 1L;
+
+    private final TypeSerializer<Row>[] rowSerializers;
+
+    public TaggedRowSerializer(TypeSerializer<Row>[] rowSerializers) {
+        this.rowSerializers = rowSerializers;
+    }
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<TaggedRow> duplicate() {
+        final TypeSerializer<Row>[] duplicates = new TypeSerializer[rowSerializers.length];
+        boolean stateful = false;
+        for (int i = 0; i < rowSerializers.length; i++) {
+            duplicates[i] = rowSerializers[i].duplicate();
+            stateful |= duplicates[i] != rowSerializers[i];
+        }
+        return stateful ? new TaggedRowSerializer(duplicates) : this;
+    }
+
+    @Override
+    public TaggedRow createInstance() {
+        return new TaggedRow();
+    }
+
+    @Override
+    public TaggedRow copy(TaggedRow from) {
+        return new TaggedRow(from.getTag(), rowSerializers[from.getTag()].copy(from.getRow()));
+    }
+
+    @Override
+    public TaggedRow copy(TaggedRow from, TaggedRow reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(TaggedRow record, DataOutputView target) throws IOException {
+        target.writeByte(record.getTag());
+        rowSerializers[record.getTag()].serialize(record.getRow(), target);
+    }
+
+    @Override
+    public TaggedRow deserialize(DataInputView source) throws IOException {
+        final int tag = source.readByte();
+        return new TaggedRow(tag, rowSerializers[tag].deserialize(source));
+    }
+
+    @Override
+    public TaggedRow deserialize(TaggedRow reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        final int tag = source.readByte();
+        target.writeByte(tag);
+        rowSerializers[tag].copy(source, target);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TaggedRowSerializer && Arrays.equals(rowSerializers, ((TaggedRowSerializer) obj).rowSerializers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(rowSerializers);
+    }
+
+    @Override
+    public TypeSerializerSnapshot<TaggedRow> snapshotConfiguration() {
+        return new TaggedRowSerializerSnapshot(this);
+    }
+
+    /**
+     * 快照保存各输入流的行序列化器
+     */
+    public static final class TaggedRowSerializerSnapshot extends CompositeTypeSerializerSnapshot<TaggedRow, TaggedRowSerializer> {
+        private static final int VERSION = 1;
+
+        public TaggedRowSerializerSnapshot() {
+            super(TaggedRowSerializer.class);
+        }
+
+        TaggedRowSerializerSnapshot(TaggedRowSerializer serializer) {
+            super(serializer);
+        }
+
+        @Override
+        protected int getCurrentOuterSnapshotVersion() {
+            return VERSION;
+        }
+
+        @Override
+        protected TypeSerializer<?>[] getNestedSerializers(TaggedRowSerializer outerSerializer) {
+            return outerSerializer.rowSerializers;
+        }
+
+        @Override
+        protected TaggedRowSerializer createOuterSerializerWithNestedSerializers(TypeSerializer<?>[] nestedSerializers) {
+            final TypeSerializer<Row>[] rowSerializers = new TypeSerializer[nestedSerializers.length];
+            for (int i = 0; i < nestedSerializers.length; i++) {
+                rowSerializers[i] = (TypeSerializer<Row>) nestedSerializers[i];
+            }
+            return new TaggedRowSerializer(rowSerializers);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.roc.util.schema;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
+import org.apache.flink.types.Row;
+
+import java.util.Arrays;
+
+/**
+ * TaggedRowTypeInfo
+ * <p>
+ *
+ * @author jelly.wang
+ * @create 2021/03/21
+ * @description 带输入流下标的行类型, 按下标选择各输入流的行序列化器, 替代kryo
+ */
+public class TaggedRowTypeInfo extends TypeInformation<TaggedRow> {
+    private static final long serialVersionUID = 1L;
+
+    private final RowTypeInfo[] rowTypes;
+
+    /**
+     * @param rowTypes 与输入流下标一一对应
+     */
+    public TaggedRowTypeInfo(RowTypeInfo[] rowTypes) {
+        if (rowTypes.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("at most " + Byte.MAX_VALUE + " tagged row types are supported");
+        }
+        this.rowTypes = rowTypes;
+    }
+
+    public RowTypeInfo[] getRowTypes() {
+        return rowTypes;
+    }
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<TaggedRow> getTypeClass() {
+        return TaggedRow.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<TaggedRow> createSerializer(ExecutionConfig config) {
+        final TypeSerializer<Row>[] rowSerializers = new TypeSerializer[rowTypes.length];
+        for (int i = 0; i < rowTypes.length; i++) {
+            rowSerializers[i] = rowTypes[i].createSerializer(config);
+        }
+        return new TaggedRowSerializer(rowSerializers);
+    }
+
+    @Override
+    public String toString() {
+        return "TaggedRow" + Arrays.toString(rowTypes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TaggedRowTypeInfo && Arrays.equals(rowTypes, ((TaggedRowTypeInfo) obj).rowTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(rowTypes);
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof TaggedRowTypeInfo;
+    }
+}
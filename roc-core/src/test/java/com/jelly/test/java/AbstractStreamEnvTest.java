@@ -0,0 +1,51 @@
+package com.jelly.test.java;
+
+import com.roc.util.AbstractStreamEnv;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.PipelineOptions;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AbstractStreamEnvTest {
+
+    @Test
+    public void addPipelineJar() throws Exception {
+        ConfigurableEnv env = new ConfigurableEnv();
+        env.configuration().set(PipelineOptions.JARS, Collections.singletonList("file:/tmp/job.jar"));
+        AbstractStreamEnv.addPipelineJar(env, new URL("file:/tmp/rule-1.jar"));
+        AbstractStreamEnv.addPipelineJar(env, new URL("file:/tmp/rule-2.jar"));
+        // 追加在已有的作业jar之后
+        Assert.assertEquals(Arrays.asList("file:/tmp/job.jar", "file:/tmp/rule-1.jar", "file:/tmp/rule-2.jar"),
+                env.configuration().get(PipelineOptions.JARS));
+    }
+
+    @Test
+    public void addPipelineJarFailsWithoutConfiguration() throws Exception {
+        StreamExecutionEnvironment env = new ConfigurableEnv() {
+            @Override
+            protected Configuration getConfiguration() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        try {
+            AbstractStreamEnv.addPipelineJar(env, new URL("file:/tmp/rule.jar"));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("pipeline.jars"));
+        }
+    }
+
+    /**
+     * 子类可访问执行环境的配置, 用于检查 pipeline.jars
+     */
+    private static class ConfigurableEnv extends StreamExecutionEnvironment {
+        Configuration configuration() {
+            return getConfiguration();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.jelly.test.java;
+
+import com.roc.functions.AviatorRegexFunction;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.query.api.definition.Attribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AviatorRegexFunctionTest {
+    private static final String EMAIL = "([\\w0-8]+)@\\w+[\\.\\w+]+";
+
+    @Test
+    public void dynamicRegex() {
+        Function function = new Function();
+        Assert.assertEquals("siddhi33", function.extract("siddhi33@roc.com", EMAIL));
+        Assert.assertEquals("", function.extract("no-mail", EMAIL));
+        Assert.assertEquals("roc", function.extract("roc-1", "(\\w+)-\\d"));
+    }
+
+    @Test
+    public void constantRegex() {
+        Function function = new Function();
+        function.init(new ExpressionExecutor[]{null, new ConstantExpressionExecutor(EMAIL, Attribute.Type.STRING)});
+        Assert.assertEquals("jelly", function.extract("jelly@roc.com", "ignored"));
+    }
+
+    @Test
+    public void expression() {
+        Function function = new Function();
+        Assert.assertEquals(3646.0, function.evaluate("1823.0+1823.0"));
+        Assert.assertEquals(3646.0, function.evaluate("1823.0+1823.0"));
+    }
+
+    /**
+     * execute / init 为 protected, 子类暴露调用入口
+     */
+    private static final class Function extends AviatorRegexFunction {
+        void init(ExpressionExecutor[] executors) {
+            init(executors, null, null);
+        }
+
+        Object extract(Object value, String regex) {
+            return execute(new Object[]{value, regex}, null);
+        }
+
+        Object evaluate(Object arg) {
+            return execute(arg, null);
+        }
+    }
+}
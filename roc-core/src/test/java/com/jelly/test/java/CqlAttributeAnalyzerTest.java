@@ -0,0 +1,37 @@
+package com.jelly.test.java;
+
+import com.google.common.collect.Sets;
+import com.roc.stream.cep.CqlAttributeAnalyzer;
+import com.roc.util.schema.RowSchema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CqlAttributeAnalyzerTest {
+
+    @Test
+    public void referencedAttributes() {
+        CqlAttributeAnalyzer analyzer = CqlAttributeAnalyzer.analyze("from inputStream[price > 10 and name != 'a'] select timestamp, id, aviator(price + price) as price insert into outputStream");
+        Assert.assertEquals(Sets.newHashSet("price", "name", "id", "timestamp"), analyzer.getReferencedAttributes("inputStream"));
+
+        analyzer = CqlAttributeAnalyzer.analyze("from a#window.time(1 sec) join b#window.length(2) on a.id == b.id select a.x, b.y insert into outputStream");
+        Assert.assertEquals(Sets.newHashSet("id", "x", "y"), analyzer.getReferencedAttributes("b"));
+    }
+
+    @Test
+    public void fullAttributes() {
+        Assert.assertNull(CqlAttributeAnalyzer.analyze("from inputStream select * insert into outputStream").getReferencedAttributes("inputStream"));
+        Assert.assertNull(CqlAttributeAnalyzer.analyze("from every e1=inputStream -> e2=inputStream within 5 sec select e1.id insert into outputStream").getReferencedAttributes("inputStream"));
+        Assert.assertNull(CqlAttributeAnalyzer.analyze("from inputStream select").getReferencedAttributes("inputStream"));
+    }
+
+    @Test
+    public void project() {
+        RowSchema schema = RowSchema.compile("id String,name String,price Double,timestamp Long");
+        RowSchema projected = schema.project(Arrays.asList("timestamp", "id", "unknown"));
+        Assert.assertArrayEquals(new String[]{"id", "timestamp"}, projected.getFieldNames());
+        Assert.assertSame(schema, schema.project(null));
+        Assert.assertArrayEquals(new String[]{"id"}, schema.project(Sets.newHashSet()).getFieldNames());
+    }
+}
@@ -0,0 +1,59 @@
+package com.jelly.test.java;
+
+import com.roc.common.cql.CqlLint;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class CqlLintTest {
+    private static final String DEFINITION = CqlLint.streamDefinition("inputStream", "id String,name String,price Double,timestamp Long");
+
+    @Test
+    public void streamDefinition() {
+        Assert.assertEquals("define stream inputStream (id string, name string, price double, timestamp long);\n", DEFINITION);
+    }
+
+    @Test
+    public void clean() {
+        Assert.assertTrue(CqlLint.lint(DEFINITION + "from inputStream[price > 10] select id, price insert into outputStream;", false).isEmpty());
+        Assert.assertTrue(CqlLint.lint(DEFINITION + "from inputStream#window.time(1 min) select id, sum(price) as total group by id insert into outputStream;", false).isEmpty());
+        Assert.assertTrue(CqlLint.lint(DEFINITION + "partition with (id of inputStream) begin "
+                + "from every e1=inputStream[price > 10] -> e2=inputStream[price > e1.price] within 1 min select e1.id, e2.price insert into outputStream; end;", false).isEmpty());
+    }
+
+    @Test
+    public void warnings() {
+        List<String> warnings = CqlLint.lint(DEFINITION + "@info(name = 'total') from inputStream select id, sum(price) as total group by id insert into outputStream;", false);
+        Assert.assertEquals(1, warnings.size());
+        Assert.assertTrue(warnings.get(0).startsWith("query [total]: group by"));
+
+        warnings = CqlLint.lint(DEFINITION + "from inputStream#window.expression('count() <= 20') select id insert into outputStream;", false);
+        Assert.assertEquals(1, warnings.size());
+        Assert.assertTrue(warnings.get(0).contains("window [expression]"));
+
+        // 缺少 within 且未分区
+        String pattern = DEFINITION + "from every e1=inputStream[price > 10] -> e2=inputStream[price > e1.price] select e1.id, e2.price insert into outputStream;";
+        Assert.assertEquals(2, CqlLint.lint(pattern, false).size());
+        // 数据源已按key分区
+        Assert.assertEquals(1, CqlLint.lint(pattern, true).size());
+    }
+
+    @Test
+    public void keyField() {
+        Assert.assertEquals("id", CqlLint.keyField("keyBy: id"));
+        Assert.assertEquals("id", CqlLint.keyField("KEYBY:id"));
+        Assert.assertNull(CqlLint.keyField(null));
+        Assert.assertNull(CqlLint.keyField("rebalance"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyFieldMissing() {
+        CqlLint.keyField("keyBy:");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void syntaxError() {
+        CqlLint.lint(DEFINITION + "from inputStream select id insert outputStream;", false);
+    }
+}
@@ -0,0 +1,64 @@
+package com.jelly.test.java;
+
+import com.roc.entity.JobDetail;
+import com.roc.stream.cep.CqlValidator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class CqlValidatorTest {
+    private static final String PATTERN = "from every e1=${0}[price > 10] -> e2=${0}[price > e1.price] within 1 min select e1.id, e2.price insert into outputStream;";
+
+    @Test
+    public void valid() {
+        Assert.assertTrue(CqlValidator.validate("from ${0}[price > 10] select id, price insert into outputStream;", jobDetail(null, null)).isEmpty());
+        Assert.assertTrue(CqlValidator.validate("from ${0} select id, substring(id, 0, 2) as prefix insert into alertStream;", jobDetail(null, "alertStream")).isEmpty());
+    }
+
+    @Test
+    public void keyedSources() {
+        // 未分区的模式匹配: 数据源未按key分区时警告
+        Assert.assertEquals(1, CqlValidator.validate(PATTERN, jobDetail(null, null)).size());
+        Assert.assertTrue(CqlValidator.validate(PATTERN, jobDetail("keyBy: id", null)).isEmpty());
+        Assert.assertEquals(1, CqlValidator.validate(PATTERN, jobDetail("rebalance", null)).size());
+    }
+
+    @Test
+    public void unknownField() {
+        assertInvalid("from ${0} select name insert into outputStream;", jobDetail(null, null), "cql compile error");
+    }
+
+    @Test
+    public void syntaxError() {
+        assertInvalid("from ${0} select id insert outputStream;", jobDetail(null, null), "cql syntax error");
+    }
+
+    @Test
+    public void unknownSinkStream() {
+        assertInvalid("from ${0} select id insert into outputStream;", jobDetail(null, "alertStream"), "the sink stream [alertStream]");
+    }
+
+    private static void assertInvalid(String cql, JobDetail jobDetail, String message) {
+        try {
+            CqlValidator.validate(cql, jobDetail);
+            Assert.fail("expected invalid cql: " + cql);
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static JobDetail jobDetail(String partition, String sinkStream) {
+        JobDetail.SourceDetail source = new JobDetail.SourceDetail();
+        source.setId("inputStream");
+        source.setFields("id String,price Double,timestamp Long");
+        source.setPartition(partition);
+        JobDetail.SinkDetail sink = new JobDetail.SinkDetail();
+        sink.setStream(sinkStream);
+        JobDetail jobDetail = new JobDetail();
+        jobDetail.setSources(Collections.singletonList(source));
+        jobDetail.setSinks(Collections.singletonList(sink));
+        return jobDetail;
+    }
+}
@@ -0,0 +1,166 @@
+package com.jelly.test.java;
+
+import com.roc.entity.JobDetail;
+import com.roc.source.FlinkSimpleDatagenSource;
+import com.roc.util.ZipfSampler;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.api.operators.StreamSource;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.util.AbstractStreamOperatorTestHarness;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class DatagenSourceTest {
+    private static final List<Row> ROWS = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void boundedParallelSequence() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(FlinkSimpleDatagenSource.ROWS_PER_SECOND, "0");
+        options.put(FlinkSimpleDatagenSource.NUMBER_OF_ROWS, "1001");
+        options.put("fields.id.kind", "sequence");
+        options.put("fields.name.cardinality", "10");
+        options.put("fields.price.min", "100");
+        options.put("fields.price.max", "200");
+        JobDetail.SourceDetail sourceDetail = new JobDetail.SourceDetail();
+        sourceDetail.setOptions(options);
+        RowSchema schema = RowSchema.compile("id Long,name String,price Double,timestamp Long");
+
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(3);
+        env.addSource(new FlinkSimpleDatagenSource(sourceDetail, schema)).addSink(new SinkFunction<Row>() {
+            @Override
+            public void invoke(Row value, Context context) {
+                ROWS.add(value);
+            }
+        });
+        env.execute();
+
+        Assert.assertEquals(1001, ROWS.size());
+        Set<Object> ids = new HashSet<>();
+        Set<Object> names = new HashSet<>();
+        for (Row row : ROWS) {
+            ids.add(row.getField(0));
+            names.add(row.getField(1));
+            double price = (Double) row.getField(2);
+            Assert.assertTrue(price >= 100 && price < 200);
+            Assert.assertTrue(row.getField(3) instanceof Long);
+        }
+        Assert.assertEquals(1001, ids.size());
+        for (long id = 0; id < 1001; id++) {
+            Assert.assertTrue(ids.contains(id));
+        }
+        Assert.assertTrue(names.size() <= 10);
+    }
+
+    @Test
+    public void restoreAtDifferentParallelism() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(FlinkSimpleDatagenSource.ROWS_PER_SECOND, "0");
+        options.put(FlinkSimpleDatagenSource.NUMBER_OF_ROWS, "100");
+        options.put("fields.id.kind", "sequence");
+        JobDetail.SourceDetail sourceDetail = new JobDetail.SourceDetail();
+        sourceDetail.setOptions(options);
+        RowSchema schema = RowSchema.compile("id Long");
+        List<Object> ids = new ArrayList<>();
+
+        // 并行度2, 两个子任务分别生成10 / 20条后快照
+        OperatorSubtaskState[] states = new OperatorSubtaskState[2];
+        for (int index = 0; index < 2; index++) {
+            FlinkSimpleDatagenSource source = new FlinkSimpleDatagenSource(sourceDetail, schema);
+            AbstractStreamOperatorTestHarness<Row> harness = new AbstractStreamOperatorTestHarness<>(new StreamSource<>(source), 128, 2, index);
+            harness.open();
+            source.run(new ListSourceContext(ids, source, 10 * (index + 1)));
+            states[index] = harness.snapshot(1L, 1L);
+            harness.close();
+        }
+        Assert.assertEquals(30, ids.size());
+
+        // 并行度3恢复, 剩余70条重新均分且序列不重复
+        OperatorSubtaskState state = AbstractStreamOperatorTestHarness.repackageState(states);
+        for (int index = 0; index < 3; index++) {
+            FlinkSimpleDatagenSource source = new FlinkSimpleDatagenSource(sourceDetail, schema);
+            AbstractStreamOperatorTestHarness<Row> harness = new AbstractStreamOperatorTestHarness<>(new StreamSource<>(source), 128, 3, index);
+            harness.initializeState(AbstractStreamOperatorTestHarness.repartitionOperatorState(state, 128, 2, 3, index));
+            harness.open();
+            source.run(new ListSourceContext(ids, source, -1));
+            harness.close();
+        }
+        Assert.assertEquals(100, ids.size());
+        Assert.assertEquals(100, new HashSet<>(ids).size());
+    }
+
+    @Test
+    public void zipf() {
+        ZipfSampler sampler = new ZipfSampler(1000, 1D);
+        Random random = new Random(7);
+        int[] counts = new int[1001];
+        int samples = 200000;
+        for (int i = 0; i < samples; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        // P(1) = 1 / H(1000) ≈ 0.1336, P(2) = P(1) / 2
+        Assert.assertEquals(0.1336, counts[1] / (double) samples, 0.005);
+        Assert.assertEquals(0.0668, counts[2] / (double) samples, 0.005);
+        Assert.assertEquals(0, counts[0]);
+    }
+
+    /**
+     * 收集 id 字段, 达到条数后停止数据源
+     */
+    private static final class ListSourceContext implements SourceFunction.SourceContext<Row> {
+        private final List<Object> ids;
+        private final FlinkSimpleDatagenSource source;
+        private final int limit;
+        private int count;
+
+        ListSourceContext(List<Object> ids, FlinkSimpleDatagenSource source, int limit) {
+            this.ids = ids;
+            this.source = source;
+            this.limit = limit;
+        }
+
+        @Override
+        public void collect(Row element) {
+            ids.add(element.getField(0));
+            if (++count == limit) {
+                source.cancel();
+            }
+        }
+
+        @Override
+        public void collectWithTimestamp(Row element, long timestamp) {
+            collect(element);
+        }
+
+        @Override
+        public void emitWatermark(Watermark mark) {
+        }
+
+        @Override
+        public void markAsTemporarilyIdle() {
+        }
+
+        @Override
+        public Object getCheckpointLock() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
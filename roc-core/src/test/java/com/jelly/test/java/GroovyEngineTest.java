@@ -0,0 +1,155 @@
+package com.jelly.test.java;
+
+import com.google.common.cache.CacheStats;
+import com.roc.util.GroovyEngine;
+import groovy.lang.GroovyObject;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GroovyEngineTest {
+    private static final String RULE = "package com.jelly.test.groovy\n" +
+            "\n" +
+            "class CompiledRule implements Serializable {\n" +
+            "    def run() {\n" +
+            "        return new Comparator<String>() {\n" +
+            "            @Override\n" +
+            "            int compare(String a, String b) {\n" +
+            "                return a.length() - b.length()\n" +
+            "            }\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    @Test
+    public void compile() throws Exception {
+        Map<String, byte[]> classes = GroovyEngine.INSTANCE.compile(RULE);
+        // 主类在前, 内部类一并输出
+        Assert.assertEquals(Arrays.asList("com.jelly.test.groovy.CompiledRule", "com.jelly.test.groovy.CompiledRule$1"), new ArrayList<>(classes.keySet()));
+
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (null == bytes) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        GroovyObject rule = (GroovyObject) classLoader.loadClass("com.jelly.test.groovy.CompiledRule").newInstance();
+        Comparator<String> comparator = (Comparator<String>) rule.invokeMethod("run", null);
+        Assert.assertTrue(comparator.compare("a", "abc") < 0);
+    }
+
+    @Test
+    public void compileScript() {
+        Map<String, byte[]> classes = GroovyEngine.INSTANCE.compile("return 1 + 1");
+        Assert.assertEquals(1, classes.size());
+        // 同一源码的脚本类名一致
+        Assert.assertEquals(classes.keySet(), GroovyEngine.INSTANCE.compile("return 1 + 1").keySet());
+    }
+
+    @Test
+    public void compileStatic() throws Exception {
+        Map<String, byte[]> classes = GroovyEngine.INSTANCE.compile(RULE, GroovyEngine.CompileMode.STATIC);
+        Assert.assertEquals(2, classes.size());
+        Assert.assertEquals(GroovyEngine.CompileMode.TYPE_CHECKED, GroovyEngine.CompileMode.get("type_checked"));
+        Assert.assertEquals(GroovyEngine.CompileMode.DYNAMIC, GroovyEngine.CompileMode.get(null));
+
+        // 动态模式运行时才报错, 静态模式编译期报错
+        String unknownMethod = "class BrokenRule {\n" +
+                "    boolean filter(Map<String, Object> dataMap) {\n" +
+                "        return dataMap.get(\"name\").toString().containz(\"失败\")\n" +
+                "    }\n" +
+                "}\n";
+        GroovyEngine.INSTANCE.compile(unknownMethod);
+        try {
+            GroovyEngine.INSTANCE.compile(unknownMethod, GroovyEngine.CompileMode.STATIC);
+            Assert.fail();
+        } catch (CompilationFailedException e) {
+            Assert.assertTrue(e.getMessage().contains("containz"));
+        }
+    }
+
+    @Test
+    public void scriptCache() throws Exception {
+        String script = "price * count";
+        CacheStats before = GroovyEngine.INSTANCE.stats();
+        Assert.assertEquals(6, (int) GroovyEngine.INSTANCE.runScript(script, params(2, 3)));
+        Assert.assertEquals(20, (int) GroovyEngine.INSTANCE.runScript(script, params(4, 5)));
+        CacheStats stats = GroovyEngine.INSTANCE.stats().minus(before);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.hitCount());
+
+        // 淘汰后重新编译
+        GroovyEngine.INSTANCE.invalidate(script);
+        Assert.assertEquals(6, (int) GroovyEngine.INSTANCE.runScript(script, params(2, 3)));
+        Assert.assertEquals(2, GroovyEngine.INSTANCE.stats().minus(before).missCount());
+    }
+
+    @Test
+    public void runFunction() throws Exception {
+        String script = "def add(a, b) { a + b }";
+        Assert.assertEquals(3, (int) GroovyEngine.INSTANCE.runFunction(script, "add", new Object[]{1, 2}));
+        try {
+            GroovyEngine.INSTANCE.runFunction(script, "sub", new Object[]{1, 2});
+            Assert.fail();
+        } catch (NoSuchMethodException e) {
+            Assert.assertEquals("sub", e.getMessage());
+        }
+    }
+
+    @Test
+    public void concurrentRun() throws Exception {
+        // 脚本写入 Binding 变量, 类写入实例字段, 并发调用时互不影响
+        String script = "total = price * count\nThread.yield()\nreturn total";
+        String clazz = "class Counter {\n" +
+                "    int value\n" +
+                "    def calc(int v) {\n" +
+                "        value = v\n" +
+                "        Thread.yield()\n" +
+                "        return value\n" +
+                "    }\n" +
+                "}\n";
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        int v = seed * 1000 + i;
+                        if ((int) GroovyEngine.INSTANCE.runScript(script, params(v, 2)) != v * 2
+                                || (int) GroovyEngine.INSTANCE.runClass(clazz, "calc", v) != v) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, Object> params(int price, int count) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("price", price);
+        params.put("count", count);
+        return params;
+    }
+}
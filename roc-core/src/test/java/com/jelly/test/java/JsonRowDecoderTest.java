@@ -0,0 +1,98 @@
+package com.jelly.test.java;
+
+import com.roc.util.schema.JsonRowDecoder;
+import com.roc.util.schema.JsonRowDeserializationSchema;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class JsonRowDecoderTest {
+    private final RowSchema schema = RowSchema.compile("id String,name String,price Double,timestamp Long,count Integer,ok Boolean");
+
+    private Row decode(String json) throws IOException {
+        return new JsonRowDecoder(schema).decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decode() throws IOException {
+        Row row = decode("{\"id\":\"flink_test01\",\"name\":\"失败\",\"price\":1823.25,\"timestamp\":1611387930000,\"count\":-3,\"ok\":true}");
+        Assert.assertEquals("flink_test01", row.getField(0));
+        Assert.assertEquals("失败", row.getField(1));
+        Assert.assertEquals(1823.25D, row.getField(2));
+        Assert.assertEquals(1611387930000L, row.getField(3));
+        Assert.assertEquals(-3, row.getField(4));
+        Assert.assertEquals(Boolean.TRUE, row.getField(5));
+    }
+
+    @Test
+    public void skipUndeclared() throws IOException {
+        Row row = decode(" { \"extra\" : {\"a\":[1,{\"b\":\"}\\\"\"}],\"c\":null}, \"id\" : 7 ,\"list\":[\"x\",2.5e3],\"price\":1e2,\"flag\":false,\"name\":null}");
+        Assert.assertEquals("7", row.getField(0));
+        Assert.assertNull(row.getField(1));
+        Assert.assertEquals(100D, row.getField(2));
+        Assert.assertNull(row.getField(3));
+    }
+
+    @Test
+    public void escapesAndCoercion() throws IOException {
+        Row row = decode("{\"na\\u006De\":\"a\\\"b\\\\c\\n\\u4e2d\",\"price\":\"0.05\",\"timestamp\":\"12\",\"count\":12.9,\"id\":{\"k\":1}}");
+        Assert.assertEquals("a\"b\\c\n中", row.getField(1));
+        Assert.assertEquals(0.05D, row.getField(2));
+        Assert.assertEquals(12L, row.getField(3));
+        Assert.assertEquals(12, row.getField(4));
+        Assert.assertEquals("{\"k\":1}", row.getField(0));
+    }
+
+    @Test
+    public void precision() throws IOException {
+        Assert.assertEquals(0.1D, decode("{\"price\":0.1}").getField(2));
+        Assert.assertEquals(123456789.123456789D, decode("{\"price\":123456789.123456789}").getField(2));
+        Assert.assertEquals(9223372036854775807L, decode("{\"timestamp\":9223372036854775807}").getField(3));
+        Assert.assertEquals(-0.000001D, decode("{\"price\":-0.000001}").getField(2));
+    }
+
+    @Test
+    public void reuseRow() throws IOException {
+        JsonRowDeserializationSchema deserializationSchema = new JsonRowDeserializationSchema(schema, true);
+        Row first = deserializationSchema.deserialize("{\"id\":\"1\",\"price\":2.5}".getBytes(StandardCharsets.UTF_8));
+        Row second = deserializationSchema.deserialize("{\"id\":\"2\"}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertSame(first, second);
+        Assert.assertEquals("2", second.getField(0));
+        Assert.assertNull(second.getField(2));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformed() throws IOException {
+        decode("{\"id\":\"1\",\"name\"}");
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws IOException {
+        decode("{\"id\":\"1\"");
+    }
+
+    @Test
+    public void intOverflow() throws IOException {
+        Assert.assertEquals(Integer.MAX_VALUE, decode("{\"count\":2147483647}").getField(4));
+        Assert.assertEquals(Integer.MIN_VALUE, decode("{\"count\":-2147483648}").getField(4));
+        for (String count : new String[]{"3000000000", "-2147483649", "99999999999999999999", "3e9"}) {
+            try {
+                decode("{\"count\":" + count + "}");
+                Assert.fail(count);
+            } catch (IOException e) {
+                // 计为解码错误
+            }
+        }
+    }
+
+    @Test
+    public void skipUndecodable() throws IOException {
+        JsonRowDeserializationSchema deserializationSchema = new JsonRowDeserializationSchema(schema);
+        Assert.assertNull(deserializationSchema.deserialize("{\"id\":\"1\",\"name\"}".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals("2", deserializationSchema.deserialize("{\"id\":\"2\"}".getBytes(StandardCharsets.UTF_8)).getField(0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.jelly.test.java;
+
+import com.roc.metrics.LatencyHistogram;
+import org.apache.flink.metrics.HistogramStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.update(value);
+        }
+        HistogramStatistics statistics = histogram.getStatistics();
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(100000, statistics.size());
+        // 分桶相对误差约6%
+        Assert.assertEquals(50000, statistics.getQuantile(0.5), 50000 * 0.07);
+        Assert.assertEquals(99000, statistics.getQuantile(0.99), 99000 * 0.07);
+        Assert.assertEquals(50000, statistics.getMean(), 50000 * 0.07);
+        Assert.assertEquals(1, statistics.getMin());
+        Assert.assertTrue(statistics.getMax() >= 100000 && statistics.getMax() < 100000 * 1.07);
+    }
+
+    @Test
+    public void smallAndExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.update(-5);
+        histogram.update(0);
+        histogram.update(15);
+        histogram.update(Long.MAX_VALUE);
+        HistogramStatistics statistics = histogram.getStatistics();
+        Assert.assertEquals(0, statistics.getMin());
+        Assert.assertEquals(15, statistics.getQuantile(0.75), 0);
+        Assert.assertTrue(statistics.getMax() > 0);
+    }
+
+    @Test
+    public void windowRotation() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 256; i++) {
+            histogram.update(1000);
+        }
+        Thread.sleep(120);
+        // 每256条检查一次轮换, 两次轮换后旧窗口被清空
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 256; i++) {
+                histogram.update(10);
+            }
+            Thread.sleep(120);
+        }
+        for (int i = 0; i < 256; i++) {
+            histogram.update(10);
+        }
+        HistogramStatistics statistics = histogram.getStatistics();
+        Assert.assertEquals(10, statistics.getMax());
+        Assert.assertEquals(1024, histogram.getCount());
+    }
+
+    @Test
+    public void staleWindow() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram(50);
+        histogram.update(1000);
+        Assert.assertEquals(1, histogram.getStatistics().size());
+        // 写入停止后上报不再包含过期窗口
+        Thread.sleep(120);
+        Assert.assertEquals(0, histogram.getStatistics().size());
+        // 上报请求的轮换在下一次写入时生效, 不必等到第256条
+        histogram.update(10);
+        HistogramStatistics statistics = histogram.getStatistics();
+        Assert.assertEquals(1, statistics.size());
+        Assert.assertEquals(10, statistics.getMax());
+        Assert.assertEquals(2, histogram.getCount());
+    }
+}
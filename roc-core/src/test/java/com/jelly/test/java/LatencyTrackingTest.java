@@ -0,0 +1,65 @@
+package com.jelly.test.java;
+
+import com.roc.metrics.IngestTimeFunction;
+import com.roc.metrics.LatencyTracking;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LatencyTrackingTest {
+
+    @Test
+    public void enable() {
+        ExecutionConfig config = new ExecutionConfig();
+        LatencyTracking.enable(config, null);
+        Assert.assertNull(LatencyTracking.samplePercent(config));
+        LatencyTracking.enable(config, 0D);
+        Assert.assertNull(LatencyTracking.samplePercent(config));
+        LatencyTracking.enable(config, 2.5);
+        Assert.assertEquals(2.5, LatencyTracking.samplePercent(config), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercent() {
+        LatencyTracking.enable(new ExecutionConfig(), 101D);
+    }
+
+    @Test
+    public void stamp() throws Exception {
+        RowSchema schema = RowSchema.compile("id String,price Double").append(LatencyTracking.FIELD, LatencyTracking.FIELD_TYPE);
+        Assert.assertEquals(2, schema.indexOf(LatencyTracking.FIELD));
+        Assert.assertSame(schema, schema.append(LatencyTracking.FIELD, LatencyTracking.FIELD_TYPE));
+
+        Row row = Row.of("a", 1.0, 1L);
+        IngestTimeFunction always = new IngestTimeFunction(2, 100);
+        always.open(null);
+        long before = System.currentTimeMillis();
+        Assert.assertTrue((Long) always.map(row).getField(2) >= before);
+
+        // 未采样时清除复用行上的旧值
+        IngestTimeFunction never = new IngestTimeFunction(2, 0);
+        never.open(null);
+        Assert.assertNull(never.map(row).getField(2));
+    }
+
+    @Test
+    public void strip() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", "a");
+        Assert.assertSame(record, LatencyTracking.strip(record));
+        Assert.assertNull(LatencyTracking.ingestTime(record));
+
+        record.put(LatencyTracking.FIELD, 10L);
+        Assert.assertEquals(Long.valueOf(10L), LatencyTracking.ingestTime(record));
+        Map<String, Object> stripped = LatencyTracking.strip(record);
+        Assert.assertFalse(stripped.containsKey(LatencyTracking.FIELD));
+        Assert.assertEquals("a", stripped.get("id"));
+        // 不修改输入记录
+        Assert.assertTrue(record.containsKey(LatencyTracking.FIELD));
+    }
+}
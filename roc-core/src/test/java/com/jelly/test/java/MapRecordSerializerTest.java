@@ -0,0 +1,58 @@
+package com.jelly.test.java;
+
+import com.roc.util.schema.MapRecordTypeInfo;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MapRecordSerializerTest {
+    private final TypeSerializer<Map<String, Object>> serializer = new MapRecordTypeInfo(new String[]{"id", "name", "price", "timestamp"}).createSerializer(new ExecutionConfig());
+
+    @Test
+    public void roundTrip() throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("timestamp", 1611387930000L);
+        record.put("id", "flink_test01");
+        record.put("price", 1823.25D);
+        record.put("name", null);
+        record.put("extra", Arrays.asList(1, "a", true));
+        record.put("nested", new LinkedHashMap<String, Object>() {{
+            put("k", 1.5F);
+        }});
+        record.put("amount", new BigDecimal("12.30"));
+
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        serializer.serialize(record, out);
+        Map<String, Object> result = serializer.deserialize(new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+
+        Assert.assertEquals(record, result);
+        Assert.assertEquals(Arrays.asList(record.keySet().toArray()), Arrays.asList(result.keySet().toArray()));
+        Assert.assertEquals(record, serializer.copy(record));
+        Assert.assertNotSame(record.get("extra"), serializer.copy(record).get("extra"));
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        TypeSerializerSnapshot.writeVersionedSnapshot(out, serializer.snapshotConfiguration());
+        TypeSerializerSnapshot<Map<String, Object>> snapshot = TypeSerializerSnapshot.readVersionedSnapshot(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()), getClass().getClassLoader());
+
+        Assert.assertTrue(snapshot.resolveSchemaCompatibility(serializer).isCompatibleAsIs());
+        TypeSerializerSchemaCompatibility<Map<String, Object>> compatibility = snapshot.resolveSchemaCompatibility(
+                new MapRecordTypeInfo(new String[]{"id"}).createSerializer(new ExecutionConfig()));
+        Assert.assertTrue(compatibility.isCompatibleAfterMigration());
+        Assert.assertEquals(serializer, snapshot.restoreSerializer());
+    }
+}
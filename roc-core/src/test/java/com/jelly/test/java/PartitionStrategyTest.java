@@ -0,0 +1,64 @@
+package com.jelly.test.java;
+
+import com.roc.stream.PartitionStrategy;
+import com.roc.util.schema.MapRecordTypeInfo;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.KeyedStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PartitionStrategyTest {
+
+    @Test
+    public void parse() {
+        Assert.assertEquals(PartitionStrategy.NONE, PartitionStrategy.get(null));
+        Assert.assertEquals(PartitionStrategy.FORWARD, PartitionStrategy.get("forward"));
+        Assert.assertEquals(PartitionStrategy.RESCALE, PartitionStrategy.get("Rescale"));
+        Assert.assertEquals(PartitionStrategy.KEY_BY, PartitionStrategy.get("keyBy: id"));
+        Assert.assertEquals("id", PartitionStrategy.keyField("keyBy: id"));
+        Assert.assertNull(PartitionStrategy.keyField("rebalance"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingKey() {
+        PartitionStrategy.keyField("keyBy");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupported() {
+        PartitionStrategy.get("broadcast");
+    }
+
+    @Test
+    public void keyTypes() throws Exception {
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+        // 行流: 声明类型, 空key替换为固定key
+        RowSchema schema = RowSchema.compile("id Long,name String");
+        KeyedStream<Row, Object> rows = (KeyedStream<Row, Object>) PartitionStrategy.partitionRows(
+                env.fromCollection(Collections.singletonList(Row.of(1L, "a")), schema.getRowTypeInfo()), "keyBy:id", schema);
+        Assert.assertEquals(Types.LONG, rows.getKeyType());
+        Assert.assertEquals(0L, rows.getKeySelector().getKey(Row.of(null, "a")));
+
+        // map流: 使用 MapRecordTypeInfo 中的声明类型, 不使用kryo
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", 7);
+        DataStream<Map<String, Object>> maps = env.fromCollection(Collections.singletonList(record),
+                new MapRecordTypeInfo(new String[]{"id", "name"}, new Class<?>[]{Long.class, null}));
+        KeyedStream<Map<String, Object>, Object> byId = (KeyedStream<Map<String, Object>, Object>) PartitionStrategy.partitionMaps(maps, "keyBy:id");
+        Assert.assertEquals(Types.LONG, byId.getKeyType());
+        Assert.assertEquals(7L, byId.getKeySelector().getKey(record));
+        Assert.assertEquals(0L, byId.getKeySelector().getKey(new HashMap<>()));
+        // 类型未知时按字符串分区
+        KeyedStream<Map<String, Object>, Object> byName = (KeyedStream<Map<String, Object>, Object>) PartitionStrategy.partitionMaps(maps, "keyBy:name");
+        Assert.assertEquals(Types.STRING, byName.getKeyType());
+        Assert.assertEquals("", byName.getKeySelector().getKey(record));
+    }
+}
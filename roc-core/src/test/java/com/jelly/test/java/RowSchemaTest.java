@@ -0,0 +1,42 @@
+package com.jelly.test.java;
+
+import com.alibaba.fastjson.JSON;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+public class RowSchemaTest {
+
+    @Test
+    public void compile() {
+        RowSchema schema = RowSchema.compile("id String, name String,price Double,timestamp Long");
+        Assert.assertEquals(4, schema.getArity());
+        Assert.assertArrayEquals(new String[]{"id", "name", "price", "timestamp"}, schema.getFieldNames());
+        Assert.assertEquals(Types.DOUBLE, schema.getTypeInformations()[2]);
+        Assert.assertEquals(3, schema.indexOf("timestamp"));
+        Assert.assertEquals(-1, schema.indexOf("age"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileIllegal() {
+        RowSchema.compile("id,name String");
+    }
+
+    @Test
+    public void toRowAndMap() {
+        RowSchema schema = RowSchema.compile("id String,name String,price Double,timestamp Long");
+        Row row = schema.toRow(JSON.parseObject("{\"id\":1,\"name\":\"roc\",\"price\":\"12.5\",\"timestamp\":1611387930000,\"other\":true}"));
+        Assert.assertEquals(4, row.getArity());
+        Assert.assertEquals("1", row.getField(0));
+        Assert.assertEquals(12.5D, row.getField(2));
+        Assert.assertEquals(1611387930000L, row.getField(3));
+
+        LinkedHashMap<String, Object> map = schema.toMap(row);
+        Assert.assertArrayEquals(schema.getFieldNames(), map.keySet().toArray());
+        Assert.assertEquals("roc", map.get("name"));
+    }
+}
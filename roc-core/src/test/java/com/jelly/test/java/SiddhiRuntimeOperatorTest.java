@@ -0,0 +1,306 @@
+package com.jelly.test.java;
+
+import com.roc.metrics.LatencyTracking;
+import com.roc.stream.cep.SiddhiRuntimeOperator;
+import com.roc.stream.cep.TaggedRowKeySelector;
+import com.roc.util.schema.MapRecordTypeInfo;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.TaggedRow;
+import com.roc.util.schema.TaggedRowTypeInfo;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.AbstractStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TwoInputStreamOperatorTestHarness;
+import org.apache.flink.types.Row;
+import org.apache.flink.util.OutputTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+public class SiddhiRuntimeOperatorTest {
+    private static final String STREAM_DEFINITIONS = "define stream inputStream (id string, price double, timestamp long);\n";
+    private static final RowSchema SCHEMA = RowSchema.compile("id String,price Double,timestamp Long");
+    private static final TaggedRowTypeInfo INPUT_TYPE = new TaggedRowTypeInfo(new RowTypeInfo[]{SCHEMA.getRowTypeInfo()});
+    private static final TaggedRowKeySelector KEY_SELECTOR = new TaggedRowKeySelector(new int[]{0}, Types.STRING);
+    private static final String[] KEY_FIELDS = {"id"};
+    private static final int MAX_PARALLELISM = 128;
+
+    @Test
+    public void multiQuerySideOutputs() throws Exception {
+        OutputTag<Map<String, Object>> high = outputTag("highStream", "id", "price");
+        OutputTag<Map<String, Object>> low = outputTag("lowStream", "id");
+        String cql = "from inputStream[price > 100] select id, price insert into highStream;\n"
+                + "from inputStream[price <= 100] select id insert into lowStream;";
+        SiddhiRuntimeOperator operator = operator(cql, false, false, Arrays.asList(high, low));
+        try (OneInputStreamOperatorTestHarness<TaggedRow, Map<String, Object>> harness = new OneInputStreamOperatorTestHarness<>(operator)) {
+            harness.open();
+            harness.processElement(new StreamRecord<>(input("a", 150D, 1L)));
+            harness.processElement(new StreamRecord<>(input("b", 50D, 2L)));
+            harness.processElement(new StreamRecord<>(input("c", 250D, 3L)));
+
+            Assert.assertEquals(Arrays.asList("a", "c"), ids(harness.getSideOutput(high)));
+            Assert.assertEquals(Collections.singletonList("b"), ids(harness.getSideOutput(low)));
+            Assert.assertEquals(150D, harness.getSideOutput(high).peek().getValue().get("price"));
+            // 主输出不使用
+            Assert.assertTrue(harness.getOutput().isEmpty());
+        }
+    }
+
+    @Test
+    public void outOfOrderEventsReleasedOnWatermark() throws Exception {
+        for (boolean keyed : new boolean[]{false, true}) {
+            OutputTag<Map<String, Object>> output = outputTag("outputStream", "id", "timestamp");
+            SiddhiRuntimeOperator operator = operator("from inputStream select id, timestamp insert into outputStream;", true, keyed, Collections.singletonList(output));
+            try (OneInputStreamOperatorTestHarness<TaggedRow, Map<String, Object>> harness = keyed
+                    ? new KeyedOneInputStreamOperatorTestHarness<>(operator, KEY_SELECTOR, KEY_SELECTOR.getKeyType())
+                    : new OneInputStreamOperatorTestHarness<>(operator)) {
+                harness.open();
+                harness.processElement(input("c", 1D, 3000L), 3000L);
+                harness.processElement(input("a", 1D, 1000L), 1000L);
+                harness.processElement(input("b", 1D, 2000L), 2000L);
+                // 水位线到达前缓存
+                Assert.assertNull(harness.getSideOutput(output));
+
+                harness.processWatermark(new Watermark(2500L));
+                Assert.assertEquals(Arrays.asList("a", "b"), ids(harness.getSideOutput(output)));
+                Assert.assertEquals(2000L, harness.getSideOutput(output).stream().mapToLong(StreamRecord::getTimestamp).max().getAsLong());
+
+                // 水位线之后到达的迟到数据直接发送
+                harness.processElement(input("d", 1D, 2200L), 2200L);
+                harness.processWatermark(new Watermark(5000L));
+                Assert.assertEquals(Arrays.asList("a", "b", "d", "c"), ids(harness.getSideOutput(output)));
+            }
+        }
+    }
+
+    @Test
+    public void keyedRestoreAtDifferentParallelism() throws Exception {
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "id", "cnt");
+        String cql = "from inputStream select id, count() as cnt insert into outputStream;";
+        List<String> keys = Arrays.asList("a", "b", "c", "d", "e", "f");
+
+        // 并行度2: 每个key两条
+        OperatorSubtaskState[] states = new OperatorSubtaskState[2];
+        for (int index = 0; index < 2; index++) {
+            try (KeyedOneInputStreamOperatorTestHarness<Object, TaggedRow, Map<String, Object>> harness = keyedHarness(operator(cql, false, true, Collections.singletonList(output)), 2, index)) {
+                harness.open();
+                for (String key : keys) {
+                    if (KeyGroupRangeAssignment.assignKeyToParallelOperator(key, MAX_PARALLELISM, 2) == index) {
+                        harness.processElement(new StreamRecord<>(input(key, 1D, 1L)));
+                        harness.processElement(new StreamRecord<>(input(key, 1D, 2L)));
+                    }
+                }
+                states[index] = harness.snapshot(1L, 1L);
+            }
+        }
+
+        // 并行度3恢复: 每个key的siddhi状态随key重新分配, 计数继续
+        OperatorSubtaskState state = AbstractStreamOperatorTestHarness.repackageState(states);
+        Map<Object, Object> counts = new HashMap<>();
+        for (int index = 0; index < 3; index++) {
+            try (KeyedOneInputStreamOperatorTestHarness<Object, TaggedRow, Map<String, Object>> harness = keyedHarness(operator(cql, false, true, Collections.singletonList(output)), 3, index)) {
+                harness.initializeState(AbstractStreamOperatorTestHarness.repartitionOperatorState(state, MAX_PARALLELISM, 2, 3, index));
+                harness.open();
+                for (String key : keys) {
+                    if (KeyGroupRangeAssignment.assignKeyToParallelOperator(key, MAX_PARALLELISM, 3) == index) {
+                        harness.processElement(new StreamRecord<>(input(key, 1D, 3L)));
+                    }
+                }
+                if (null != harness.getSideOutput(output)) {
+                    harness.getSideOutput(output).forEach(record -> counts.put(record.getValue().get("id"), record.getValue().get("cnt")));
+                }
+            }
+        }
+        Assert.assertEquals(keys.size(), counts.size());
+        for (String key : keys) {
+            Assert.assertEquals(3L, counts.get(key));
+        }
+    }
+
+    @Test
+    public void nonKeyedRestoreAtDifferentParallelism() throws Exception {
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "cnt");
+        String cql = "from inputStream select count() as cnt insert into outputStream;";
+        // 并行度2: 子任务i收到i+1条
+        OperatorSubtaskState[] states = new OperatorSubtaskState[2];
+        for (int index = 0; index < 2; index++) {
+            try (OneInputStreamOperatorTestHarness<TaggedRow, Map<String, Object>> harness = new OneInputStreamOperatorTestHarness<>(
+                    operator(cql, false, false, Collections.singletonList(output)), MAX_PARALLELISM, 2, index)) {
+                harness.open();
+                for (int i = 0; i <= index; i++) {
+                    harness.processElement(new StreamRecord<>(input("a", 1D, i)));
+                }
+                states[index] = harness.snapshot(1L, 1L);
+            }
+        }
+        OperatorSubtaskState state = AbstractStreamOperatorTestHarness.repackageState(states);
+
+        // 扩容: 子任务i恢复原子任务i的状态, 新增的子任务从空状态开始
+        Assert.assertEquals(Arrays.asList(2L, 3L, 1L), restoredCounts(cql, output, state, 3));
+        // 缩容: 下标不小于新并行度的状态丢弃
+        Assert.assertEquals(Collections.singletonList(2L), restoredCounts(cql, output, state, 1));
+    }
+
+    @Test
+    public void keysShareKeyGroupRuntime() throws Exception {
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "id", "cnt");
+        // 中间流同样按key划分
+        SiddhiRuntimeOperator operator = operator("from inputStream select id, price insert into midStream;\n"
+                + "from midStream select id, count() as cnt insert into outputStream;", false, true, Collections.singletonList(output));
+        // 最大并行度为1, 所有key在同一个key group
+        try (KeyedOneInputStreamOperatorTestHarness<Object, TaggedRow, Map<String, Object>> harness = new KeyedOneInputStreamOperatorTestHarness<>(
+                operator, KEY_SELECTOR, KEY_SELECTOR.getKeyType())) {
+            harness.open();
+            harness.processElement(new StreamRecord<>(input("a", 1D, 1L)));
+            harness.processElement(new StreamRecord<>(input("b", 1D, 2L)));
+            harness.processElement(new StreamRecord<>(input("a", 1D, 3L)));
+
+            List<String> counts = new ArrayList<>();
+            harness.getSideOutput(output).forEach(record -> counts.add(record.getValue().get("id") + ":" + record.getValue().get("cnt")));
+            Assert.assertEquals(Arrays.asList("a:1", "b:1", "a:2"), counts);
+        }
+    }
+
+    @Test
+    public void controlStreamReplacesRule() throws Exception {
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "id");
+        OperatorSubtaskState state;
+        try (TwoInputStreamOperatorTestHarness<TaggedRow, Row, Map<String, Object>> harness = controlHarness(output)) {
+            harness.open();
+            harness.processElement1(new StreamRecord<>(input("a", 150D, 1L)));
+            Assert.assertEquals(Collections.singletonList("a"), ids(harness.getSideOutput(output)));
+
+            // 校验失败的规则不生效
+            harness.processElement2(new StreamRecord<>(Row.of("replace", "default", "from unknownStream select id insert into outputStream;")));
+            harness.processElement1(new StreamRecord<>(input("b", 150D, 2L)));
+            Assert.assertEquals(Arrays.asList("a", "b"), ids(harness.getSideOutput(output)));
+
+            harness.processElement2(new StreamRecord<>(Row.of("replace", "default", "from ${0}[price > 1000] select id insert into outputStream;")));
+            harness.processElement1(new StreamRecord<>(input("c", 150D, 3L)));
+            harness.processElement1(new StreamRecord<>(input("d", 1500D, 4L)));
+            Assert.assertEquals(Arrays.asList("a", "b", "d"), ids(harness.getSideOutput(output)));
+            state = harness.snapshot(1L, 1L);
+        }
+
+        // 恢复时以快照中的规则为准
+        try (TwoInputStreamOperatorTestHarness<TaggedRow, Row, Map<String, Object>> harness = controlHarness(output)) {
+            harness.initializeState(state);
+            harness.open();
+            harness.processElement1(new StreamRecord<>(input("e", 150D, 5L)));
+            harness.processElement1(new StreamRecord<>(input("f", 1500D, 6L)));
+            Assert.assertEquals(Collections.singletonList("f"), ids(harness.getSideOutput(output)));
+        }
+    }
+
+    @Test
+    public void keyedControlStreamResetsRuleState() throws Exception {
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "id", "cnt");
+        String cql = "from inputStream select id, count() as cnt insert into outputStream;";
+        OperatorSubtaskState state;
+        try (KeyedTwoInputStreamOperatorTestHarness<Object, TaggedRow, Row, Map<String, Object>> harness = keyedControlHarness(cql, output)) {
+            harness.open();
+            harness.processElement1(new StreamRecord<>(input("a", 1D, 1L)));
+            harness.processElement1(new StreamRecord<>(input("a", 1D, 2L)));
+            state = harness.snapshot(1L, 1L);
+        }
+        try (KeyedTwoInputStreamOperatorTestHarness<Object, TaggedRow, Row, Map<String, Object>> harness = keyedControlHarness(cql, output)) {
+            harness.initializeState(state);
+            harness.open();
+            // key a 所在key group的运行时未启动, 快照待恢复; 替换规则后丢弃
+            harness.processElement2(new StreamRecord<>(Row.of("replace", "default", cql)));
+            harness.processElement1(new StreamRecord<>(input("a", 1D, 3L)));
+            harness.processElement1(new StreamRecord<>(input("b", 1D, 4L)));
+            Assert.assertEquals(1L, harness.getSideOutput(output).peek().getValue().get("cnt"));
+            Assert.assertEquals(2, harness.getSideOutput(output).size());
+        }
+    }
+
+    @Test
+    public void ingestTimeCopiedToOutputs() throws Exception {
+        RowSchema schema = SCHEMA.append(LatencyTracking.FIELD, LatencyTracking.FIELD_TYPE);
+        OutputTag<Map<String, Object>> output = outputTag("outputStream", "id");
+        // cql不引用接入时间字段
+        SiddhiRuntimeOperator operator = new SiddhiRuntimeOperator("define stream inputStream (id string, price double, timestamp long, _ingestTime long);\n",
+                Collections.singletonMap("default", "from inputStream[price > 100] select id insert into outputStream;"), false, new String[]{"inputStream"},
+                Collections.emptyMap(), Collections.singletonList(output), false, new TaggedRowTypeInfo(new RowTypeInfo[]{schema.getRowTypeInfo()}), null);
+        try (OneInputStreamOperatorTestHarness<TaggedRow, Map<String, Object>> harness = new OneInputStreamOperatorTestHarness<>(operator)) {
+            harness.open();
+            harness.processElement(new StreamRecord<>(new TaggedRow(0, Row.of("a", 150D, 1L, 123L))));
+            // 未采样的记录不带接入时间
+            harness.processElement(new StreamRecord<>(new TaggedRow(0, Row.of("b", 150D, 2L, null))));
+
+            List<Map<String, Object>> records = new ArrayList<>();
+            harness.getSideOutput(output).forEach(record -> records.add(record.getValue()));
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(123L, records.get(0).get(LatencyTracking.FIELD));
+            Assert.assertFalse(records.get(1).containsKey(LatencyTracking.FIELD));
+        }
+    }
+
+    /**
+     * 按新并行度恢复非分区模式的快照, 每个子任务发送一条输入后的计数
+     */
+    private static List<Object> restoredCounts(String cql, OutputTag<Map<String, Object>> output, OperatorSubtaskState state, int parallelism) throws Exception {
+        List<Object> counts = new ArrayList<>();
+        for (int index = 0; index < parallelism; index++) {
+            try (OneInputStreamOperatorTestHarness<TaggedRow, Map<String, Object>> harness = new OneInputStreamOperatorTestHarness<>(
+                    operator(cql, false, false, Collections.singletonList(output)), MAX_PARALLELISM, parallelism, index)) {
+                harness.initializeState(AbstractStreamOperatorTestHarness.repartitionOperatorState(state, MAX_PARALLELISM, 2, parallelism, index));
+                harness.open();
+                harness.processElement(new StreamRecord<>(input("a", 1D, 10L)));
+                counts.add(harness.getSideOutput(output).peek().getValue().get("cnt"));
+            }
+        }
+        return counts;
+    }
+
+    private static KeyedTwoInputStreamOperatorTestHarness<Object, TaggedRow, Row, Map<String, Object>> keyedControlHarness(String cql, OutputTag<Map<String, Object>> output) throws Exception {
+        return new KeyedTwoInputStreamOperatorTestHarness<>(new SiddhiRuntimeOperator(STREAM_DEFINITIONS, Collections.singletonMap("default", cql), true, new String[]{"inputStream"},
+                Collections.emptyMap(), Collections.singletonList(output), false, INPUT_TYPE, KEY_FIELDS), KEY_SELECTOR, null, KEY_SELECTOR.getKeyType());
+    }
+
+    private static TwoInputStreamOperatorTestHarness<TaggedRow, Row, Map<String, Object>> controlHarness(OutputTag<Map<String, Object>> output) throws Exception {
+        return new TwoInputStreamOperatorTestHarness<>(new SiddhiRuntimeOperator(STREAM_DEFINITIONS,
+                Collections.singletonMap("default", "from inputStream[price > 100] select id insert into outputStream;"), true, new String[]{"inputStream"},
+                Collections.emptyMap(), Collections.singletonList(output), false, INPUT_TYPE, null));
+    }
+
+    private static KeyedOneInputStreamOperatorTestHarness<Object, TaggedRow, Map<String, Object>> keyedHarness(SiddhiRuntimeOperator operator, int parallelism, int index) throws Exception {
+        return new KeyedOneInputStreamOperatorTestHarness<>(operator, KEY_SELECTOR, KEY_SELECTOR.getKeyType(), MAX_PARALLELISM, parallelism, index);
+    }
+
+    private static SiddhiRuntimeOperator operator(String cql, boolean eventTime, boolean keyed, List<OutputTag<Map<String, Object>>> outputTags) {
+        return new SiddhiRuntimeOperator(STREAM_DEFINITIONS, Collections.singletonMap("default", cql), false, new String[]{"inputStream"},
+                Collections.emptyMap(), outputTags, eventTime, INPUT_TYPE, keyed ? KEY_FIELDS : null);
+    }
+
+    private static OutputTag<Map<String, Object>> outputTag(String streamId, String... fieldNames) {
+        return new OutputTag<>(streamId, new MapRecordTypeInfo(fieldNames));
+    }
+
+    private static TaggedRow input(String id, double price, long timestamp) {
+        return new TaggedRow(0, Row.of(id, price, timestamp));
+    }
+
+    private static List<Object> ids(Queue<StreamRecord<Map<String, Object>>> records) {
+        final List<Object> ids = new ArrayList<>();
+        if (null != records) {
+            records.forEach(record -> ids.add(record.getValue().get("id")));
+        }
+        return ids;
+    }
+}
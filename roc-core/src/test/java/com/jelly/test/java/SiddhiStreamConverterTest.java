@@ -0,0 +1,109 @@
+package com.jelly.test.java;
+
+import com.roc.entity.JobDetail;
+import com.roc.stream.cep.SiddhiStreamConverter;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.api.graph.StreamNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class SiddhiStreamConverterTest {
+    private static final List<String> RESULTS = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void keyedOnce() {
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(2);
+        new SiddhiStreamConverter().<Map<String, Object>>convertAll(jobDetail(false), env).get("outputStream").addSink(new CollectSink());
+        // 数据源不单独keyBy, 只在siddhi算子前按key shuffle一次
+        List<String> partitioners = new ArrayList<>();
+        for (StreamNode node : env.getStreamGraph("test", false).getStreamNodes()) {
+            node.getInEdges().forEach(edge -> partitioners.add(edge.getPartitioner().getClass().getSimpleName() + "->" + node.getOperatorName()));
+        }
+        Assert.assertEquals(1, partitioners.stream().filter(partitioner -> partitioner.startsWith("KeyGroupStreamPartitioner")).count());
+        Assert.assertTrue(partitioners.toString(), partitioners.contains("KeyGroupStreamPartitioner->siddhi"));
+    }
+
+    @Test
+    public void keyedWithControlStream() throws Exception {
+        JobDetail jobDetail = jobDetail(true);
+
+        // 分区模式 + 控制流: siddhi算子需要keyed state
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(2);
+        Map<String, DataStream<Map<String, Object>>> outputs = new SiddhiStreamConverter().convertAll(jobDetail, env);
+        RESULTS.clear();
+        outputs.get("outputStream").addSink(new CollectSink());
+        env.execute();
+
+        // 每个key单独计数
+        Collections.sort(RESULTS);
+        Assert.assertEquals(Arrays.asList(":1", "a:1", "a:2", "a:3", "b:1", "b:2"), RESULTS);
+    }
+
+    private static JobDetail jobDetail(boolean withControl) {
+        JobDetail.SourceDetail source = new JobDetail.SourceDetail();
+        source.setId("inputStream");
+        source.setType(InputSource.class.getName());
+        source.setFields("id String,price Double,timestamp Long");
+        source.setPartition("keyBy:id");
+        JobDetail.SinkDetail sink = new JobDetail.SinkDetail();
+        sink.setId("outputStream");
+        JobDetail jobDetail = new JobDetail();
+        jobDetail.setExp("from ${0} select id, count() as cnt insert into outputStream;");
+        jobDetail.setSources(Collections.singletonList(source));
+        jobDetail.setSinks(Collections.singletonList(sink));
+        if (withControl) {
+            JobDetail.SourceDetail control = new JobDetail.SourceDetail();
+            control.setId("controlStream");
+            control.setType(EmptySource.class.getName());
+            jobDetail.setControl(control);
+        }
+        return jobDetail;
+    }
+
+    public static class InputSource implements SourceFunction<String> {
+        public InputSource(JobDetail.SourceDetail sourceDetail) {
+        }
+
+        @Override
+        public void run(SourceContext<String> ctx) {
+            for (String id : new String[]{"a", "b", "a", "b", "a", ""}) {
+                ctx.collect("{\"id\":\"" + id + "\",\"price\":1.0,\"timestamp\":1}");
+            }
+            // 分区字段为空的记录丢弃, 不与空串key合并
+            ctx.collect("{\"price\":1.0,\"timestamp\":1}");
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    public static class EmptySource implements SourceFunction<String> {
+        public EmptySource(JobDetail.SourceDetail sourceDetail) {
+        }
+
+        @Override
+        public void run(SourceContext<String> ctx) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    private static class CollectSink implements SinkFunction<Map<String, Object>> {
+        @Override
+        public void invoke(Map<String, Object> value, Context context) {
+            RESULTS.add(value.get("id") + ":" + value.get("cnt"));
+        }
+    }
+}
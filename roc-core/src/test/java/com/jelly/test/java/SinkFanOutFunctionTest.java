@@ -0,0 +1,57 @@
+package com.jelly.test.java;
+
+import com.roc.sink.SinkFanOutFunction;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.util.OutputTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class SinkFanOutFunctionTest {
+    private static final List<Object> ALL = Collections.synchronizedList(new ArrayList<>());
+    private static final List<Object> EXPENSIVE = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void fanOut() throws Exception {
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(1);
+        TypeInformation<HashMap<String, Object>> type = TypeInformation.of(new TypeHint<HashMap<String, Object>>() {
+        });
+        OutputTag<HashMap<String, Object>> all = new OutputTag<>("all", type);
+        OutputTag<HashMap<String, Object>> expensive = new OutputTag<>("expensive", type);
+
+        SingleOutputStreamOperator<HashMap<String, Object>> fanOut = env.fromCollection(Arrays.asList(record("a", 10D), record("b", 200D)), type)
+                .process(new SinkFanOutFunction<>(Arrays.asList(all, expensive), Arrays.asList(null, "price > 100")), type);
+        fanOut.getSideOutput(all).addSink(new SinkFunction<HashMap<String, Object>>() {
+            @Override
+            public void invoke(HashMap<String, Object> value, Context context) {
+                ALL.add(value.get("id"));
+            }
+        });
+        fanOut.getSideOutput(expensive).addSink(new SinkFunction<HashMap<String, Object>>() {
+            @Override
+            public void invoke(HashMap<String, Object> value, Context context) {
+                EXPENSIVE.add(value.get("id"));
+            }
+        });
+        env.execute();
+
+        Assert.assertEquals(Arrays.asList("a", "b"), ALL);
+        Assert.assertEquals(Collections.singletonList("b"), EXPENSIVE);
+    }
+
+    private static HashMap<String, Object> record(String id, Double price) {
+        HashMap<String, Object> record = new HashMap<>();
+        record.put("id", id);
+        record.put("price", price);
+        return record;
+    }
+}
@@ -0,0 +1,75 @@
+package com.jelly.test.java;
+
+import com.roc.common.base.ExceptionUtil;
+import com.roc.entity.JobDetail;
+import com.roc.util.SourceSinkConstructor;
+import com.roc.util.schema.RowSchema;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SourceSinkConstructorTest {
+    private final RowSchema schema = RowSchema.compile("id String");
+
+    @Test
+    public void customSource() {
+        // 只有 (SourceDetail) 构造器时输出json字符串
+        Assert.assertTrue(SourceSinkConstructor.newSourceFunction(source(JsonSource.class), schema) instanceof JsonSource);
+        Assert.assertTrue(SourceSinkConstructor.newSinkFunction(sink(CustomSink.class)) instanceof CustomSink);
+    }
+
+    @Test
+    public void constructorFailure() {
+        // 构造器内部的异常直接抛出, 不回退到 (SourceDetail) 构造器
+        try {
+            SourceSinkConstructor.newSourceFunction(source(BrokenRowSource.class), schema);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals("broken", ExceptionUtil.getRootCause(e).getMessage());
+        }
+    }
+
+    private static JobDetail.SourceDetail source(Class<?> type) {
+        JobDetail.SourceDetail sourceDetail = new JobDetail.SourceDetail();
+        sourceDetail.setId("inputStream");
+        sourceDetail.setType(type.getName());
+        return sourceDetail;
+    }
+
+    private static JobDetail.SinkDetail sink(Class<?> type) {
+        JobDetail.SinkDetail sinkDetail = new JobDetail.SinkDetail();
+        sinkDetail.setId("outputStream");
+        sinkDetail.setType(type.getName());
+        return sinkDetail;
+    }
+
+    public static class JsonSource implements SourceFunction<String> {
+        public JsonSource(JobDetail.SourceDetail sourceDetail) {
+        }
+
+        @Override
+        public void run(SourceContext<String> ctx) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    public static class BrokenRowSource extends JsonSource {
+        public BrokenRowSource(JobDetail.SourceDetail sourceDetail, RowSchema schema) {
+            super(sourceDetail);
+            throw new IllegalStateException("broken");
+        }
+
+        public BrokenRowSource(JobDetail.SourceDetail sourceDetail) {
+            super(sourceDetail);
+        }
+    }
+
+    public static class CustomSink implements SinkFunction<Object> {
+        public CustomSink(JobDetail.SinkDetail sinkDetail) {
+        }
+    }
+}
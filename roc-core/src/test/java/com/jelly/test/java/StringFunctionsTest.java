@@ -0,0 +1,187 @@
+package com.jelly.test.java;
+
+import com.roc.stream.cep.SiddhiStreamConverter;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StringFunctionsTest {
+    private static final String STREAM_DEFINITIONS = "define stream inputStream (s string, p string, n int, m int);\n";
+    private static final String EMAIL = "([\\w0-8]+)@(\\w+)";
+
+    private static SiddhiManager siddhiManager;
+
+    // 按 registryFunction() 注册的名称在cql中调用
+    @BeforeClass
+    public static void setUp() {
+        siddhiManager = new SiddhiManager();
+        SiddhiStreamConverter.registryFunction().forEach(siddhiManager::setExtension);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        siddhiManager.shutdown();
+    }
+
+    @Test
+    public void regexExtract() throws Exception {
+        String select = "regexExtract(s, '" + EMAIL + "') as v, regexExtract(s, '" + EMAIL + "', 2) as g, regexExtract(s, p) as d";
+        Assert.assertEquals(Arrays.asList(Attribute.Type.STRING, Attribute.Type.STRING, Attribute.Type.STRING), outputTypes(select));
+        List<List<Object>> outputs = query(select,
+                row("siddhi@roc.com", "@(\\w+)"),
+                row("no-mail", "@(\\w+)"),
+                // 非常量正则非法时视为不匹配
+                row("siddhi@roc.com", "(invalid"));
+        Assert.assertEquals(Arrays.asList("siddhi", "roc", "roc"), outputs.get(0));
+        Assert.assertEquals(Arrays.asList("", "", ""), outputs.get(1));
+        Assert.assertEquals("", outputs.get(2).get(2));
+    }
+
+    @Test
+    public void invalidConstantRegex() {
+        assertInvalid("regexExtract(s, '(invalid') as v");
+    }
+
+    @Test
+    public void arity() {
+        assertInvalid("regexMatch(s) as v");
+    }
+
+    @Test
+    public void regexMatch() throws Exception {
+        String select = "regexMatch(s, '@roc\\.com$') as v";
+        Assert.assertEquals(Arrays.asList(Attribute.Type.BOOL), outputTypes(select));
+        List<List<Object>> outputs = query(select, row("siddhi@roc.com", null), row("siddhi@roc.cn", null), row(null, null));
+        Assert.assertEquals(Arrays.asList(true, false, false), column(outputs, 0));
+        Assert.assertTrue(outputs.get(0).get(0) instanceof Boolean);
+    }
+
+    @Test
+    public void regexMatchAsFilter() throws Exception {
+        // BOOL 返回值可直接作为过滤条件
+        List<List<Object>> outputs = new ArrayList<>();
+        SiddhiAppRuntime runtime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS
+                + "from inputStream[regexMatch(s, '@roc\\.com$')] select s insert into outputStream;");
+        try {
+            collect(runtime, outputs);
+            runtime.start();
+            runtime.getInputHandler("inputStream").send(row("siddhi@roc.com", null));
+            runtime.getInputHandler("inputStream").send(row("siddhi@roc.cn", null));
+        } finally {
+            runtime.shutdown();
+        }
+        Assert.assertEquals(Arrays.asList("siddhi@roc.com"), column(outputs, 0));
+    }
+
+    @Test
+    public void splitPart() throws Exception {
+        String select = "splitPart(s, '::', n) as v";
+        Assert.assertEquals(Arrays.asList(Attribute.Type.STRING), outputTypes(select));
+        List<List<Object>> outputs = query(select,
+                row("usr::local::bin", null, 1, null),
+                row("usr::local::bin", null, 3, null),
+                row("usr::local::bin", null, 4, null),
+                row("usr::::bin", null, 2, null));
+        Assert.assertEquals(Arrays.asList("usr", "bin", "", ""), column(outputs, 0));
+    }
+
+    @Test
+    public void substring() throws Exception {
+        String select = "substring(s, n, m) as v, substring(s, n) as tail";
+        Assert.assertEquals(Arrays.asList(Attribute.Type.STRING, Attribute.Type.STRING), outputTypes(select));
+        List<List<Object>> outputs = query(select,
+                row("siddhi", null, 0, 3),
+                row("siddhi", null, 4, 10),
+                row("siddhi", null, 10, 2),
+                row("siddhi", null, 3, null));
+        Assert.assertEquals(Arrays.asList("sid", "hi", "", "dhi"), column(outputs, 0));
+        Assert.assertEquals("dhi", outputs.get(3).get(1));
+    }
+
+    @Test
+    public void jsonPath() throws Exception {
+        String select = "jsonPath(s, '$.a.b') as v";
+        Assert.assertEquals(Arrays.asList(Attribute.Type.STRING), outputTypes(select));
+        List<List<Object>> outputs = query(select,
+                row("{\"a\":{\"b\":\"v\"}}", null),
+                row("{\"a\":{\"b\":1}}", null),
+                row("{\"a\":{\"b\":[1,2]}}", null),
+                row("{\"a\":{}}", null),
+                row("not json", null));
+        Assert.assertEquals(Arrays.asList("v", "1", "[1,2]", null, null), column(outputs, 0));
+    }
+
+    private static List<Attribute.Type> outputTypes(String select) {
+        SiddhiAppRuntime runtime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS + "from inputStream select " + select + " insert into outputStream;");
+        try {
+            List<Attribute.Type> types = new ArrayList<>();
+            runtime.getStreamDefinitionMap().get("outputStream").getAttributeList().forEach(attribute -> types.add(attribute.getType()));
+            return types;
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    private static List<List<Object>> query(String select, Object[]... rows) throws InterruptedException {
+        List<List<Object>> outputs = new ArrayList<>();
+        SiddhiAppRuntime runtime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS + "from inputStream select " + select + " insert into outputStream;");
+        try {
+            collect(runtime, outputs);
+            runtime.start();
+            for (Object[] row : rows) {
+                runtime.getInputHandler("inputStream").send(row);
+            }
+        } finally {
+            runtime.shutdown();
+        }
+        Assert.assertEquals(rows.length, outputs.size());
+        return outputs;
+    }
+
+    private static void collect(SiddhiAppRuntime runtime, List<List<Object>> outputs) {
+        runtime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    outputs.add(Arrays.asList(event.getData()));
+                }
+            }
+        });
+    }
+
+    private static void assertInvalid(String select) {
+        try {
+            siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITIONS + "from inputStream select " + select + " insert into outputStream;").shutdown();
+            Assert.fail("expected invalid function call: " + select);
+        } catch (SiddhiAppCreationException e) {
+            // init 中的参数校验
+            Assert.assertTrue(e.getCause() instanceof SiddhiAppValidationException);
+        }
+    }
+
+    private static List<Object> column(List<List<Object>> outputs, int index) {
+        List<Object> column = new ArrayList<>();
+        outputs.forEach(output -> column.add(output.get(index)));
+        return column;
+    }
+
+    private static Object[] row(String s, String p) {
+        return row(s, p, null, null);
+    }
+
+    private static Object[] row(String s, String p, Integer n, Integer m) {
+        return new Object[]{s, p, n, m};
+    }
+}
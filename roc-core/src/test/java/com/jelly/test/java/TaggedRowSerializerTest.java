@@ -0,0 +1,64 @@
+package com.jelly.test.java;
+
+import com.roc.stream.cep.TaggedRowKeySelector;
+import com.roc.util.schema.RowSchema;
+import com.roc.util.schema.TaggedRow;
+import com.roc.util.schema.TaggedRowTypeInfo;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.java.typeutils.RowTypeInfo;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.types.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TaggedRowSerializerTest {
+    private final TaggedRowTypeInfo typeInfo = new TaggedRowTypeInfo(new RowTypeInfo[]{
+            RowSchema.compile("id String,price Double").getRowTypeInfo(),
+            RowSchema.compile("name String,timestamp Long,valid Boolean").getRowTypeInfo()});
+    private final TypeSerializer<TaggedRow> serializer = typeInfo.createSerializer(new ExecutionConfig());
+
+    @Test
+    public void roundTrip() throws IOException {
+        TaggedRow first = new TaggedRow(0, Row.of("a", 1.5D));
+        TaggedRow second = new TaggedRow(1, Row.of("b", 1611387930000L, null));
+
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        serializer.serialize(first, out);
+        serializer.serialize(second, out);
+        DataInputDeserializer in = new DataInputDeserializer(out.getSharedBuffer(), 0, out.length());
+
+        Assert.assertEquals(first, serializer.deserialize(in));
+        Assert.assertEquals(second, serializer.deserialize(in));
+        Assert.assertEquals(second, serializer.copy(second));
+        Assert.assertNotSame(second.getRow(), serializer.copy(second).getRow());
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        TypeSerializerSnapshot.writeVersionedSnapshot(out, serializer.snapshotConfiguration());
+        TypeSerializerSnapshot<TaggedRow> snapshot = TypeSerializerSnapshot.readVersionedSnapshot(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()), getClass().getClassLoader());
+
+        Assert.assertTrue(snapshot.resolveSchemaCompatibility(serializer).isCompatibleAsIs());
+        Assert.assertEquals(serializer, snapshot.restoreSerializer());
+    }
+
+    @Test
+    public void keySelector() {
+        // 不同输入流的分区字段下标不同, 相同键值为同一个key
+        TaggedRowKeySelector selector = new TaggedRowKeySelector(new int[]{0, 1}, Types.STRING);
+        Object first = selector.getKey(new TaggedRow(0, Row.of("a", 1.5D)));
+        Object second = selector.getKey(new TaggedRow(1, Row.of(1611387930000L, "a", true)));
+        Assert.assertEquals("a", first);
+        Assert.assertEquals(KeyGroupRangeAssignment.assignToKeyGroup(first, 128), KeyGroupRangeAssignment.assignToKeyGroup(second, 128));
+        Assert.assertEquals(1, selector.getKeyPosition(1));
+    }
+}
@@ -3,6 +3,7 @@ package com.roc.web.bean;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author jelly
@@ -41,6 +42,20 @@ public final class JobDetail {
     private String timeType;
     private String streamEngine;
     private String exp;
+    // 引擎算子资源
+    private Integer parallelism;
+    private Integer maxParallelism;
+    private String slotSharingGroup;
+    // flink参数(execution.checkpointing.* / state.* / pipeline.*)
+    private Map<String, String> config;
+    // 对象复用
+    private Boolean objectReuse;
+    // 端到端延迟采样百分比
+    private Double latencySamplePercent;
+    // groovy规则编译模式: dynamic(默认) / type_checked / static
+    private String compileMode;
+    // 规则控制流(siddhi): 消息字段 action(add / replace / remove), id, cql, 运行中更新规则
+    private SourceDetail control;
     private List<SourceDetail> sources;
     private List<SinkDetail> sinks;
 
@@ -52,13 +67,29 @@ public final class JobDetail {
         private String auth;
         private String storage;
         private String fields;
+        // 分区策略: forward / rescale / rebalance / keyBy:field
+        private String partition;
+        // 算子资源
+        private Integer parallelism;
+        private Integer maxParallelism;
+        private String slotSharingGroup;
+        // 类型相关的扩展参数, 如 datagen 的 rows-per-second / fields.id.kind
+        private Map<String, String> options;
     }
 
     @Data
     public static class SourceDetail extends AbstractDetail {
+        // 事件时间字段 / 最大乱序时间(毫秒) / 空闲超时(毫秒)
+        private String timestampField;
+        private Long maxOutOfOrderness;
+        private Long idleTimeout;
     }
 
     @Data
     public static class SinkDetail extends AbstractDetail {
+        // 过滤条件(aviator表达式)
+        private String filter;
+        // 引擎输出流
+        private String stream;
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.roc.web.controller;
 
+import com.roc.common.cql.CqlLint;
 import com.roc.common.time.ClockUtil;
 import com.roc.web.bean.JobDetail;
 import com.roc.web.bean.RespBean;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -54,6 +56,15 @@ public class ConsoleController {
                 sinks.get(j).setId("sinkId_" + j);
             }
 
+            // cql 提交前语法与静态检查, 语法错误直接返回, 静态检查结果作为警告返回
+            if ("com.roc.stream.cep.SiddhiStreamConverter".equals(jobDetail.getStreamEngine())) {
+                List<String> warnings = lintCql(jobDetail);
+                if (!warnings.isEmpty()) {
+                    warnings.forEach(warning -> logger.warn("cql lint: " + warning));
+                    return new RespBean("success", "任务提交成功, 规则警告: " + String.join("; ", warnings));
+                }
+            }
+
 //            ShellUtils.runShell("java -jar roc-core-*.jar -d " + JSONUtils.toJSONString(jobDetail));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
@@ -61,4 +72,24 @@ public class ConsoleController {
         }
         return new RespBean("success", "任务提交成功");
     }
+
+    /**
+     * 按数据源字段定义解析cql并做静态检查(字段引用与函数在作业提交时由引擎编译校验)
+     *
+     * @param jobDetail
+     * @return 警告
+     */
+    private List<String> lintCql(JobDetail jobDetail) {
+        List<JobDetail.SourceDetail> sources = jobDetail.getSources();
+        StringBuilder app = new StringBuilder();
+        String cql = jobDetail.getExp();
+        boolean keyed = true;
+        for (int i = 0; i < sources.size(); i++) {
+            JobDetail.SourceDetail source = sources.get(i);
+            app.append(CqlLint.streamDefinition(source.getId(), source.getFields()));
+            cql = StringUtils.replace(cql, "${" + i + "}", source.getId());
+            keyed &= null != CqlLint.keyField(source.getPartition());
+        }
+        return CqlLint.lint(app.append(cql).toString(), keyed);
+    }
 }